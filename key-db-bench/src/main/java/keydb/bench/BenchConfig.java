@@ -0,0 +1,86 @@
+package keydb.bench;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+
+@Value
+@Builder(toBuilder = true)
+public class BenchConfig {
+
+    // The mix of operations and how their keys are picked
+    // Default: A
+    @Builder.Default
+    Workload workload = Workload.A;
+
+    // Number of records inserted before the run starts
+    // Default: 100 000
+    @Builder.Default
+    long recordCount = 100_000;
+
+    // Number of operations made by all threads during the run
+    // Default: 100 000
+    @Builder.Default
+    long operationCount = 100_000;
+
+    // Number of client threads, each making operations one after the other
+    // Default: 1
+    @Builder.Default
+    int threads = 1;
+
+    // Operations per second over all threads, or 0 to run as fast as possible. With a target
+    // the latencies are measured from when each operation was due to start, so that a stall
+    // counts against every operation queued up behind it
+    // Default: 0
+    @Builder.Default
+    long targetOpsPerSecond = 0;
+
+    // Size of the value written for each record
+    // Default: 1000 bytes, the ten 100 byte fields of YCSB
+    @Builder.Default
+    int valueSize = 1000;
+
+    // Largest number of records read by a scan, each scan reads a uniform number up to it
+    // Default: 100
+    @Builder.Default
+    int maxScanLength = 100;
+
+    // Where the database is created, any existing database there is deleted first
+    // Default: ycsb-db
+    @Builder.Default
+    Path dbPath = Path.of("ycsb-db");
+
+    // File the latencies are exported to as CSV, or null to only print them
+    // Default: null
+    @Builder.Default
+    Path csvPath = null;
+
+    /**
+     * Reads options given as {@code --name=value}, such as {@code --workload=B --threads=8}.
+     * Options that are left out keep their default.
+     */
+    public static BenchConfig fromArgs(final String... args) {
+        final BenchConfigBuilder builder = builder();
+        for (final String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            final String name = arg.substring(2, arg.indexOf('='));
+            final String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "workload" -> builder.workload(Workload.valueOf(value.toUpperCase()));
+                case "records" -> builder.recordCount(Long.parseLong(value));
+                case "operations" -> builder.operationCount(Long.parseLong(value));
+                case "threads" -> builder.threads(Integer.parseInt(value));
+                case "target" -> builder.targetOpsPerSecond(Long.parseLong(value));
+                case "valueSize" -> builder.valueSize(Integer.parseInt(value));
+                case "maxScanLength" -> builder.maxScanLength(Integer.parseInt(value));
+                case "db" -> builder.dbPath(Path.of(value));
+                case "csv" -> builder.csvPath(Path.of(value));
+                default -> throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,28 @@
+package keydb.bench;
+
+final class Keys {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 1099511628211L;
+
+    private Keys() {
+    }
+
+    /**
+     * The key of a record. Like YCSB the record number is hashed, so records inserted one after
+     * the other are spread over the key space.
+     */
+    static String key(final long record) {
+        return "user" + Long.toUnsignedString(hash(record));
+    }
+
+    // FNV-1a over the eight bytes of the value
+    static long hash(final long value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,96 @@
+package keydb.bench;
+
+import keydb.metrics.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency histograms of each operation, safe to record into from any number of threads.
+ * <p>
+ * INTENDED latencies run from when the operation was due to start under the target throughput
+ * to when it completed. When the database stalls the operations scheduled during the stall
+ * start late, and only the intended latency charges them for the wait, which corrects for the
+ * coordinated omission of a client that can't send while it waits. SERVICE latencies run from
+ * when the operation actually started.
+ */
+public class Latencies {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+    private static final String CSV_HEADER = "operation,latency,count,mean_us,p50_us,p99_us,p99.9_us,max_us";
+
+    public enum Kind {
+        INTENDED,
+        SERVICE
+    }
+
+    private final Map<Operation, Histogram> intended = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> service = new EnumMap<>(Operation.class);
+
+    public Latencies() {
+        for (final Operation operation : Operation.values()) {
+            intended.put(operation, new Histogram());
+            service.put(operation, new Histogram());
+        }
+    }
+
+    /**
+     * Records one operation, all times are from {@link System#nanoTime}.
+     */
+    public void record(final Operation operation, final long intendedStart, final long start, final long end) {
+        intended.get(operation).record(end - intendedStart);
+        service.get(operation).record(end - start);
+    }
+
+    public Histogram.Snapshot snapshot(final Operation operation, final Kind kind) {
+        return (kind == Kind.INTENDED ? intended : service).get(operation).snapshot();
+    }
+
+    /**
+     * Prints a table of the operations that were made, in microseconds.
+     */
+    public void print(final PrintStream out, final Kind kind) {
+        out.printf("%-18s %10s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Mean(us)", "p50(us)", "p99(us)", "p99.9(us)", "Max(us)");
+        for (final Operation operation : Operation.values()) {
+            final Histogram.Snapshot snapshot = snapshot(operation, kind);
+            if (snapshot.count() > 0) {
+                out.printf("%-18s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation, snapshot.count(),
+                        micros(snapshot.mean()), micros(snapshot.percentile(PERCENTILES[0])),
+                        micros(snapshot.percentile(PERCENTILES[1])), micros(snapshot.percentile(PERCENTILES[2])),
+                        micros(snapshot.max()));
+            }
+        }
+    }
+
+    /**
+     * Writes a row for each kind of latency of each operation that was made.
+     */
+    public void writeCsv(final Path path) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        lines.add(CSV_HEADER);
+        for (final Operation operation : Operation.values()) {
+            for (final Kind kind : Kind.values()) {
+                final Histogram.Snapshot snapshot = snapshot(operation, kind);
+                if (snapshot.count() > 0) {
+                    lines.add(String.format("%s,%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f", operation, kind, snapshot.count(),
+                            micros(snapshot.mean()), micros(snapshot.percentile(PERCENTILES[0])),
+                            micros(snapshot.percentile(PERCENTILES[1])), micros(snapshot.percentile(PERCENTILES[2])),
+                            micros(snapshot.max())));
+                }
+            }
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    private static double micros(final double nanos) {
+        return nanos / 1_000;
+    }
+}
@@ -0,0 +1,11 @@
+package keydb.bench;
+
+public enum Operation {
+    READ,
+    UPDATE,
+    INSERT,
+    // Reads a run of consecutive keys from a random one
+    SCAN,
+    // Reads a key and writes a new value for it
+    READ_MODIFY_WRITE
+}
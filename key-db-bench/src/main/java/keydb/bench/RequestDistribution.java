@@ -0,0 +1,29 @@
+package keydb.bench;
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * How a workload picks the records it reads and updates among those inserted so far.
+ */
+public enum RequestDistribution {
+    // Every record is as likely
+    UNIFORM,
+    // A few of the loaded records take most of the requests, scattered over them by a hash
+    ZIPFIAN,
+    // Zipfian over the age of the records, the newest ones are the most popular
+    LATEST;
+
+    /**
+     * Picks record numbers for one thread. {@code zipfian} spans the records loaded before the
+     * run, {@code inserted} counts the records there are now.
+     */
+    public LongSupplier chooser(final ZipfianGenerator zipfian, final LongSupplier inserted,
+                                final SplittableRandom random) {
+        return switch (this) {
+            case UNIFORM -> () -> random.nextLong(inserted.getAsLong());
+            case ZIPFIAN -> () -> Math.floorMod(Keys.hash(zipfian.next(random.nextDouble())), zipfian.items());
+            case LATEST -> () -> Math.max(0, inserted.getAsLong() - 1 - zipfian.next(random.nextDouble()));
+        };
+    }
+}
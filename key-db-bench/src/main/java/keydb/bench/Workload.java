@@ -0,0 +1,58 @@
+package keydb.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * The core workloads of YCSB, given by the share of each operation and how the keys they touch
+ * are picked.
+ */
+public enum Workload {
+    // Update heavy, such as a session store recording recent actions
+    A(0.5, 0.5, 0, 0, 0, RequestDistribution.ZIPFIAN),
+    // Read mostly, such as photo tagging
+    B(0.95, 0.05, 0, 0, 0, RequestDistribution.ZIPFIAN),
+    // Read only, such as a user profile cache
+    C(1, 0, 0, 0, 0, RequestDistribution.ZIPFIAN),
+    // Read latest, such as status updates where the newest ones are read the most
+    D(0.95, 0, 0.05, 0, 0, RequestDistribution.LATEST),
+    // Short ranges, such as threaded conversations
+    E(0, 0, 0.05, 0.95, 0, RequestDistribution.ZIPFIAN),
+    // Read-modify-write, such as a user database updating records it has just read
+    F(0.5, 0, 0, 0, 0.5, RequestDistribution.ZIPFIAN);
+
+    private final double[] proportions;
+    private final RequestDistribution requestDistribution;
+
+    Workload(final double read, final double update, final double insert, final double scan,
+             final double readModifyWrite, final RequestDistribution requestDistribution) {
+        this.proportions = new double[]{read, update, insert, scan, readModifyWrite};
+        this.requestDistribution = requestDistribution;
+    }
+
+    public RequestDistribution requestDistribution() {
+        return requestDistribution;
+    }
+
+    public double proportion(final Operation operation) {
+        return proportions[operation.ordinal()];
+    }
+
+    /**
+     * Picks the next operation by its share of the workload.
+     */
+    public Operation nextOperation(final SplittableRandom random) {
+        double remaining = random.nextDouble();
+        Operation last = Operation.READ;
+        for (final Operation operation : Operation.values()) {
+            if (proportions[operation.ordinal()] > 0) {
+                last = operation;
+                remaining -= proportions[operation.ordinal()];
+                if (remaining < 0) {
+                    return operation;
+                }
+            }
+        }
+        // Rounding may leave a sliver past the last share
+        return last;
+    }
+}
@@ -0,0 +1,188 @@
+package keydb.bench;
+
+import keydb.CloseableIterator;
+import keydb.Entry;
+import keydb.KeyDB;
+import keydb.config.DBConfig;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Drives an embedded database with one of the YCSB core workloads. The records are loaded
+ * first, then the client threads make the operations of the workload against them while the
+ * latency of each one is recorded.
+ * <p>
+ * Run with for example {@code ./gradlew :key-db-bench:run --args="--workload=B --threads=8
+ * --target=20000 --csv=b.csv"}, see {@link BenchConfig} for the options.
+ */
+@RequiredArgsConstructor
+public class Ycsb {
+
+    // Sorts after every key, since keys are "user" followed by digits
+    private static final String LAST_KEY = "user:";
+    private static final char[] VALUE_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private final BenchConfig config;
+    private final DBConfig dbConfig;
+
+    public Ycsb(final BenchConfig config) {
+        this(config, DBConfig.builder().build());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final BenchConfig config = BenchConfig.fromArgs(args);
+        final Result result = new Ycsb(config).run();
+        System.out.printf("Loaded %d records in %.2f s%n", config.getRecordCount(), result.loadNanos() / 1e9);
+        System.out.printf("Workload %s: %d operations in %.2f s, %.0f ops/s%n", config.getWorkload(),
+                config.getOperationCount(), result.runNanos() / 1e9, result.throughput());
+        if (config.getTargetOpsPerSecond() > 0) {
+            System.out.println("Latency from the intended start of each operation");
+            result.latencies().print(System.out, Latencies.Kind.INTENDED);
+            System.out.println("Latency from the actual start of each operation");
+        }
+        result.latencies().print(System.out, Latencies.Kind.SERVICE);
+        if (config.getCsvPath() != null) {
+            result.latencies().writeCsv(config.getCsvPath());
+        }
+    }
+
+    /**
+     * @param loadNanos time taken to insert the records
+     * @param runNanos  time taken to make the operations
+     */
+    public record Result(long operations, long loadNanos, long runNanos, Latencies latencies) {
+
+        public double throughput() {
+            return operations * 1e9 / runNanos;
+        }
+    }
+
+    /**
+     * Creates the database, loads it and runs the workload against it.
+     */
+    public Result run() throws Exception {
+        FileUtils.deleteDirectory(config.getDbPath().toFile());
+        try (final KeyDB<String> db = KeyDB.create(config.getDbPath(), dbConfig, String.class)) {
+            final long loadStart = System.nanoTime();
+            inParallel(thread -> () -> {
+                final String value = randomValue(new SplittableRandom(thread));
+                for (long record = thread; record < config.getRecordCount(); record += config.getThreads()) {
+                    db.put(Keys.key(record), value);
+                }
+            });
+            final long loadNanos = System.nanoTime() - loadStart;
+
+            final Latencies latencies = new Latencies();
+            final AtomicLong inserted = new AtomicLong(config.getRecordCount());
+            final ZipfianGenerator zipfian = new ZipfianGenerator(Math.max(1, config.getRecordCount()));
+            final long runStart = System.nanoTime();
+            inParallel(thread -> new Client(db, latencies, inserted, zipfian, thread));
+            return new Result(config.getOperationCount(), loadNanos, System.nanoTime() - runStart, latencies);
+        }
+    }
+
+    private void inParallel(final ThreadTask task) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(config.getThreads());
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < config.getThreads(); thread++) {
+                final Runnable runnable = task.forThread(thread);
+                futures.add(executor.submit(Executors.callable(runnable, null)));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask {
+        Runnable forThread(int thread);
+    }
+
+    private String randomValue(final SplittableRandom random) {
+        final char[] value = new char[config.getValueSize()];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = VALUE_CHARS[random.nextInt(VALUE_CHARS.length)];
+        }
+        return new String(value);
+    }
+
+    private class Client implements Runnable {
+
+        private final KeyDB<String> db;
+        private final Latencies latencies;
+        private final AtomicLong inserted;
+        private final SplittableRandom random;
+        private final LongSupplier records;
+        private final String value;
+        private final long operations;
+        // Time between the intended starts of two operations, 0 without a target throughput
+        private final long intervalNanos;
+
+        Client(final KeyDB<String> db, final Latencies latencies, final AtomicLong inserted,
+               final ZipfianGenerator zipfian, final int thread) {
+            this.db = db;
+            this.latencies = latencies;
+            this.inserted = inserted;
+            this.random = new SplittableRandom(31L * thread + 1);
+            this.records = config.getWorkload().requestDistribution().chooser(zipfian, inserted::get, random);
+            this.value = randomValue(random);
+            // The first threads make one more operation each when the count doesn't divide evenly
+            this.operations = config.getOperationCount() / config.getThreads()
+                    + (thread < config.getOperationCount() % config.getThreads() ? 1 : 0);
+            this.intervalNanos = config.getTargetOpsPerSecond() > 0
+                    ? config.getThreads() * 1_000_000_000L / config.getTargetOpsPerSecond()
+                    : 0;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            for (long i = 0; i < operations; i++) {
+                final long intended = intervalNanos > 0 ? start + i * intervalNanos : System.nanoTime();
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                final Operation operation = config.getWorkload().nextOperation(random);
+                final long begin = System.nanoTime();
+                execute(operation);
+                latencies.record(operation, intended, begin, System.nanoTime());
+            }
+        }
+
+        private void execute(final Operation operation) {
+            switch (operation) {
+                case READ -> db.get(Keys.key(records.getAsLong()));
+                case UPDATE -> db.put(Keys.key(records.getAsLong()), value);
+                case INSERT -> db.put(Keys.key(inserted.getAndIncrement()), value);
+                case SCAN -> scan(Keys.key(records.getAsLong()), 1 + random.nextInt(config.getMaxScanLength()));
+                case READ_MODIFY_WRITE -> {
+                    final String key = Keys.key(records.getAsLong());
+                    db.get(key);
+                    db.put(key, value);
+                }
+            }
+        }
+
+        private void scan(final String fromKey, final int length) {
+            try (final CloseableIterator<Entry<String>> entries = db.scan(fromKey, LAST_KEY)) {
+                for (int i = 0; i < length && entries.hasNext(); i++) {
+                    entries.next();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package keydb.bench;
+
+/**
+ * Ranks from 0 to {@code items - 1} where rank 0 is the most popular, drawn with the method of
+ * Gray et al. in "Quickly Generating Billion-Record Synthetic Databases" that YCSB uses.
+ * Immutable, the random numbers come from the caller so that it can be shared between threads.
+ */
+public class ZipfianGenerator {
+
+    public static final double ZIPFIAN_CONSTANT = 0.99;
+
+    private final long items;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    public ZipfianGenerator(final long items) {
+        this(items, ZIPFIAN_CONSTANT);
+    }
+
+    public ZipfianGenerator(final long items, final double theta) {
+        if (items < 1) {
+            throw new IllegalArgumentException("Zipfian distribution needs at least one item");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1 / (1 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+
+    public long items() {
+        return items;
+    }
+
+    /**
+     * The rank for a uniform random number {@code u} in [0, 1).
+     */
+    public long next(final double u) {
+        final double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return Math.min(1, items - 1);
+        }
+        return Math.min((long) (items * Math.pow(eta * u - eta + 1, alpha)), items - 1);
+    }
+
+    private static double zeta(final long n, final double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,119 @@
+package keydb.bench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class YcsbTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void runs_every_operation_of_the_workload() throws Exception {
+        final BenchConfig config = BenchConfig.builder()
+                .workload(Workload.A)
+                .recordCount(1_000)
+                .operationCount(2_001)
+                .threads(2)
+                .valueSize(100)
+                .dbPath(dir.resolve("db"))
+                .build();
+
+        final Ycsb.Result result = new Ycsb(config).run();
+
+        final long reads = result.latencies().snapshot(Operation.READ, Latencies.Kind.SERVICE).count();
+        final long updates = result.latencies().snapshot(Operation.UPDATE, Latencies.Kind.SERVICE).count();
+        assertThat(reads + updates).isEqualTo(2_001);
+        assertThat(reads).isBetween(800L, 1_200L);
+        assertThat(result.latencies().snapshot(Operation.SCAN, Latencies.Kind.SERVICE).count()).isZero();
+    }
+
+    @Test
+    void scans_and_inserts_of_workload_e_are_recorded_and_exported() throws Exception {
+        final Path csv = dir.resolve("latencies.csv");
+        final BenchConfig config = BenchConfig.fromArgs("--workload=e", "--records=500", "--operations=400",
+                "--valueSize=50", "--maxScanLength=10", "--db=" + dir.resolve("db"), "--csv=" + csv);
+
+        final Ycsb.Result result = new Ycsb(config).run();
+        result.latencies().writeCsv(config.getCsvPath());
+
+        final List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertThat(lines.get(0)).isEqualTo("operation,latency,count,mean_us,p50_us,p99_us,p99.9_us,max_us");
+        assertThat(lines).anyMatch(line -> line.startsWith("SCAN,INTENDED,"));
+        assertThat(lines).anyMatch(line -> line.startsWith("INSERT,SERVICE,"));
+        assertThat(lines).noneMatch(line -> line.startsWith("READ,"));
+    }
+
+    @Test
+    void latency_includes_the_wait_behind_a_stalled_operation() {
+        final Latencies latencies = new Latencies();
+        // The first operation stalls for 10 ms, the next was due 1 ms after the first
+        latencies.record(Operation.READ, 0, 0, 10_000_000);
+        latencies.record(Operation.READ, 1_000_000, 10_000_000, 10_100_000);
+
+        assertThat(latencies.snapshot(Operation.READ, Latencies.Kind.INTENDED).percentile(0.5))
+                .isGreaterThan(8_000_000);
+        assertThat(latencies.snapshot(Operation.READ, Latencies.Kind.SERVICE).percentile(0.5))
+                .isLessThan(200_000);
+    }
+
+    @Test
+    void target_throughput_paces_the_operations() throws Exception {
+        final BenchConfig config = BenchConfig.builder()
+                .workload(Workload.C)
+                .recordCount(100)
+                .operationCount(200)
+                .threads(2)
+                .targetOpsPerSecond(1_000)
+                .dbPath(dir.resolve("db"))
+                .build();
+
+        final Ycsb.Result result = new Ycsb(config).run();
+
+        assertThat(result.runNanos()).isGreaterThanOrEqualTo(190_000_000L);
+        assertThat(result.throughput()).isLessThan(1_100);
+    }
+
+    @Test
+    void zipfian_requests_favour_a_few_records() {
+        final ZipfianGenerator zipfian = new ZipfianGenerator(1_000);
+        final SplittableRandom random = new SplittableRandom(1);
+        int top = 0;
+        for (int i = 0; i < 10_000; i++) {
+            final long rank = zipfian.next(random.nextDouble());
+            assertThat(rank).isBetween(0L, 999L);
+            if (rank < 10) {
+                top++;
+            }
+        }
+        // The ten most popular of a thousand records take about 40% of the requests
+        assertThat(top).isBetween(3_000, 5_000);
+    }
+
+    @Test
+    void workload_shares_add_up_to_one() {
+        for (final Workload workload : Workload.values()) {
+            double total = 0;
+            for (final Operation operation : Operation.values()) {
+                total += workload.proportion(operation);
+            }
+            assertThat(total).as(workload.name()).isCloseTo(1.0, within(1e-9));
+        }
+    }
+
+    @Test
+    void unknown_options_are_rejected() {
+        assertThatThrownBy(() -> BenchConfig.fromArgs("--record=10")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BenchConfig.fromArgs("threads")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
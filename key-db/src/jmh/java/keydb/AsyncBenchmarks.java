@@ -0,0 +1,89 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.AsyncExecutor;
+import keydb.config.DBConfig;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets of random keys with 256 of them in flight, made either by as many threads calling the
+ * blocking get or by a single thread calling getAsync. The block cache is disabled so that every
+ * get reads its block from the segment. The times sampled for getAsync are those of a whole batch
+ * divided by its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AsyncBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_async");
+    private static final int HUNDRED_THOUSAND = 100_000;
+    private static final int IN_FLIGHT = 256;
+
+    @Param({"VIRTUAL_THREADS", "PLATFORM_THREADS"})
+    public AsyncExecutor asyncExecutor;
+
+    public KeyDB<String> db;
+    public String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (Files.isDirectory(TEST_DB_PATH)) {
+            FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        }
+        db = KeyDB.create(TEST_DB_PATH, DBConfig.builder()
+                .blockCacheSizeBytes(0)
+                .asyncExecutor(asyncExecutor)
+                .build(), String.class);
+        final var data = generateData(HUNDRED_THOUSAND);
+        populateDatabase(db, data);
+        keys = data.keySet().toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    @Threads(IN_FLIGHT)
+    public Option<String> getBlocking() {
+        return db.get(randomKey());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void getAsync(final Blackhole bh) {
+        final CompletableFuture<?>[] gets = new CompletableFuture<?>[IN_FLIGHT];
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            gets[i] = db.getAsync(randomKey());
+        }
+        for (final CompletableFuture<?> get : gets) {
+            bh.consume(get.join());
+        }
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+}
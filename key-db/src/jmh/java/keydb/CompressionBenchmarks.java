@@ -0,0 +1,95 @@
+package keydb;
+
+import keydb.config.Compression;
+import keydb.config.DBConfig;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of text heavy values stored with each block compression. The block cache is
+ * disabled so every lookup reads and decompresses its block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_compression");
+    private static final int HUNDRED_THOUSAND = 100_000;
+    private static final String[] WORDS = {
+            "session", "user", "active", "expired", "login", "logout", "cart", "checkout",
+            "item", "price", "quantity", "region", "europe", "america", "asia", "mobile", "desktop"};
+
+    @Param({"NONE", "LZ", "DEFLATE"})
+    public Compression compression;
+
+    public KeyDB<String> db;
+    public HashMap<String, String> data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (Files.isDirectory(TEST_DB_PATH)) {
+            FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        }
+        db = KeyDB.create(TEST_DB_PATH, DBConfig.builder()
+                .compression(compression)
+                .blockCacheSizeBytes(0)
+                .build(), String.class);
+        data = generateTextData(HUNDRED_THOUSAND);
+        populateDatabase(db, data);
+        db.flush().get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    public void getHundredThousandExistingKeys(final Blackhole bh) {
+        for (final String key : data.keySet()) {
+            bh.consume(db.get(key));
+        }
+    }
+
+    @Benchmark
+    public void scanHundredThousandKeys(final Blackhole bh) {
+        try (final CloseableIterator<Entry<String>> entries = db.scan("", "~")) {
+            while (entries.hasNext()) {
+                bh.consume(entries.next());
+            }
+        }
+    }
+
+    // Small JSON documents drawn from a limited vocabulary, like the session records we store
+    private static HashMap<String, String> generateTextData(final int num) {
+        final Random random = new Random(42);
+        final HashMap<String, String> data = new HashMap<>();
+        for (int i = 0; i < num; i++) {
+            final StringBuilder value = new StringBuilder("{\"id\": \"").append(UUID.randomUUID()).append('"');
+            for (int field = 0; field < 4; field++) {
+                value.append(", \"").append(WORDS[random.nextInt(WORDS.length)])
+                        .append("\": \"").append(WORDS[random.nextInt(WORDS.length)]).append('"');
+            }
+            data.put(UUID.randomUUID().toString().substring(0, 14), value.append('}').toString());
+        }
+        return data;
+    }
+}
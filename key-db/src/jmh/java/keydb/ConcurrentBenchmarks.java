@@ -0,0 +1,97 @@
+package keydb;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of single gets as the number of threads grows, to see how well reads scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_concurrent");
+    private static final int HUNDRED_THOUSAND = 100_000;
+
+    public KeyDB<String> db;
+    public String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (Files.isDirectory(TEST_DB_PATH)) {
+            FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        }
+        db = KeyDB.create(TEST_DB_PATH, String.class);
+        final var data = generateData(HUNDRED_THOUSAND);
+        populateDatabase(db, data);
+        keys = data.keySet().toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void getOneThread(final Blackhole bh) {
+        bh.consume(db.get(randomKey()));
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void getTwoThreads(final Blackhole bh) {
+        bh.consume(db.get(randomKey()));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void getFourThreads(final Blackhole bh) {
+        bh.consume(db.get(randomKey()));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void getEightThreads(final Blackhole bh) {
+        bh.consume(db.get(randomKey()));
+    }
+
+    // Readers running alongside a writer that keeps flushing and compacting
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public void read(final Blackhole bh) {
+        bh.consume(db.get(randomKey()));
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public void write() {
+        db.put(UUID.randomUUID().toString().substring(0, 14), UUID.randomUUID().toString());
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+}
@@ -0,0 +1,92 @@
+package keydb;
+
+import java.util.SplittableRandom;
+
+/**
+ * Which of {@code count} keys a workload touches next. ZIPFIAN follows the generator of YCSB:
+ * a few keys take most of the requests, scattered over the key space by a hash so that the
+ * popular keys do not all sit in the same segment.
+ */
+public enum KeyDistribution {
+    UNIFORM,
+    ZIPFIAN,
+    SEQUENTIAL;
+
+    private static final double ZIPFIAN_CONSTANT = 0.99;
+
+    /**
+     * Creates the generator of one thread.
+     */
+    public Generator generator(final int count, final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        switch (this) {
+            case UNIFORM:
+                return () -> random.nextInt(count);
+            case ZIPFIAN:
+                final Zipfian zipfian = new Zipfian(count);
+                return () -> (int) Long.remainderUnsigned(fnvHash(zipfian.next(random.nextDouble())), count);
+            default:
+                final int start = random.nextInt(count);
+                return new Generator() {
+                    private int next = start;
+
+                    @Override
+                    public int next() {
+                        final int key = next;
+                        next = next + 1 == count ? 0 : next + 1;
+                        return key;
+                    }
+                };
+        }
+    }
+
+    @FunctionalInterface
+    public interface Generator {
+
+        int next();
+    }
+
+    // Gray et al., Quickly Generating Billion-Record Synthetic Databases, as used by YCSB
+    private static final class Zipfian {
+
+        private final int count;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(final int count) {
+            this.count = count;
+            this.alpha = 1 / (1 - ZIPFIAN_CONSTANT);
+            this.zetaN = zeta(count);
+            this.eta = (1 - Math.pow(2.0 / count, 1 - ZIPFIAN_CONSTANT)) / (1 - zeta(2) / zetaN);
+        }
+
+        long next(final double u) {
+            final double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, ZIPFIAN_CONSTANT)) {
+                return 1;
+            }
+            return (long) (count * Math.pow(eta * u - eta + 1, alpha));
+        }
+
+        private static double zeta(final int count) {
+            double sum = 0;
+            for (int i = 1; i <= count; i++) {
+                sum += 1 / Math.pow(i, ZIPFIAN_CONSTANT);
+            }
+            return sum;
+        }
+    }
+
+    private static long fnvHash(final long value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,63 @@
+package keydb;
+
+import keydb.config.DBConfig;
+import keydb.config.MemTableStorage;
+import keydb.config.WalDurability;
+import keydb.types.ValueIO;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a MemTable with half a million entries, about 30MB, and flushes it to a segment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemTableBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DIR = Path.of("testdb_memtable");
+    private static final int ENTRIES = 500_000;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public MemTableStorage storage;
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+    private final List<Map.Entry<String, String>> data = new ArrayList<>();
+    private DBConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data.addAll(generateData(ENTRIES).entrySet());
+        config = DBConfig.builder().memTableStorage(storage).walDurability(WalDurability.NONE).build();
+    }
+
+    @Setup(Level.Invocation)
+    public void clean() throws Exception {
+        FileUtils.deleteDirectory(TEST_DIR.toFile());
+        Files.createDirectories(TEST_DIR);
+    }
+
+    @Benchmark
+    public Segment<String> fillAndFlush() throws Exception {
+        final MemTable<String> memTable = new MemTable<>(TEST_DIR.resolve("memtable"), valueIO, config);
+        for (final Map.Entry<String, String> entry : data) {
+            memTable.put(entry.getKey(), entry.getValue());
+        }
+        return memTable.writeSegment(TEST_DIR, 0, config).get();
+    }
+}
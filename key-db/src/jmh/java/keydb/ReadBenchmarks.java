@@ -1,11 +1,13 @@
 package keydb;
 
+import keydb.config.DBConfig;
 import org.apache.commons.io.FileUtils;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -15,8 +17,10 @@ import org.openjdk.jmh.infra.Blackhole;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -28,21 +32,39 @@ public class ReadBenchmarks extends BenchmarkBase {
     private static final Path TEST_DB_PATH = Path.of("testdb_read");
     private static final Boolean CLEAR_TEST_DB = false;
     private static final int HUNDRED_THOUSAND = 100_000;
+    private static final int KEYS_PER_GET_ALL = 500;
+
+    // 1.0 disables the bloom filters, to compare against lookups without them
+    @Param({"0.01", "1.0"})
+    public double bloomFilterFalsePositiveRate;
+
+    // 0 disables the block cache, the default holds the whole database in this benchmark
+    @Param({"0", "8000000"})
+    public long blockCacheSizeBytes;
 
     public KeyDB<String> db;
     public HashMap<String, String> data;
     public Set<String> missingKeys;
+    public List<List<String>> keyBatches;
 
     @Setup(Level.Trial)
     public void setUp() throws IOException {
         if (Files.isDirectory(TEST_DB_PATH)) {
             FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
         }
-        db = KeyDB.create(TEST_DB_PATH, String.class);
+        db = KeyDB.create(TEST_DB_PATH, DBConfig.builder()
+                .bloomFilterFalsePositiveRate(bloomFilterFalsePositiveRate)
+                .blockCacheSizeBytes(blockCacheSizeBytes)
+                .build(), String.class);
         // Bytes: 100_000 * 50 = 5_000_000 = 5 MB (~2.5 segments)
         data = generateData(HUNDRED_THOUSAND);
         populateDatabase(db, data);
         missingKeys = new HashSet<>(generateData(HUNDRED_THOUSAND).values());
+        final List<String> keys = new ArrayList<>(data.keySet());
+        keyBatches = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i += KEYS_PER_GET_ALL) {
+            keyBatches.add(keys.subList(i, Math.min(i + KEYS_PER_GET_ALL, keys.size())));
+        }
     }
 
     @TearDown(Level.Iteration)
@@ -55,7 +77,7 @@ public class ReadBenchmarks extends BenchmarkBase {
     @Benchmark
     @BenchmarkMode(Mode.AverageTime)
     @OutputTimeUnit(TimeUnit.SECONDS)
-    public void getHundredThousandExistingKeys(final WriteBenchmarks bench, final Blackhole bh) {
+    public void getHundredThousandExistingKeys(final Blackhole bh) {
         for (final String key: data.keySet()) {
             bh.consume(db.get(key));
         }
@@ -64,9 +86,31 @@ public class ReadBenchmarks extends BenchmarkBase {
     @Benchmark
     @BenchmarkMode(Mode.AverageTime)
     @OutputTimeUnit(TimeUnit.SECONDS)
-    public void getHundredThousandMissingKeys(final WriteBenchmarks bench, final Blackhole bh) {
+    public void getHundredThousandMissingKeys(final Blackhole bh) {
         for (final String key: missingKeys) {
             bh.consume(db.get(key));
         }
     }
+
+    // Looks up the same keys as getHundredThousandExistingKeys, a few hundred at a time
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void getAllHundredThousandExistingKeys(final Blackhole bh) {
+        for (final List<String> keys : keyBatches) {
+            bh.consume(db.getAll(keys));
+        }
+    }
+
+    // Reads the same keys as getHundredThousandExistingKeys with one sequential scan
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void scanHundredThousandKeys(final Blackhole bh) {
+        try (final CloseableIterator<Entry<String>> entries = db.scan("", "~")) {
+            while (entries.hasNext()) {
+                bh.consume(entries.next());
+            }
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package keydb;
+
+import keydb.config.DBConfig;
+import keydb.config.WalDurability;
+import keydb.types.ValueIO;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a MemTable log of a million entries, about 70MB, written in batches of a hundred.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecoveryBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DIR = Path.of("testdb_recovery");
+    private static final Path LOG_PATH = TEST_DIR.resolve("memtable");
+    private static final int ENTRIES = 1_000_000;
+    private static final int BATCH_SIZE = 100;
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(TEST_DIR.toFile());
+        Files.createDirectories(TEST_DIR);
+        try (final MemTable<String> memTable = new MemTable<>(LOG_PATH, valueIO,
+                DBConfig.builder().walDurability(WalDurability.NONE).build())) {
+            final WriteBatch<String> batch = new WriteBatch<>();
+            for (final Map.Entry<String, String> entry : generateData(ENTRIES).entrySet()) {
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() == BATCH_SIZE) {
+                    memTable.write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                memTable.write(batch);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(TEST_DIR.toFile());
+    }
+
+    @Benchmark
+    public MemTable<String> replayLog() throws Exception {
+        final MemTable<String> memTable = MemTable.from(LOG_PATH, valueIO).get();
+        memTable.close();
+        return memTable;
+    }
+}
@@ -0,0 +1,109 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.ServerConfig;
+import keydb.server.KeyDBClient;
+import keydb.server.KeyDBServer;
+import keydb.types.Codec;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and puts over a loopback connection to a server, each waiting for its response before
+ * the next is sent or with 128 of them pipelined on one connection. The embedded gets show what
+ * the network costs on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServerBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_server");
+    private static final int HUNDRED_THOUSAND = 100_000;
+    private static final int PIPELINED = 128;
+
+    public KeyDB<String> db;
+    public KeyDBServer<String> server;
+    public KeyDBClient<String> client;
+    public String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        db = KeyDB.create(TEST_DB_PATH, String.class);
+        final var data = generateData(HUNDRED_THOUSAND);
+        populateDatabase(db, data);
+        keys = data.keySet().toArray(String[]::new);
+        server = KeyDBServer.start(db, Codec.find(String.class, StandardCharsets.UTF_8).get(),
+                ServerConfig.builder().host("localhost").port(0).build());
+        client = KeyDBClient.connect(server.getAddress());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+        db.close();
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+    }
+
+    @Benchmark
+    public Option<String> getEmbedded() {
+        return db.get(randomKey());
+    }
+
+    @Benchmark
+    public Option<String> getOneAtATime() {
+        return client.get(randomKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Option<String> getOneAtATimeFourThreads() {
+        return client.get(randomKey());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINED)
+    public void getPipelined(final Blackhole bh) {
+        final CompletableFuture<?>[] gets = new CompletableFuture<?>[PIPELINED];
+        for (int i = 0; i < PIPELINED; i++) {
+            gets[i] = client.getAsync(randomKey());
+        }
+        for (final CompletableFuture<?> get : gets) {
+            bh.consume(get.join());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINED)
+    public void putPipelined() {
+        final CompletableFuture<?>[] puts = new CompletableFuture<?>[PIPELINED];
+        for (int i = 0; i < PIPELINED; i++) {
+            final String key = randomKey();
+            puts[i] = client.putAsync(key, key);
+        }
+        CompletableFuture.allOf(puts).join();
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+}
@@ -0,0 +1,74 @@
+package keydb;
+
+import keydb.config.DBConfig;
+import keydb.config.WalDurability;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts from eight threads into a database partitioned over a number of shards, each with its
+ * own log and MemTable. A fresh database is created for every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ShardedBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_sharded");
+    private static final int HUNDRED_THOUSAND = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    @Param({"PERIODIC", "SYNC"})
+    public WalDurability walDurability;
+
+    public ShardedKeyDB<String> db;
+    public String[] keys;
+    public String value;
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        keys = new String[HUNDRED_THOUSAND];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID().toString().substring(0, 14);
+        }
+        value = UUID.randomUUID().toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        db = ShardedKeyDB.create(TEST_DB_PATH, DBConfig.builder()
+                .shards(shards)
+                .walDurability(walDurability)
+                .build(), String.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        db.close();
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void putEightThreads() {
+        db.put(keys[ThreadLocalRandom.current().nextInt(keys.length)], value);
+    }
+}
@@ -0,0 +1,92 @@
+package keydb;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One thread overwriting keys while another scans ranges of a thousand of them, either of the
+ * live database or of a snapshot taken for each scan. A fresh database is created for every iteration.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SnapshotBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_snapshot");
+    private static final int HUNDRED_THOUSAND = 100_000;
+    private static final int SCAN_LENGTH = 1000;
+
+    @Param({"LIVE", "SNAPSHOT"})
+    public String reads;
+
+    public KeyDB<String> db;
+    public String[] keys;
+    public String value;
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        keys = new String[HUNDRED_THOUSAND];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID().toString().substring(0, 14);
+        }
+        Arrays.sort(keys);
+        value = UUID.randomUUID().toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        db = KeyDB.create(TEST_DB_PATH, String.class);
+        for (final String key : keys) {
+            db.put(key, value);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        db.close();
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+    }
+
+    @Benchmark
+    @Group("ingestDuringScans")
+    @GroupThreads(1)
+    public void put() {
+        db.put(keys[ThreadLocalRandom.current().nextInt(keys.length)], value);
+    }
+
+    @Benchmark
+    @Group("ingestDuringScans")
+    @GroupThreads(1)
+    public void scan(final Blackhole blackhole) {
+        final int from = ThreadLocalRandom.current().nextInt(keys.length - SCAN_LENGTH);
+        if (reads.equals("SNAPSHOT")) {
+            try (final Snapshot<String> snapshot = db.snapshot();
+                 final CloseableIterator<Entry<String>> entries = snapshot.scan(keys[from], keys[from + SCAN_LENGTH])) {
+                entries.forEachRemaining(blackhole::consume);
+            }
+        } else {
+            try (final CloseableIterator<Entry<String>> entries = db.scan(keys[from], keys[from + SCAN_LENGTH])) {
+                entries.forEachRemaining(blackhole::consume);
+            }
+        }
+    }
+}
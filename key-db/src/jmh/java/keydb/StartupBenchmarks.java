@@ -0,0 +1,71 @@
+package keydb;
+
+import keydb.config.CompactionStyle;
+import keydb.config.DBConfig;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from loading a database with many segments until its first read returns. Loading
+ * either uses the segment metadata of the manifest, or has to read every segment as it
+ * did before the manifest held any.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_startup");
+    private static final int ENTRIES_PER_SEGMENT = 100;
+
+    @Param({"100", "1000"})
+    public int segments;
+
+    @Param({"true", "false"})
+    public boolean segmentMetadata;
+
+    public Manifest manifest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (Files.isDirectory(TEST_DB_PATH)) {
+            FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        }
+        final KeyDB<String> db = KeyDB.create(TEST_DB_PATH, DBConfig.builder()
+                .memTableFlushSizeBytes(ENTRIES_PER_SEGMENT * 60)
+                .compactionStyle(CompactionStyle.NONE)
+                .build(), String.class);
+        for (int i = 0; i < segments * ENTRIES_PER_SEGMENT; i++) {
+            db.put(String.format("key%08d", i), "value of key number " + i);
+        }
+        db.close();
+        manifest = Manifest.from(TEST_DB_PATH.resolve("manifest.json")).get();
+    }
+
+    // Loading writes a manifest with metadata, put back the one this run starts from
+    @Setup(Level.Invocation)
+    public void restoreManifest() {
+        final Manifest start = segmentMetadata ? manifest : new Manifest(manifest.nextSegmentId(), manifest.levels());
+        start.write(TEST_DB_PATH.resolve("manifest.json")).get();
+    }
+
+    @Benchmark
+    public void loadAndReadOneKey(final Blackhole bh) throws Exception {
+        try (final KeyDB<String> db = KeyDB.load(TEST_DB_PATH, String.class)) {
+            bh.consume(db.get("key00000042"));
+        }
+    }
+}
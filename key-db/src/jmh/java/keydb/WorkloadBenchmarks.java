@@ -0,0 +1,182 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.CompactionStyle;
+import keydb.config.DBConfig;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixes of gets and puts over a fixed set of keys, parameterized by the size of the keys and
+ * values, how the keys are picked and whether the data sits in the MemTable or in many segments.
+ * Narrow the parameters from Gradle with for example
+ * {@code -PjmhParams="distribution=ZIPFIAN;dataset=SEGMENTS"}.
+ * <p>
+ * A WARM page cache reads every key once before the iteration starts. A COLD one reopens the
+ * database with the block cache disabled, so segments have to read their index and blocks again. The operating system cache is only
+ * dropped as well when {@code /proc/sys/vm/drop_caches} is writable, which needs root.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WorkloadBenchmarks extends BenchmarkBase {
+
+    private static final Path TEST_DB_PATH = Path.of("testdb_workload");
+    private static final Path DROP_CACHES = Path.of("/proc/sys/vm/drop_caches");
+
+    public enum Dataset {
+        // Few enough keys for all of them to stay in the MemTable
+        MEMTABLE(5_000, 64_000_000),
+        // Small MemTables and no compaction, so keys are spread over a few hundred segments
+        SEGMENTS(50_000, 256_000);
+
+        final int keys;
+        final long memTableFlushSizeBytes;
+
+        Dataset(final int keys, final long memTableFlushSizeBytes) {
+            this.keys = keys;
+            this.memTableFlushSizeBytes = memTableFlushSizeBytes;
+        }
+    }
+
+    public enum PageCache {
+        WARM,
+        COLD
+    }
+
+    @Param({"16", "64"})
+    public int keySize;
+
+    @Param({"100", "1000"})
+    public int valueSize;
+
+    @Param({"UNIFORM", "ZIPFIAN", "SEQUENTIAL"})
+    public KeyDistribution distribution;
+
+    @Param({"MEMTABLE", "SEGMENTS"})
+    public Dataset dataset;
+
+    @Param({"WARM", "COLD"})
+    public PageCache pageCache;
+
+    // Fraction of the operations that are gets, the rest are puts overwriting a key
+    @Param({"0.5", "0.95"})
+    public double readFraction;
+
+    public KeyDB<String> db;
+    public String[] keys;
+    public String value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[dataset.keys];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(i);
+        }
+        value = "v".repeat(valueSize);
+    }
+
+    // Puts grow the data set as the benchmark goes, so every iteration starts from a fresh copy
+    @Setup(Level.Iteration)
+    public void fill() throws Exception {
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+        db = KeyDB.create(TEST_DB_PATH, DBConfig.builder()
+                .memTableFlushSizeBytes(dataset.memTableFlushSizeBytes)
+                .compactionStyle(CompactionStyle.NONE)
+                .blockCacheSizeBytes(pageCache == PageCache.COLD ? 0 : 16_000_000)
+                .build(), String.class);
+        for (final String key : keys) {
+            db.put(key, value);
+        }
+        db.flush().get();
+        if (pageCache == PageCache.COLD) {
+            db.close();
+            dropPageCache();
+            db = KeyDB.load(TEST_DB_PATH, String.class);
+        } else {
+            for (final String key : keys) {
+                db.get(key);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void clean() throws Exception {
+        FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        KeyDistribution.Generator keys;
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(final WorkloadBenchmarks bench, final ThreadParams thread) {
+            keys = bench.distribution.generator(bench.dataset.keys, thread.getThreadIndex());
+            random = new SplittableRandom(thread.getThreadIndex());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Option<String> oneThread(final Client client) {
+        return operation(client);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Option<String> fourThreads(final Client client) {
+        return operation(client);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Option<String> sixteenThreads(final Client client) {
+        return operation(client);
+    }
+
+    private Option<String> operation(final Client client) {
+        final String key = keys[client.keys.next()];
+        if (client.random.nextDouble() < readFraction) {
+            return db.get(key);
+        }
+        db.put(key, value);
+        return Option.none();
+    }
+
+    // The number padded with zeros to the key size, so keys sort in the order of their number
+    private String key(final int number) {
+        final String digits = Integer.toString(number);
+        return "0".repeat(Math.max(0, keySize - digits.length())) + digits;
+    }
+
+    private static void dropPageCache() throws Exception {
+        if (Files.isWritable(DROP_CACHES)) {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            Files.writeString(DROP_CACHES, "1", StandardCharsets.US_ASCII);
+        }
+    }
+}
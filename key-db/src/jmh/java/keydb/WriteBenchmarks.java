@@ -1,15 +1,19 @@
 package keydb;
 
+import keydb.config.DBConfig;
+import keydb.config.WalDurability;
 import org.apache.commons.io.FileUtils;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.infra.Blackhole;
 
 import java.io.IOException;
@@ -26,6 +30,9 @@ public class WriteBenchmarks extends BenchmarkBase {
     private static final Boolean CLEAR_TEST_DB = false;
     private static final int TEN_THOUSAND = 10_000;
 
+    @Param({"NONE", "PERIODIC", "GROUP_COMMIT", "SYNC"})
+    public WalDurability walDurability;
+
     public KeyDB<String> db;
     public HashMap<String, String> data;
 
@@ -34,12 +41,13 @@ public class WriteBenchmarks extends BenchmarkBase {
         if (Files.isDirectory(TEST_DB_PATH)) {
             FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
         }
-        db = KeyDB.create(TEST_DB_PATH, String.class);
+        db = KeyDB.create(TEST_DB_PATH, DBConfig.builder().walDurability(walDurability).build(), String.class);
         data = generateData(TEN_THOUSAND);
     }
 
     @TearDown(Level.Iteration)
-    public void tearDown() throws IOException {
+    public void tearDown() throws Exception {
+        db.close();
         if (CLEAR_TEST_DB) {
             FileUtils.deleteDirectory(TEST_DB_PATH.toFile());
         }
@@ -53,4 +61,36 @@ public class WriteBenchmarks extends BenchmarkBase {
             bench.db.put(UUID.randomUUID().toString().substring(0, 14), UUID.randomUUID().toString());
         }
     }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void write1MegaByteInBatches(final WriteBenchmarks bench, final Blackhole bh) {
+        final WriteBatch<String> batch = new WriteBatch<>();
+        for (int i = 0; i < TEN_THOUSAND; i++) {
+            batch.put(UUID.randomUUID().toString().substring(0, 14), UUID.randomUUID().toString());
+            if (batch.size() == 100) {
+                bench.db.write(batch);
+                batch.clear();
+            }
+        }
+        bench.db.write(batch);
+    }
+
+    // Concurrent writers, under GROUP_COMMIT they share the forces of the log
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void putFourThreads(final WriteBenchmarks bench) {
+        bench.db.put(UUID.randomUUID().toString().substring(0, 14), UUID.randomUUID().toString());
+    }
+
+    // Latency distribution of single puts, the tail shows the puts that had to flush a MemTable
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void put(final WriteBenchmarks bench) {
+        bench.db.put(UUID.randomUUID().toString().substring(0, 14), UUID.randomUUID().toString());
+    }
 }
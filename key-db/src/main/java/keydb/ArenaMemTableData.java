@@ -0,0 +1,240 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.file.ByteBufferDataInput;
+import keydb.types.Codec;
+import keydb.types.ValueIO;
+import keydb.types.VarInt;
+import lombok.SneakyThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Entries serialized into chunks of memory outside the heap, indexed by a skip list from the
+ * key of each entry to the address of its latest version. The heap only holds the nodes of the
+ * skip list, so a large table leaves few objects for the garbage collector to trace.
+ * <p>
+ * Entries are encoded the way segments store them, see {@link Entry#writeWithKind}, so that a
+ * flush copies them into the blocks of the segment without encoding them again. Each entry is
+ * preceded by a header of its length, the position and length of its encoded key, which keys
+ * are compared by, with the codec of the type when there is one, its sequence and the address
+ * of the version of the key it replaced. The size of the table is the exact number of bytes
+ * taken up in the chunks.
+ * <p>
+ * Chunks are never reused, an overwritten entry keeps its bytes until the table is dropped and
+ * the chunks are freed along with it. Reads as of an older sequence follow the addresses back.
+ */
+final class ArenaMemTableData<T extends Comparable<T>> implements MemTableData<T> {
+
+    static final int CHUNK_BYTES = 1 << 20;
+    static final int HEADER_BYTES = 3 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int SEQUENCE_OFFSET = 3 * Integer.BYTES;
+    private static final int PREVIOUS_OFFSET = SEQUENCE_OFFSET + Long.BYTES;
+    private static final long NO_ADDRESS = -1;
+
+    private final ValueIO<T> entryIO;
+    private final Option<Codec<T>> codec;
+    private final ConcurrentNavigableMap<Key, Long> index;
+    // Replaced by a larger copy whenever a chunk is added, readers reach a chunk only
+    // through an address published by the index after the array holding it
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile long size;
+
+    // Only used by the writer
+    private final EntryBuffer entryBuffer = new EntryBuffer();
+    private final DataOutputStream entryOutput = new DataOutputStream(entryBuffer);
+
+    ArenaMemTableData(final ValueIO<T> valueIO, final DBConfig config) {
+        this.codec = valueIO.getCodec(config.getCharset());
+        this.entryIO = SegmentFormat.entryIO(valueIO, codec);
+        this.index = new ConcurrentSkipListMap<>(codec.isDefined()
+                ? (Comparator<Key>) this::compareEncoded
+                : Comparator.comparing(this::decodeKey));
+    }
+
+    @Override
+    public void putAll(final List<Entry<T>> entries, final IntToLongFunction sequences, final long loggedBytes) {
+        for (int i = 0; i < entries.size(); i++) {
+            final long address = append(entries.get(i), sequences.applyAsLong(i));
+            final ByteBuffer chunk = chunk(address);
+            final int offset = (int) address;
+            final Key key = new Key(chunk, offset + HEADER_BYTES + chunk.getInt(offset + Integer.BYTES),
+                    chunk.getInt(offset + 2 * Integer.BYTES));
+            // A single lookup for new keys. An overwrite is linked to the version it replaces
+            // before the index publishes it, so readers never miss an older version
+            final Long previous = index.putIfAbsent(key, address);
+            if (previous != null) {
+                chunk.putLong(offset + PREVIOUS_OFFSET, previous);
+                index.put(key, address);
+            }
+        }
+    }
+
+    @Override
+    public Option<Entry<T>> get(final T key, final long sequence) {
+        return Option.of(index.get(probe(key)))
+                .map(address -> visibleAt(address, sequence))
+                .filter(address -> address != NO_ADDRESS)
+                .map(this::read);
+    }
+
+    @Override
+    public CloseableIterator<Entry<T>> iterator(final T fromKey, final T toKey, final long sequence) {
+        return CloseableIterator.of(io.vavr.collection.Iterator
+                .ofAll(index.subMap(probe(fromKey), true, probe(toKey), false).values())
+                .map(address -> visibleAt(address, sequence))
+                .filter(address -> address != NO_ADDRESS)
+                .map(this::read));
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Streams the encoded entries into the blocks of the segment, only their keys are decoded.
+     */
+    @Override
+    public Segment<T> writeSegment(
+            final Path segmentDir, final Integer id, final ValueIO<T> valueIO, final DBConfig config) {
+        final Iterator<SegmentWriter.EncodedEntry<T>> entries = io.vavr.collection.Iterator
+                .ofAll(index.values())
+                .map(this::encodedEntry);
+        return SegmentWriter.writeEncoded(segmentDir, id, entries, index.size(), valueIO, config).get();
+    }
+
+    private SegmentWriter.EncodedEntry<T> encodedEntry(final long address) {
+        final ByteBuffer chunk = chunk(address);
+        final int offset = (int) address;
+        return new SegmentWriter.EncodedEntry<>() {
+            @Override
+            public T key() {
+                return decodeKey(chunk, offset);
+            }
+
+            @Override
+            public void writeTo(final DataOutputStream output) throws IOException {
+                final int length = chunk.getInt(offset);
+                entryBuffer.reset();
+                entryBuffer.write(chunk.slice(offset + HEADER_BYTES, length), length);
+                output.write(entryBuffer.bytes(), 0, length);
+            }
+        };
+    }
+
+    // Writes the entry at the end of the last chunk, or into a new one if it does not fit
+    @SneakyThrows
+    private long append(final Entry<T> entry, final long sequence) {
+        entryBuffer.reset();
+        final int keyOffset;
+        final int keyLength;
+        if (codec.isDefined()) {
+            keyLength = codec.get().encodedSize(entry.key());
+            keyOffset = VarInt.size(keyLength);
+        } else {
+            entryIO.write(entry.key(), entryOutput);
+            keyLength = entryBuffer.size();
+            keyOffset = 0;
+            entryBuffer.reset();
+        }
+        entry.writeWithKind(entryOutput, entryIO);
+        final int length = HEADER_BYTES + entryBuffer.size();
+
+        ByteBuffer[] current = chunks;
+        ByteBuffer chunk = current.length == 0 ? null : current[current.length - 1];
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, length));
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = chunk;
+            chunks = current;
+        }
+        final int offset = chunk.position();
+        chunk.putInt(entryBuffer.size()).putInt(keyOffset).putInt(keyLength).putLong(sequence).putLong(NO_ADDRESS);
+        chunk.put(entryBuffer.bytes(), 0, entryBuffer.size());
+        size += length;
+        return ((long) (current.length - 1) << 32) | offset;
+    }
+
+    // The address of the newest version written at or before the sequence, starting from the one at the address
+    private long visibleAt(final long address, final long sequence) {
+        long current = address;
+        while (current != NO_ADDRESS && chunk(current).getLong((int) current + SEQUENCE_OFFSET) > sequence) {
+            current = chunk(current).getLong((int) current + PREVIOUS_OFFSET);
+        }
+        return current;
+    }
+
+    private ByteBuffer chunk(final long address) {
+        return chunks[(int) (address >>> 32)];
+    }
+
+    @SneakyThrows
+    private Entry<T> read(final long address) {
+        final ByteBuffer chunk = chunk(address);
+        final int offset = (int) address;
+        return Entry.readWithKind(
+                new ByteBufferDataInput(chunk.slice(offset + HEADER_BYTES, chunk.getInt(offset))), entryIO);
+    }
+
+    // The key of the entry at the offset
+    @SneakyThrows
+    private T decodeKey(final ByteBuffer chunk, final int offset) {
+        return entryIO.read(new ByteBufferDataInput(chunk.slice(offset + HEADER_BYTES, chunk.getInt(offset))));
+    }
+
+    // Keys of the index are encoded by entryIO when there is no codec
+    @SneakyThrows
+    private T decodeKey(final Key key) {
+        return entryIO.read(new ByteBufferDataInput(key.buffer().slice(key.offset(), key.length())));
+    }
+
+    private int compareEncoded(final Key a, final Key b) {
+        return codec.get().compare(a.buffer(), a.offset(), a.length(), b.buffer(), b.offset(), b.length());
+    }
+
+    // A key on the heap to look up in the index
+    @SneakyThrows
+    private Key probe(final T key) {
+        if (codec.isDefined()) {
+            final ByteBuffer encoded = ByteBuffer.allocate(codec.get().encodedSize(key));
+            codec.get().encode(key, encoded);
+            return new Key(encoded, 0, encoded.capacity());
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        entryIO.write(key, new DataOutputStream(bytes));
+        return new Key(ByteBuffer.wrap(bytes.toByteArray()), 0, bytes.size());
+    }
+
+    // Encoded key at an absolute position of a buffer, which is never moved
+    private record Key(ByteBuffer buffer, int offset, int length) {
+    }
+
+    private static class EntryBuffer extends ByteArrayOutputStream {
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        // Appends the remaining bytes of the buffer
+        void write(final ByteBuffer source, final int length) {
+            if (buf.length < count + length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + length));
+            }
+            source.get(buf, count, length);
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package keydb;
+
+import io.vavr.control.Option;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache of decoded segment blocks, shared by all segments of a database and
+ * keyed by segment id and block offset. The cache is split into shards that each evict their
+ * least recently used blocks, so lookups of different blocks rarely contend on the same lock.
+ */
+public class BlockCache<T extends Comparable<T>> {
+
+    private static final int SHARDS = 16;
+
+    private final List<Shard<T>> shards;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private BlockCache(final List<Shard<T>> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Creates a cache holding blocks of up to {@code capacityBytes} in uncompressed size,
+     * a capacity of zero disables the cache.
+     */
+    public static <P extends Comparable<P>> BlockCache<P> create(final long capacityBytes) {
+        if (capacityBytes <= 0) {
+            return disabled();
+        }
+        final List<Shard<P>> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new Shard<>(Math.max(1, capacityBytes / SHARDS)));
+        }
+        return new BlockCache<>(List.copyOf(shards));
+    }
+
+    public static <P extends Comparable<P>> BlockCache<P> disabled() {
+        return new BlockCache<>(List.of());
+    }
+
+    public boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    public Option<Block<T>> get(final int segmentId, final long blockOffset) {
+        final BlockKey key = new BlockKey(segmentId, blockOffset);
+        final Option<Block<T>> block = shard(key).get(key);
+        (block.isDefined() ? hits : misses).increment();
+        return block;
+    }
+
+    /**
+     * Adds a decoded block, {@code weight} is its uncompressed size.
+     */
+    public void put(final int segmentId, final long blockOffset, final Block<T> block, final int weight) {
+        final BlockKey key = new BlockKey(segmentId, blockOffset);
+        shard(key).put(key, new Weighted<>(block, weight));
+    }
+
+    /**
+     * Drops all blocks of a segment, called once the segment has been deleted.
+     */
+    public void invalidate(final int segmentId) {
+        shards.forEach(shard -> shard.invalidate(segmentId));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getSizeBytes() {
+        return shards.stream().mapToLong(Shard::getSize).sum();
+    }
+
+    // Block offsets are often multiples of a common size, so the bits of the
+    // hash are mixed before picking a shard to not pile a segment into one of them
+    private Shard<T> shard(final BlockKey key) {
+        final long hash = (key.blockOffset() * 31 + key.segmentId()) * 0x9E3779B97F4A7C15L;
+        return shards.get((int) ((hash >>> 32) % shards.size()));
+    }
+
+    /**
+     * The entries of one block and their keys, in sorted order.
+     */
+    public record Block<T extends Comparable<T>>(List<T> keys, List<Entry<T>> entries) {
+
+        public Option<Entry<T>> get(final T key) {
+            final int index = Collections.binarySearch(keys, key);
+            return index < 0 ? Option.none() : Option.some(entries.get(index));
+        }
+    }
+
+    private record BlockKey(int segmentId, long blockOffset) {
+    }
+
+    private record Weighted<T extends Comparable<T>>(Block<T> block, int weight) {
+    }
+
+    private static class Shard<T extends Comparable<T>> {
+
+        private final long capacity;
+        // Iterates from the least to the most recently used block
+        private final LinkedHashMap<BlockKey, Weighted<T>> blocks = new LinkedHashMap<>(16, 0.75f, true);
+        private long size;
+
+        Shard(final long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized Option<Block<T>> get(final BlockKey key) {
+            return Option.of(blocks.get(key)).map(Weighted::block);
+        }
+
+        synchronized void put(final BlockKey key, final Weighted<T> block) {
+            final Weighted<T> previous = blocks.put(key, block);
+            size += block.weight() - (previous == null ? 0 : previous.weight());
+
+            final var eldest = blocks.entrySet().iterator();
+            while (size > capacity && eldest.hasNext()) {
+                size -= eldest.next().getValue().weight();
+                eldest.remove();
+            }
+        }
+
+        synchronized void invalidate(final int segmentId) {
+            final var iterator = blocks.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<BlockKey, Weighted<T>> entry = iterator.next();
+                if (entry.getKey().segmentId() == segmentId) {
+                    size -= entry.getValue().weight();
+                    iterator.remove();
+                }
+            }
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package keydb;
+
+import io.vavr.control.Try;
+import keydb.file.OutputFileManager;
+import keydb.types.ValueIO;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Probabilistic set of the keys stored in a segment. A negative answer from
+ * {@link #mightContain(Comparable)} is definite, which lets lookups of missing
+ * keys skip the segment without touching its data file.
+ */
+@EqualsAndHashCode(exclude = {"valueIO"})
+public class BloomFilter<T extends Comparable<T>> {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    @Getter
+    private final int numHashFunctions;
+    private final ValueIO<T> valueIO;
+    // Number of keys added, used to size the filters of merged segments
+    @Getter
+    private long numEntries;
+
+    private BloomFilter(final long[] bits, final int numHashFunctions, final long numEntries, final ValueIO<T> valueIO) {
+        this.bits = bits;
+        this.numHashFunctions = numHashFunctions;
+        this.numEntries = numEntries;
+        this.valueIO = valueIO;
+    }
+
+    /**
+     * Creates a filter sized to hold {@code expectedEntries} keys at the given
+     * false positive rate. A rate of 1.0 or above yields a filter that matches everything.
+     */
+    public static <P extends Comparable<P>> BloomFilter<P> create(
+            final long expectedEntries, final double falsePositiveRate, final ValueIO<P> valueIO) {
+        if (expectedEntries <= 0 || falsePositiveRate >= 1.0) {
+            return empty(valueIO);
+        }
+
+        final long numBits = Math.max(64, (long) Math.ceil(
+                -expectedEntries * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        final int numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedEntries * LN2));
+
+        return new BloomFilter<>(new long[(int) ((numBits + 63) / 64)], numHashFunctions, 0, valueIO);
+    }
+
+    /**
+     * A filter without any bits, it will report every key as possibly present.
+     */
+    public static <P extends Comparable<P>> BloomFilter<P> empty(final ValueIO<P> valueIO) {
+        return new BloomFilter<>(new long[0], 0, 0, valueIO);
+    }
+
+    public void add(final T key) {
+        numEntries++;
+        if (bits.length == 0) {
+            return;
+        }
+
+        final long hash = hash(key);
+        for (int i = 1; i <= numHashFunctions; i++) {
+            final long bit = bitIndex(hash, i);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(final T key) {
+        if (bits.length == 0) {
+            return true;
+        }
+
+        final long hash = hash(key);
+        for (int i = 1; i <= numHashFunctions; i++) {
+            final long bit = bitIndex(hash, i);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getNumBits() {
+        return (long) bits.length * 64;
+    }
+
+    public Try<Path> write(final Path path) {
+        return write(path, false);
+    }
+
+    /**
+     * Writes the filter to a new file, forced to disk before returning if {@code force} is set.
+     */
+    public Try<Path> write(final Path path, final boolean force) {
+        return Try.of(() -> Files.createFile(path))
+                .andThenTry(() -> {
+                    try (final OutputFileManager outputFileManager = new OutputFileManager(path)) {
+                        outputFileManager.runWithOutput(dataOutputStream -> {
+                            dataOutputStream.writeLong(numEntries);
+                            dataOutputStream.writeInt(numHashFunctions);
+                            dataOutputStream.writeInt(bits.length);
+                            for (final long word : bits) {
+                                dataOutputStream.writeLong(word);
+                            }
+                        });
+                        if (force) {
+                            outputFileManager.flush();
+                            outputFileManager.force();
+                        }
+                    }
+                });
+    }
+
+    public static <P extends Comparable<P>> Try<BloomFilter<P>> from(final Path path, final ValueIO<P> valueIO) {
+        return Try.of(() -> FileUtils.applyWithInput(path, dataInputStream -> {
+            final long numEntries = dataInputStream.readLong();
+            final int numHashFunctions = dataInputStream.readInt();
+            final long[] bits = new long[dataInputStream.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = dataInputStream.readLong();
+            }
+            return new BloomFilter<>(bits, numHashFunctions, numEntries, valueIO);
+        }));
+    }
+
+    // Kirsch-Mitzenmacher: derive the i:th hash function as h1 + i * h2
+    private long bitIndex(final long hash, final int i) {
+        final long combined = (hash + i * (hash >>> 32)) & Long.MAX_VALUE;
+        return combined % getNumBits();
+    }
+
+    private long hash(final T key) {
+        return KeyHash.of(key, valueIO);
+    }
+}
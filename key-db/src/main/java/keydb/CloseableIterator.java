@@ -0,0 +1,59 @@
+package keydb;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * Iterator backed by an open resource, such as a segment file, which
+ * must be closed once the caller is done with it.
+ */
+public interface CloseableIterator<E> extends Iterator<E>, AutoCloseable {
+
+    @Override
+    void close();
+
+    /**
+     * Skips the elements not matching the predicate, closing the result closes this iterator.
+     */
+    default CloseableIterator<E> filter(final Predicate<? super E> predicate) {
+        final Iterator<E> filtered = io.vavr.collection.Iterator.ofAll(this).filter(predicate);
+        final CloseableIterator<E> source = this;
+        return new CloseableIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return filtered.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return filtered.next();
+            }
+
+            @Override
+            public void close() {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * Wraps an iterator that holds no resources, closing it does nothing.
+     */
+    static <E> CloseableIterator<E> of(final Iterator<E> iterator) {
+        return new CloseableIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package keydb;
+
+import io.vavr.control.Option;
+import io.vavr.control.Try;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Merges the inputs of a {@link CompactionTask} into new segments where the newest
+ * value of each key wins. The new segments are written next to the inputs under
+ * fresh ids, they only become live once they are recorded in the {@link Manifest}.
+ * <p>
+ * Tombstones and expired entries are dropped along with the older values they hide, unless
+ * a segment older than the inputs may still hold the key. Expired entries kept for that
+ * reason are written as tombstones.
+ */
+public class Compaction<T extends Comparable<T>> {
+
+    private final CompactionTask<T> task;
+    // Live segments holding data older than the inputs
+    private final List<Segment<T>> olderSegments;
+    private final Path segmentDir;
+    private final Supplier<Integer> nextSegmentId;
+    private final ValueIO<T> valueIO;
+    private final DBConfig config;
+
+    public Compaction(
+            final CompactionTask<T> task,
+            final List<Segment<T>> olderSegments,
+            final Path segmentDir,
+            final Supplier<Integer> nextSegmentId,
+            final ValueIO<T> valueIO,
+            final DBConfig config) {
+        this.task = task;
+        this.olderSegments = olderSegments;
+        this.segmentDir = segmentDir;
+        this.nextSegmentId = nextSegmentId;
+        this.valueIO = valueIO;
+        this.config = config;
+    }
+
+    /**
+     * Writes the merged segments, split by {@link CompactionTask#maxSegmentBytes()}. There are
+     * none if every entry has been purged.
+     */
+    public Try<List<Segment<T>>> run() {
+        final List<Path> outputDirs = new ArrayList<>();
+
+        return Try.of(() -> {
+            final List<CloseableIterator<Entry<T>>> sources = new ArrayList<>();
+            try {
+                for (final Segment<T> input : task.inputs()) {
+                    sources.add(input.iterator(valueIO).get());
+                }
+            } catch (final Throwable e) {
+                // Try.get rethrows the IOException of a failed open as it is
+                sources.forEach(CloseableIterator::close);
+                throw e;
+            }
+
+            final List<Segment<T>> outputs = new ArrayList<>();
+            final long now = System.currentTimeMillis();
+            try (final MergingIterator<T> merged = new MergingIterator<>(sources)) {
+                final Iterator<Entry<T>> purged = io.vavr.collection.Iterator.ofAll(merged)
+                        .flatMap(entry -> purge(entry, now));
+                while (purged.hasNext()) {
+                    final Integer id = nextSegmentId.get();
+                    final Path outputDir = segmentDir.resolve(id.toString());
+                    outputDirs.add(outputDir);
+                    Files.createDirectory(outputDir);
+                    FileUtils.forceDirectory(segmentDir);
+
+                    outputs.add(SegmentWriter.write(outputDir, id, purged, getExpectedEntriesPerOutput(),
+                            task.maxSegmentBytes(), valueIO, config).get());
+                }
+            }
+            return outputs;
+        }).onFailure(e -> outputDirs.forEach(dir -> Try.run(() -> FileUtils.deleteDirectory(dir))));
+    }
+
+    private Option<Entry<T>> purge(final Entry<T> entry, final long nowMillis) {
+        if (entry.isLive(nowMillis)) {
+            return Option.some(entry);
+        }
+        if (olderSegments.stream().noneMatch(segment -> segment.mightContain(entry.key()))) {
+            return Option.none();
+        }
+        return Option.some(entry.isTombstone() ? entry : Entry.tombstone(entry.key()));
+    }
+
+    // Sizes the bloom filters, assuming entries are spread evenly over the outputs
+    private long getExpectedEntriesPerOutput() {
+        final long entries = task.inputs().stream()
+                .mapToLong(input -> input.getBloomFilter().getNumEntries())
+                .sum();
+        final long bytes = task.inputs().stream().mapToLong(Segment::getDataSize).sum();
+        if (bytes <= task.maxSegmentBytes()) {
+            return entries;
+        }
+        return (long) Math.ceil(entries * ((double) task.maxSegmentBytes() / bytes));
+    }
+}
@@ -0,0 +1,20 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+
+/**
+ * Decides which segments to merge next.
+ */
+public interface CompactionStrategy<T extends Comparable<T>> {
+
+    Option<CompactionTask<T>> pick(Version<T> version);
+
+    static <P extends Comparable<P>> CompactionStrategy<P> of(final DBConfig config) {
+        return switch (config.getCompactionStyle()) {
+            case NONE -> version -> Option.none();
+            case SIZE_TIERED -> new SizeTieredCompactionStrategy<>(config);
+            case LEVELED -> new LeveledCompactionStrategy<>(config);
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package keydb;
+
+import java.util.List;
+
+/**
+ * Segments picked by a {@link CompactionStrategy} to be merged into {@code outputLevel}.
+ *
+ * @param inputs          segments to merge, ordered from newest to oldest
+ * @param outputLevel     level the merged segments are placed in
+ * @param maxSegmentBytes the merged data is split into segments of about this size
+ */
+public record CompactionTask<T extends Comparable<T>>(List<Segment<T>> inputs, int outputLevel, long maxSegmentBytes) {
+
+    /**
+     * A single segment moving down to a level where it overlaps nothing can be moved without rewriting it.
+     */
+    public boolean isTrivialMove() {
+        return inputs.size() == 1 && outputLevel > 0;
+    }
+}
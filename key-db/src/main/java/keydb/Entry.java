@@ -2,30 +2,120 @@ package keydb;
 
 import keydb.types.ValueIO;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 
 /**
  * Represents a single entry (key-value pair) that can be stored
  * and retrieved from the database.
+ * <p>
+ * A deleted key is stored as a tombstone, an entry without a value that hides all older
+ * values of the key. Entries put with a TTL carry the time they expire at, after which
+ * they hide older values the same way.
  */
-public record Entry<T extends Comparable<T>>(T key, T value) {
+public record Entry<T extends Comparable<T>>(T key, T value, long expiresAtMillis) {
+
+    // Expiry of entries that live until they are overwritten or deleted
+    public static final long NEVER = Long.MAX_VALUE;
+
+    // Kinds of entries, written after the key by the formats that support deletes
+    static final byte PUT = 0;
+    static final byte EXPIRING_PUT = 1;
+    static final byte TOMBSTONE = 2;
+
+    public Entry(final T key, final T value) {
+        this(key, value, NEVER);
+    }
+
     public static <P extends Comparable<P>> Entry<P> of(final Map.Entry<P, P> entry) {
         return new Entry<>(entry.getKey(), entry.getValue());
     }
 
-    public static <P extends Comparable<P>> Entry<P> read(final DataInputStream dataInput, final ValueIO<P> valueIO) throws IOException {
+    public static <P extends Comparable<P>> Entry<P> tombstone(final P key) {
+        return new Entry<>(key, null, NEVER);
+    }
+
+    /**
+     * The time an entry put now with the given TTL expires at.
+     */
+    public static long expiresAfter(final Duration ttl) {
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("TTL must not be negative");
+        }
+        final long now = System.currentTimeMillis();
+        return ttl.compareTo(Duration.ofMillis(NEVER - now)) >= 0 ? NEVER : now + ttl.toMillis();
+    }
+
+    public boolean isTombstone() {
+        return value == null;
+    }
+
+    public boolean isExpired(final long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+
+    /**
+     * Whether the entry holds a value at the given time, rather than hiding the key.
+     */
+    public boolean isLive(final long nowMillis) {
+        return !isTombstone() && !isExpired(nowMillis);
+    }
+
+    /**
+     * Reads an entry of a format written before deletes existed, a key followed by its value.
+     */
+    public static <P extends Comparable<P>> Entry<P> read(final DataInput dataInput, final ValueIO<P> valueIO) throws IOException {
         final P key = valueIO.read(dataInput);
         final P value = valueIO.read(dataInput);
         return new Entry<>(key, value);
     }
 
+    /**
+     * Reads an entry written by {@link #writeWithKind(DataOutputStream, ValueIO)}.
+     */
+    public static <P extends Comparable<P>> Entry<P> readWithKind(final DataInput dataInput, final ValueIO<P> valueIO) throws IOException {
+        final P key = valueIO.read(dataInput);
+        final byte kind = dataInput.readByte();
+        return switch (kind) {
+            case PUT -> new Entry<>(key, valueIO.read(dataInput));
+            case EXPIRING_PUT -> {
+                final long expiresAt = dataInput.readLong();
+                yield new Entry<>(key, valueIO.read(dataInput), expiresAt);
+            }
+            case TOMBSTONE -> tombstone(key);
+            default -> throw new IOException("Unknown entry kind " + kind);
+        };
+    }
+
+    /**
+     * Writes the key and value only, for formats written before deletes existed.
+     */
     public long write(final DataOutputStream dataOutput, final ValueIO<T> valueIO) throws IOException {
         final int sizeBefore = dataOutput.size();
         valueIO.write(key, dataOutput);
         valueIO.write(value, dataOutput);
         return dataOutput.size() - sizeBefore;
     }
+
+    /**
+     * Writes the key, the kind of the entry and the expiry and value if it has them.
+     */
+    public long writeWithKind(final DataOutputStream dataOutput, final ValueIO<T> valueIO) throws IOException {
+        final int sizeBefore = dataOutput.size();
+        valueIO.write(key, dataOutput);
+        if (isTombstone()) {
+            dataOutput.writeByte(TOMBSTONE);
+        } else if (expiresAtMillis != NEVER) {
+            dataOutput.writeByte(EXPIRING_PUT);
+            dataOutput.writeLong(expiresAtMillis);
+            valueIO.write(value, dataOutput);
+        } else {
+            dataOutput.writeByte(PUT);
+            valueIO.write(value, dataOutput);
+        }
+        return dataOutput.size() - sizeBefore;
+    }
 }
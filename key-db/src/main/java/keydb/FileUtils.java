@@ -7,11 +7,17 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
 
 public final class FileUtils {
 
@@ -34,4 +40,52 @@ public final class FileUtils {
         @Cleanup final DataOutputStream dataOutputStream = new DataOutputStream(bufferedOutputStream);
         return function.apply(dataOutputStream);
     }
+
+    /**
+     * Like {@link #applyWithOutput(Path, CheckedFunction1, OpenOption...)} with the default options,
+     * the file is forced to disk before returning if {@code force} is set.
+     */
+    public static <R> R applyWithOutput(
+            final Path path,
+            final boolean force,
+            final CheckedFunction1<DataOutputStream, R> function) throws Throwable {
+        @Cleanup final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        @Cleanup final DataOutputStream dataOutputStream = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+        final R result = function.apply(dataOutputStream);
+        dataOutputStream.flush();
+        if (force) {
+            channel.force(false);
+        }
+        return result;
+    }
+
+    /**
+     * Forces the entries of the directory to disk, so that files created in, renamed into or
+     * removed from it stay that way after a crash. Skipped on platforms and file systems that
+     * cannot open a directory, such as Windows.
+     */
+    public static void forceDirectory(final Path path) throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (final IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    public static void deleteDirectory(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (final Stream<Path> paths = Files.walk(path)) {
+            for (final Path file : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+import lombok.EqualsAndHashCode;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Entries kept as objects in a skip list on the heap, each key mapped to a chain of its
+ * versions, newest first. The size is the number of bytes the entries took up in the log,
+ * which leaves out the overhead of the objects.
+ */
+@EqualsAndHashCode(exclude = "size")
+final class HeapMemTableData<T extends Comparable<T>> implements MemTableData<T> {
+
+    private final ConcurrentNavigableMap<T, Node<T>> data = new ConcurrentSkipListMap<>();
+    private volatile long size;
+
+    @Override
+    public void putAll(final List<Entry<T>> entries, final IntToLongFunction sequences, final long loggedBytes) {
+        for (int i = 0; i < entries.size(); i++) {
+            final Entry<T> entry = entries.get(i);
+            final long sequence = sequences.applyAsLong(i);
+            // A single lookup for new keys, overwrites link the version they replace
+            final Node<T> older = data.putIfAbsent(entry.key(), new Node<>(entry, sequence, null));
+            if (older != null) {
+                data.put(entry.key(), new Node<>(entry, sequence, older));
+            }
+        }
+        size += loggedBytes;
+    }
+
+    @Override
+    public Option<Entry<T>> get(final T key, final long sequence) {
+        return Option.of(data.get(key)).flatMap(node -> Option.of(node.visibleAt(sequence)));
+    }
+
+    @Override
+    public CloseableIterator<Entry<T>> iterator(final T fromKey, final T toKey, final long sequence) {
+        return CloseableIterator.of(io.vavr.collection.Iterator
+                .ofAll(data.subMap(fromKey, true, toKey, false).values())
+                .map(node -> node.visibleAt(sequence))
+                .filter(Objects::nonNull));
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public Segment<T> writeSegment(
+            final Path segmentDir, final Integer id, final ValueIO<T> valueIO, final DBConfig config) {
+        return SegmentWriter.write(segmentDir, id, io.vavr.collection.Iterator.ofAll(data.values()).map(Node::entry),
+                data.size(), valueIO, config).get();
+    }
+
+    // A version of a key, linked to the one it replaced
+    private record Node<T extends Comparable<T>>(Entry<T> entry, long sequence, Node<T> older) {
+
+        // The newest entry written at or before the sequence, null if the key did not exist yet
+        Entry<T> visibleAt(final long sequence) {
+            Node<T> node = this;
+            while (node != null && node.sequence > sequence) {
+                node = node.older;
+            }
+            return node == null ? null : node.entry;
+        }
+    }
+}
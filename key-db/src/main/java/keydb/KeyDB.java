@@ -1,9 +1,14 @@
 package keydb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.Lazy;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
 import keydb.config.DBConfig;
+import keydb.config.WalDurability;
+import keydb.metrics.KeyDBMetrics;
 import keydb.types.ValueIO;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -16,8 +21,39 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -25,24 +61,71 @@ import java.util.stream.Stream;
 //
 // db/
 //      memtable
+//      memtable.7      (frozen MemTable waiting to be flushed to segment 7)
 //      config.json
+//      manifest.json
 //      segments/
 //              0/
 //                  index
 //                  data
+//                  bloom
 //              1/
 //                  index
 //                  data
+//                  bloom
 
+/**
+ * Log-structured key-value store. All operations are safe to call from any number of threads.
+ * Reads never block, writes are serialized on the write-ahead log of the MemTable. A full
+ * MemTable is frozen and flushed to a segment in the background while writes go to a new one.
+ */
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
-public class KeyDB<T extends Comparable<T>> {
+public class KeyDB<T extends Comparable<T>> implements AutoCloseable {
 
     private final Path rootPath;
-    private MemTable<T> memTable;
-    private final Deque<Segment<T>> segments;
+    private volatile MemTables<T> memTables;
+    // Replaced as a whole whenever the set of live segments changes, readers
+    // retain the version they use so its segments stay open until they are done
+    private volatile Version<T> version;
+    private final AtomicInteger nextSegmentId;
     private final ValueIO<T> valueIO;
     @Getter
     private final DBConfig config;
+    private final CompactionStrategy<T> compactionStrategy;
+    private final BlockCache<T> blockCache;
+
+    // Serializes writers, so only one of them freezes a full MemTable
+    private final Lock writeLock = new ReentrantLock();
+    // Signalled whenever a frozen MemTable has been flushed and writes may continue
+    private final Condition memTableFlushed = writeLock.newCondition();
+    // Serializes replacing the current version and the manifest describing it
+    private final Lock versionLock = new ReentrantLock();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Sequence of the newest entry in a segment, recorded in the manifest. Set under the version lock
+    private final AtomicLong flushedSequence = new AtomicLong();
+    // Set when a background flush fails, all later writes are rejected since
+    // flushing any newer MemTable first would reorder the data
+    private final AtomicReference<Throwable> flushFailure = new AtomicReference<>();
+    // A single thread, so frozen MemTables are flushed in the order they were frozen
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(daemonThreads("keydb-flush"));
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(daemonThreads("keydb-compaction"));
+    // Flushes the log of the active MemTable at walFlushIntervalMillis under PERIODIC durability
+    private final ScheduledExecutorService logFlusher = Executors.newSingleThreadScheduledExecutor(daemonThreads("keydb-log-flush"));
+    // Runs the asynchronous operations, created by the first of them
+    private final Lazy<ExecutorService> asyncExecutor = Lazy.of(this::newAsyncExecutor);
+    // Admits asynchronous reads of the segments, so a burst of them cannot flood the disk
+    private final Lazy<Semaphore> asyncSegmentReads = Lazy.of(this::newAsyncSegmentReads);
+    // Asynchronous reads waiting for a permit
+    private final Queue<Runnable> pendingReads = new ConcurrentLinkedQueue<>();
+    // Lends their buffers to the threads running asynchronous reads, one set per permit
+    private final Lazy<ScratchBuffers.Pool> asyncReadBuffers = Lazy.of(this::newAsyncReadBuffers);
+
+    private final LongAdder bytesFlushed = new LongAdder();
+    private final LongAdder bytesCompacted = new LongAdder();
+    private final LongAdder segmentGets = new LongAdder();
+    private final LongAdder segmentsProbed = new LongAdder();
+    @Getter
+    private final KeyDBMetrics metrics = new KeyDBMetrics(this::memTableSizeBytes, this::numSegments, this::diskBytes);
 
 
     public static <P extends Comparable<P>> KeyDB<P> create(final Path rootPath, final Class<P> type) {
@@ -61,39 +144,694 @@ public class KeyDB<T extends Comparable<T>> {
 
         final ValueIO<P> io = ValueIO.getProvider(type);
 
-        try (final Stream<Path> files = Files.list(segmentDir(rootPath))) {
-            final Deque<Segment<P>> segments = files
-                    .map(path -> Segment.from(path, io))
-                    .map(Try::get)
-                    .sorted()
-                    .collect(Collectors.toCollection(ArrayDeque::new));
-            return new KeyDB<>(rootPath, loadOrCreateMemTable(rootPath, io), segments, io, config);
+        final Manifest manifest = Files.isRegularFile(manifestPath(rootPath))
+                ? Manifest.from(manifestPath(rootPath)).get()
+                : manifestFromSegmentDir(rootPath);
+        deleteUnlistedSegments(rootPath, manifest);
+
+        final List<List<Segment<P>>> levels = new ArrayList<>();
+        for (final List<Integer> ids : manifest.levels()) {
+            // Only segments missing from the metadata of the manifest are read, spread over all cores
+            levels.add(ids.parallelStream()
+                    .map(id -> openSegment(rootPath, manifest, id, io))
+                    .collect(Collectors.toList()));
+        }
+
+        // Frozen MemTables whose segment made it into the manifest were flushed, the
+        // rest are flushed again. Their segment ids may not have been recorded yet
+        final Set<Integer> live = manifest.levels().stream().flatMap(List::stream).collect(Collectors.toSet());
+        final List<Integer> frozenIds = new ArrayList<>();
+        final List<MemTable<P>> frozen = new ArrayList<>();
+        int nextSegmentId = manifest.nextSegmentId();
+        // Sequences continue from the last flushed entry through the logs, oldest first
+        long lastSequence = manifest.lastSequence();
+        for (final int id : frozenMemTableIds(rootPath)) {
+            if (live.contains(id)) {
+                Files.delete(frozenMemTablePath(rootPath, id));
+                continue;
+            }
+            frozenIds.add(id);
+            final MemTable<P> memTable = MemTable.from(frozenMemTablePath(rootPath, id), io, config, lastSequence)
+                    .flatMap(table -> table.freeze(frozenMemTablePath(rootPath, id)))
+                    .get();
+            frozen.add(0, memTable);
+            lastSequence = memTable.getLastSequence();
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+        }
+
+        final KeyDB<P> db = new KeyDB<>(rootPath, new MemTables<>(loadOrCreateMemTable(rootPath, io, config, lastSequence), frozen),
+                Version.empty(), new AtomicInteger(nextSegmentId), io, config, CompactionStrategy.of(config),
+                BlockCache.create(config.getBlockCacheSizeBytes()));
+        db.flushedSequence.set(manifest.lastSequence());
+        withLock(db.versionLock, () -> db.installVersion(Version.of(levels)));
+        for (int i = 0; i < frozenIds.size(); i++) {
+            db.scheduleFlush(frozen.get(frozen.size() - 1 - i), frozenIds.get(i));
         }
+        db.registerMBean();
+        db.scheduleLogFlushes();
+        db.compact();
+        return db;
     }
 
     public void put(final T key, final T value) {
-        memTable.put(key, value);
+        write(memTable -> memTable.put(key, value));
+    }
+
+    /**
+     * Puts a value that reads as absent once {@code ttl} has passed. Expired values are
+     * dropped from disk when their segments are compacted.
+     */
+    public void put(final T key, final T value, final Duration ttl) {
+        final Entry<T> entry = new Entry<>(key, value, Entry.expiresAfter(ttl));
+        write(memTable -> memTable.put(entry));
+    }
+
+    /**
+     * Like {@link #put(Object, Object)}, run on the async executor since a put may wait for the
+     * log to be forced to disk or for a MemTable to be flushed.
+     */
+    public CompletableFuture<Void> putAsync(final T key, final T value) {
+        return runAsync(() -> {
+            put(key, value);
+            return null;
+        });
+    }
 
-        if (memTable.getSize() >= config.getMemTableFlushSizeBytes()) {
-            segments.push(memTable.writeSegment(segmentDir(rootPath), getNextSegmentId(), config).get());
-            memTable = new MemTable<>(memTablePath(rootPath), valueIO);
+    /**
+     * Deletes the key by writing a tombstone, which hides all older values of the key until
+     * compaction drops them together.
+     */
+    public void delete(final T key) {
+        write(memTable -> memTable.put(Entry.tombstone(key)));
+    }
+
+    /**
+     * Applies all writes of the batch at once, they are recovered all or nothing after a crash.
+     */
+    public void write(final WriteBatch<T> batch) {
+        if (!batch.isEmpty()) {
+            write(memTable -> memTable.write(batch));
         }
     }
 
+    private void write(final Function<MemTable<T>, Long> writeToMemTable) {
+        final long start = System.nanoTime();
+        final Tuple2<MemTable<T>, Long> written = withLock(writeLock, () -> {
+            checkWritable();
+            final MemTable<T> active = memTables.active();
+            final long logged = active.getLogPosition();
+            final long position = writeToMemTable.apply(active);
+            metrics.addWalBytesWritten(position - logged);
+
+            if (active.getSize() >= config.getMemTableFlushSizeBytes()) {
+                freezeMemTable(active);
+            }
+            return Tuple.of(active, position);
+        });
+        // Outside the write lock, so that concurrent writers can share a group commit
+        written._1.awaitDurable(written._2);
+        metrics.recordPut(System.nanoTime() - start);
+    }
+
     public Option<T> get(final T key) {
-        return memTable.get(key).orElse(() -> segments.stream()
-                .map(segment -> segment.get(key, valueIO).get())
-                .filter(value -> !value.isEmpty())
-                .findFirst()
-                .orElse(Option.none()));
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis();
+        final Option<T> value = getEntry(key).filter(entry -> entry.isLive(now)).map(Entry::value);
+        metrics.recordGet(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Like {@link #get}, but the segments are read on the async executor so that the calling
+     * thread never waits for the disk. Keys found in the MemTables complete right away, at most
+     * maxAsyncSegmentReads of the others read the segments at the same time.
+     */
+    public CompletableFuture<Option<T>> getAsync(final T key) {
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis();
+        final Option<Entry<T>> entry = getFromMemTables(key);
+        if (entry.isDefined()) {
+            metrics.recordSegmentsProbed(0);
+            metrics.recordGet(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(entry.filter(e -> e.isLive(now)).map(Entry::value));
+        }
+        return readAsync(() -> getFromSegments(key)).thenApply(found -> {
+            metrics.recordGet(System.nanoTime() - start);
+            return found.filter(e -> e.isLive(now)).map(Entry::value);
+        });
+    }
+
+    // The newest entry of the key. A tombstone or expired entry ends the lookup, since it hides all older ones
+    private Option<Entry<T>> getEntry(final T key) {
+        // The MemTables must be read before the version, a flush installs its
+        // segment before the MemTable is dropped so no write can be missed
+        final Option<Entry<T>> entry = getFromMemTables(key);
+        if (entry.isDefined()) {
+            metrics.recordSegmentsProbed(0);
+            return entry;
+        }
+        return getFromSegments(key);
+    }
+
+    // The newest entry of the key written at or before the sequence, in the given MemTables and version
+    Option<Entry<T>> getEntry(final MemTables<T> tables, final Version<T> current, final long sequence, final T key) {
+        final Option<Entry<T>> entry = getFromMemTables(tables, key, sequence);
+        if (entry.isDefined()) {
+            metrics.recordSegmentsProbed(0);
+            return entry;
+        }
+        return getFromSegments(current, key);
+    }
+
+    private Option<Entry<T>> getFromSegments(final T key) {
+        final Version<T> current = acquireVersion();
+        try {
+            return getFromSegments(current, key);
+        } finally {
+            current.release();
+        }
+    }
+
+    private Option<Entry<T>> getFromSegments(final Version<T> current, final T key) {
+        int probed = 0;
+        try {
+            segmentGets.increment();
+            for (final Segment<T> segment : current.getCandidates(key)) {
+                segmentsProbed.increment();
+                probed++;
+                final Option<Entry<T>> entry = segment.getEntry(key, valueIO, blockCache).get();
+                if (entry.isDefined()) {
+                    return entry;
+                }
+            }
+            return Option.none();
+        } finally {
+            metrics.recordSegmentsProbed(probed);
+        }
+    }
+
+    /**
+     * Looks up many keys at once, returning the values of those present in key order. The keys
+     * are sorted and looked for in the MemTables first, then each segment is read in one pass
+     * over the blocks holding the keys still unresolved, newest segment first. Each key counts
+     * as a get in the metrics, with an equal share of the time taken by the whole batch.
+     */
+    public Map<T, T> getAll(final Collection<T> keys) {
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis();
+        final SortedSet<T> sorted = new TreeSet<>(keys);
+        final Map<T, Entry<T>> found = new HashMap<>();
+        // Number of segments read for each key, keys found in the MemTables read none
+        final Map<T, Integer> probed = new HashMap<>();
+        final List<T> remaining = new ArrayList<>();
+        for (final T key : sorted) {
+            final Option<Entry<T>> entry = getFromMemTables(key);
+            if (entry.isDefined()) {
+                found.put(key, entry.get());
+            } else {
+                remaining.add(key);
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            final Version<T> current = acquireVersion();
+            try {
+                segmentGets.add(remaining.size());
+                for (final Segment<T> segment : current.getSegments()) {
+                    final List<T> candidates = remaining.stream()
+                            .filter(key -> segment.overlaps(key, key))
+                            .collect(Collectors.toList());
+                    if (candidates.isEmpty()) {
+                        continue;
+                    }
+                    segmentsProbed.add(candidates.size());
+                    candidates.forEach(key -> probed.merge(key, 1, Integer::sum));
+                    final Map<T, Entry<T>> entries = segment.getEntries(candidates, valueIO, blockCache).get();
+                    found.putAll(entries);
+                    remaining.removeIf(entries::containsKey);
+                    if (remaining.isEmpty()) {
+                        break;
+                    }
+                }
+            } finally {
+                current.release();
+            }
+        }
+
+        final Map<T, T> values = new LinkedHashMap<>();
+        for (final T key : sorted) {
+            final Entry<T> entry = found.get(key);
+            if (entry != null && entry.isLive(now)) {
+                values.put(key, entry.value());
+            }
+        }
+        if (!sorted.isEmpty()) {
+            final long nanosPerKey = (System.nanoTime() - start) / sorted.size();
+            for (final T key : sorted) {
+                metrics.recordSegmentsProbed(probed.getOrDefault(key, 0));
+                metrics.recordGet(nanosPerKey);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Iterates the entries with keys from {@code fromKey} inclusive to {@code toKey} exclusive in
+     * key order, merging the MemTables with sequential reads of the segments. Deleted and expired
+     * keys are skipped, and a range whose {@code toKey} does not sort after {@code fromKey} is empty.
+     * Writes made during the scan may or may not be seen, a {@link #snapshot()} sees none of them.
+     * The iterator keeps the segments it reads open until it is closed or exhausted.
+     */
+    public CloseableIterator<Entry<T>> scan(final T fromKey, final T toKey) {
+        // Read in the same order as get, so that no flush can hide an entry from the scan
+        final MemTables<T> tables = memTables;
+        final Version<T> current = acquireVersion();
+        return scan(tables, current, Long.MAX_VALUE, System.currentTimeMillis(), fromKey, toKey);
+    }
+
+    // Merges the MemTables as of the sequence with the segments of the version, which the
+    // caller has retained. It is released once the iterator is closed or exhausted
+    CloseableIterator<Entry<T>> scan(final MemTables<T> tables, final Version<T> current, final long sequence,
+                                     final long now, final T fromKey, final T toKey) {
+        if (fromKey.compareTo(toKey) >= 0) {
+            current.release();
+            return CloseableIterator.of(Collections.emptyIterator());
+        }
+        final List<CloseableIterator<Entry<T>>> sources = new ArrayList<>();
+        try {
+            sources.add(tables.active().iterator(fromKey, toKey, sequence));
+            for (final MemTable<T> frozen : tables.frozen()) {
+                sources.add(frozen.iterator(fromKey, toKey, sequence));
+            }
+            for (final Segment<T> segment : current.getSegments()) {
+                if (segment.overlaps(fromKey, toKey)) {
+                    sources.add(segment.iterator(valueIO, fromKey).get());
+                }
+            }
+            return new RangeIterator<>(new MergingIterator<>(sources), toKey, current::release)
+                    .filter(entry -> entry.isLive(now));
+        } catch (final Throwable e) {
+            // Try.get rethrows the IOException of a segment that failed to open as it is
+            sources.forEach(CloseableIterator::close);
+            current.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Collects the entries {@link #scan} iterates on the async executor, the whole range is held
+     * in memory. The scan counts as a single read towards maxAsyncSegmentReads.
+     */
+    public CompletableFuture<List<Entry<T>>> scanAsync(final T fromKey, final T toKey) {
+        return readAsync(() -> {
+            try (final CloseableIterator<Entry<T>> entries = scan(fromKey, toKey)) {
+                final List<Entry<T>> collected = new ArrayList<>();
+                entries.forEachRemaining(collected::add);
+                return collected;
+            }
+        });
+    }
+
+    /**
+     * Takes a {@link Snapshot} of all writes made so far. Writers never wait for it, but it
+     * keeps the MemTables and segments it reads alive until it is closed.
+     */
+    public Snapshot<T> snapshot() {
+        // No flush can install a segment meanwhile, so the version holds no write newer than
+        // the sequence. Only flushes and compactions take the version lock, writers never do
+        return withLock(versionLock, () -> {
+            final MemTables<T> tables = memTables;
+            return new Snapshot<>(this, tables, acquireVersion(), tables.active().getLastSequence(),
+                    System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * The sequence of the last write, every write gets the one after the write before it.
+     */
+    public long getLastSequence() {
+        return memTables.active().getLastSequence();
     }
 
     public int numSegments() {
-        return segments.size();
+        return version.numSegments();
+    }
+
+    public KeyDBStats getStats() {
+        final Version<T> current = acquireVersion();
+        try {
+            final List<Integer> segmentsPerLevel = new ArrayList<>();
+            final List<Long> bytesPerLevel = new ArrayList<>();
+            for (int level = 0; level < current.numLevels(); level++) {
+                segmentsPerLevel.add(current.getLevel(level).size());
+                bytesPerLevel.add(current.getLevelSize(level));
+            }
+            return new KeyDBStats(segmentsPerLevel, bytesPerLevel, bytesFlushed.sum(), bytesCompacted.sum(),
+                    segmentGets.sum(), segmentsProbed.sum(), blockCache.getHits(), blockCache.getMisses());
+        } finally {
+            current.release();
+        }
+    }
+
+    /**
+     * Freezes the current MemTable unless it is empty. The returned future completes
+     * once every MemTable frozen so far has been written to a segment.
+     */
+    public Future<?> flush() {
+        return withLock(writeLock, () -> {
+            checkWritable();
+            if (memTables.active().getSize() > 0) {
+                freezeMemTable(memTables.active());
+            }
+            return flushExecutor.submit(() -> { });
+        });
+    }
+
+    /**
+     * Runs compactions on the background thread until no more segments qualify for merging.
+     * Compactions are also scheduled automatically whenever a new segment is written.
+     */
+    public Future<?> compact() {
+        return compactionExecutor.submit(this::compactUntilDone);
     }
 
-    private Integer getNextSegmentId() {
-        return segments.isEmpty() ? 0 : segments.peek().getId() + 1;
+    /**
+     * Waits for pending flushes and running compactions and closes all files. Segments
+     * still used by reads in flight are closed as soon as those reads finish.
+     */
+    @Override
+    public void close() throws Exception {
+        // Asynchronous operations already submitted still complete, later ones are rejected
+        if (asyncExecutor.isEvaluated()) {
+            asyncExecutor.get().shutdown();
+            asyncExecutor.get().awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        withLock(writeLock, () -> closed.getAndSet(true));
+        logFlusher.shutdown();
+        logFlusher.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        // Flushes schedule compactions, so they have to finish first
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        compactionExecutor.shutdown();
+        compactionExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        withLock(versionLock, () -> {
+            Try.run(memTables.active()::close).get();
+            version.release();
+            return null;
+        });
+        metrics.close();
+    }
+
+    private Option<Entry<T>> getFromMemTables(final T key) {
+        return getFromMemTables(memTables, key, Long.MAX_VALUE);
+    }
+
+    private Option<Entry<T>> getFromMemTables(final MemTables<T> tables, final T key, final long sequence) {
+        final Option<Entry<T>> entry = tables.active().getEntry(key, sequence);
+        if (entry.isDefined()) {
+            return entry;
+        }
+        for (final MemTable<T> frozen : tables.frozen()) {
+            final Option<Entry<T>> frozenEntry = frozen.getEntry(key, sequence);
+            if (frozenEntry.isDefined()) {
+                return frozenEntry;
+            }
+        }
+        return Option.none();
+    }
+
+    // Queues a read of the segments. A thread of the async executor is only taken along with a
+    // permit, and runs queued reads until none are left, so waiting reads hold no thread
+    private <R> CompletableFuture<R> readAsync(final Supplier<R> read) {
+        if (closed.get()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Database is closed"));
+        }
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        final Runnable task = () -> {
+            try {
+                result.complete(read.get());
+            } catch (final Throwable e) {
+                result.completeExceptionally(e);
+            }
+        };
+        pendingReads.add(task);
+        if (asyncSegmentReads.get().tryAcquire()) {
+            try {
+                asyncExecutor.get().execute(() -> asyncReadBuffers.get().run(this::runPendingReads));
+            } catch (final RejectedExecutionException e) {
+                asyncSegmentReads.get().release();
+                if (pendingReads.remove(task)) {
+                    result.completeExceptionally(new IllegalStateException("Database is closed", e));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Called holding a permit, which is released once no read is waiting
+    private void runPendingReads() {
+        final Semaphore permits = asyncSegmentReads.get();
+        do {
+            Runnable read;
+            while ((read = pendingReads.poll()) != null) {
+                read.run();
+            }
+            permits.release();
+            // A read queued after the last poll may have found no permit
+        } while (!pendingReads.isEmpty() && permits.tryAcquire());
+    }
+
+    private <R> CompletableFuture<R> runAsync(final Supplier<R> operation) {
+        if (closed.get()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Database is closed"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(operation, asyncExecutor.get());
+        } catch (final RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Database is closed", e));
+        }
+    }
+
+    private void scheduleLogFlushes() {
+        final long interval = config.getWalFlushIntervalMillis();
+        // Without an interval every write flushes the log itself
+        if (config.getWalDurability() == WalDurability.PERIODIC && interval > 0) {
+            logFlusher.scheduleWithFixedDelay(this::flushLogIfDue, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Under the write lock, so that the table cannot be frozen and its log closed meanwhile
+    private void flushLogIfDue() {
+        withLock(writeLock, () -> {
+            if (!closed.get()) {
+                // A failure must not cancel later flushes, the next write reports it anyway
+                Try.run(memTables.active()::flushLogIfDue);
+            }
+            return null;
+        });
+    }
+
+    private void registerMBean() {
+        if (config.isRegisterMBean()) {
+            metrics.registerMBean(rootPath.toAbsolutePath().toString());
+        }
+    }
+
+    private long memTableSizeBytes() {
+        final MemTables<T> tables = memTables;
+        return tables.active().getSize() + tables.frozen().stream().mapToLong(MemTable::getSize).sum();
+    }
+
+    private long diskBytes() {
+        final Version<T> current = acquireVersion();
+        try {
+            return current.getSegments().stream().mapToLong(Segment::getDataSize).sum();
+        } finally {
+            current.release();
+        }
+    }
+
+    private ExecutorService newAsyncExecutor() {
+        return config.getAsyncExecutor().newExecutor(daemonThreads("keydb-async"));
+    }
+
+    private Semaphore newAsyncSegmentReads() {
+        return new Semaphore(config.getMaxAsyncSegmentReads());
+    }
+
+    private ScratchBuffers.Pool newAsyncReadBuffers() {
+        return new ScratchBuffers.Pool(config.getMaxAsyncSegmentReads());
+    }
+
+    // Called with the write lock held
+    private void checkWritable() {
+        if (closed.get()) {
+            throw new IllegalStateException("Database is closed");
+        }
+        if (flushFailure.get() != null) {
+            throw new IllegalStateException("Flushing a MemTable failed", flushFailure.get());
+        }
+    }
+
+    // Called with the write lock held. Blocks while too many frozen MemTables are waiting to be flushed
+    private void freezeMemTable(final MemTable<T> full) {
+        while (memTables.frozen().size() >= Math.max(1, config.getMaxImmutableMemTables())
+                && flushFailure.get() == null) {
+            memTableFlushed.awaitUninterruptibly();
+        }
+        // Waiting releases the write lock, another writer may have frozen the table meanwhile
+        if (memTables.active() != full) {
+            return;
+        }
+        checkWritable();
+
+        final int id = nextSegmentId.getAndIncrement();
+        final MemTable<T> frozen = memTables.active().freeze(frozenMemTablePath(rootPath, id)).get();
+        final List<MemTable<T>> allFrozen = new ArrayList<>();
+        allFrozen.add(frozen);
+        allFrozen.addAll(memTables.frozen());
+        memTables = new MemTables<>(new MemTable<>(memTablePath(rootPath), valueIO, config, frozen.getLastSequence()),
+                List.copyOf(allFrozen));
+        scheduleFlush(frozen, id);
+    }
+
+    private void scheduleFlush(final MemTable<T> frozen, final int id) {
+        flushExecutor.execute(() -> {
+            if (flushFailure.get() == null) {
+                Try.run(() -> flush(frozen, id)).onFailure(failure -> withLock(writeLock, () -> {
+                    flushFailure.set(failure);
+                    memTableFlushed.signalAll();
+                    return null;
+                }));
+            }
+        });
+    }
+
+    private void flush(final MemTable<T> frozen, final int id) {
+        final long start = System.nanoTime();
+        final Segment<T> segment = frozen.writeSegment(segmentDir(rootPath), id, config).get();
+        bytesFlushed.add(segment.getDataSize());
+        metrics.addSegmentBytesWritten(segment.getDataSize());
+        metrics.recordFlush(System.nanoTime() - start);
+
+        // The log is deleted before a compaction can drop the segment from the
+        // manifest again, so a log left behind by a crash is only ever replayed once
+        withLock(versionLock, () -> {
+            flushedSequence.set(frozen.getLastSequence());
+            installVersion(version.withFlushedSegment(segment));
+            return frozen.deleteLog().get();
+        });
+        withLock(writeLock, () -> {
+            final List<MemTable<T>> remaining = new ArrayList<>(memTables.frozen());
+            remaining.removeIf(memTable -> memTable == frozen);
+            memTables = new MemTables<>(memTables.active(), List.copyOf(remaining));
+            memTableFlushed.signalAll();
+            return null;
+        });
+        compact();
+    }
+
+    private void compactUntilDone() {
+        while (!closed.get()) {
+            final Version<T> current = acquireVersion();
+            try {
+                final Option<CompactionTask<T>> task = compactionStrategy.pick(current);
+                if (task.isEmpty()) {
+                    return;
+                }
+                compact(task.get(), current);
+            } finally {
+                current.release();
+            }
+        }
+    }
+
+    private void compact(final CompactionTask<T> task, final Version<T> current) {
+        if (task.isTrivialMove()) {
+            withLock(versionLock, () -> installVersion(
+                    version.replace(task.inputs(), task.outputLevel(), task.inputs())));
+            return;
+        }
+
+        final List<Segment<T>> outputs = new Compaction<>(task, current.getOlderThan(task.inputs()),
+                segmentDir(rootPath), nextSegmentId::getAndIncrement, valueIO, config).run().get();
+        outputs.forEach(output -> bytesCompacted.add(output.getDataSize()));
+        outputs.forEach(output -> metrics.addSegmentBytesWritten(output.getDataSize()));
+
+        // The inputs are deleted once the last reader still using them is done
+        task.inputs().forEach(input -> input.markObsolete(() -> blockCache.invalidate(input.getId())));
+        withLock(versionLock, () -> installVersion(version.replace(task.inputs(), task.outputLevel(), outputs)));
+    }
+
+    // Called with the version lock held
+    private Version<T> installVersion(final Version<T> next) {
+        next.getSegments().forEach(Segment::retain);
+        next.getSegments().forEach(segment -> segment.countReadsIn(metrics));
+        final Version<T> previous = version;
+        version = next;
+        Manifest.of(next, nextSegmentId.get(), flushedSequence.get(), valueIO).write(manifestPath(rootPath)).get();
+        previous.release();
+        return next;
+    }
+
+    private Version<T> acquireVersion() {
+        while (true) {
+            final Version<T> current = version;
+            if (current.tryRetain()) {
+                return current;
+            }
+            // Only the last version is released without being replaced
+            if (closed.get() && current == version) {
+                throw new IllegalStateException("Database is closed");
+            }
+        }
+    }
+
+    private static <R> R withLock(final Lock lock, final Supplier<R> supplier) {
+        lock.lock();
+        try {
+            return supplier.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <P extends Comparable<P>> Segment<P> openSegment(
+            final Path rootPath, final Manifest manifest, final int id, final ValueIO<P> io) {
+        final Path path = segmentDir(rootPath).resolve(String.valueOf(id));
+        return manifest.getMetadata(id)
+                .map(metadata -> Try.of(() -> metadata.open(path, io)))
+                .getOrElse(() -> Segment.from(path, io))
+                .get();
+    }
+
+    // Databases created before the manifest existed keep all their segments in level 0, newest first
+    private static Manifest manifestFromSegmentDir(final Path rootPath) throws IOException {
+        try (final Stream<Path> files = Files.list(segmentDir(rootPath))) {
+            final List<Integer> ids = files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("\\d+"))
+                    .map(Integer::parseInt)
+                    .sorted((a, b) -> b.compareTo(a))
+                    .collect(Collectors.toList());
+            return new Manifest(ids.isEmpty() ? 0 : ids.get(0) + 1, ids.isEmpty() ? List.of() : List.of(ids));
+        }
+    }
+
+    // Leftovers of a flush or compaction that was interrupted before the manifest was updated
+    private static void deleteUnlistedSegments(final Path rootPath, final Manifest manifest) throws IOException {
+        final Set<String> live = manifest.levels().stream()
+                .flatMap(List::stream)
+                .map(String::valueOf)
+                .collect(Collectors.toCollection(HashSet::new));
+
+        try (final Stream<Path> files = Files.list(segmentDir(rootPath))) {
+            for (final Path path : (Iterable<Path>) files::iterator) {
+                if (!live.contains(path.getFileName().toString())) {
+                    FileUtils.deleteDirectory(path);
+                }
+            }
+        }
     }
 
     @SneakyThrows
@@ -104,15 +842,44 @@ public class KeyDB<T extends Comparable<T>> {
         Files.writeString(configPath(rootPath),
                 objectMapper().writeValueAsString(config),
                 StandardOpenOption.CREATE_NEW);
+        FileUtils.forceDirectory(rootPath);
+        FileUtils.forceDirectory(rootPath.toAbsolutePath().getParent());
 
-        return new KeyDB<>(rootPath, new MemTable<>(memTablePath(rootPath), io), new ArrayDeque<>(), io, config);
+        final KeyDB<P> db = new KeyDB<>(rootPath, new MemTables<>(new MemTable<>(memTablePath(rootPath), io, config), List.of()),
+                Version.empty(), new AtomicInteger(0), io, config, CompactionStrategy.of(config),
+                BlockCache.create(config.getBlockCacheSizeBytes()));
+        withLock(db.versionLock, () -> db.installVersion(Version.empty()));
+        db.registerMBean();
+        db.scheduleLogFlushes();
+        return db;
     }
 
-    private static <P extends Comparable<P>> MemTable<P> loadOrCreateMemTable(final Path rootPath, final ValueIO<P> io) {
+    private static <P extends Comparable<P>> MemTable<P> loadOrCreateMemTable(
+            final Path rootPath, final ValueIO<P> io, final DBConfig config, final long lastSequence) {
         if (Files.isRegularFile(memTablePath(rootPath))) {
-            return MemTable.from(memTablePath(rootPath), io).get();
+            return MemTable.from(memTablePath(rootPath), io, config, lastSequence).get();
+        }
+        return new MemTable<>(memTablePath(rootPath), io, config, lastSequence);
+    }
+
+    // Ids of the frozen MemTables, oldest first
+    private static List<Integer> frozenMemTableIds(final Path rootPath) throws IOException {
+        try (final Stream<Path> files = Files.list(rootPath)) {
+            return files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("memtable\\.\\d+"))
+                    .map(name -> Integer.parseInt(name.substring("memtable.".length())))
+                    .sorted()
+                    .collect(Collectors.toList());
         }
-        return new MemTable<>(memTablePath(rootPath), io);
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private static void validateDB(final Path path) throws FileNotFoundException {
@@ -129,11 +896,24 @@ public class KeyDB<T extends Comparable<T>> {
         return rootPath.resolve("config.json");
     }
 
+    private static Path manifestPath(final Path rootPath) {
+        return rootPath.resolve("manifest.json");
+    }
+
     private static Path memTablePath(final Path path) {
         return path.resolve("memtable");
     }
 
+    private static Path frozenMemTablePath(final Path path, final int segmentId) {
+        return path.resolve("memtable." + segmentId);
+    }
+
     private static Path segmentDir(final Path path) {
         return path.resolve("segments");
     }
+
+    // The MemTable taking writes and the frozen ones waiting to be flushed, newest first. Replaced
+    // as a whole so that a reader always sees every table holding data not yet in a segment
+    record MemTables<P extends Comparable<P>>(MemTable<P> active, List<MemTable<P>> frozen) {
+    }
 }
@@ -0,0 +1,49 @@
+package keydb;
+
+import java.util.List;
+
+/**
+ * Point in time view of the shape of the database and the amplification counters
+ * that are useful when tuning compaction.
+ *
+ * @param segmentsPerLevel number of segments in each level
+ * @param bytesPerLevel    size of the data files in each level
+ * @param bytesFlushed     bytes written to new segments by MemTable flushes
+ * @param bytesCompacted   bytes written to new segments by compactions
+ * @param gets             number of lookups that had to go to the segments
+ * @param segmentsProbed   number of segments consulted by those lookups
+ * @param blockCacheHits   lookups of a segment block that were served by the block cache
+ * @param blockCacheMisses lookups of a segment block that had to read it from disk
+ */
+public record KeyDBStats(
+        List<Integer> segmentsPerLevel,
+        List<Long> bytesPerLevel,
+        long bytesFlushed,
+        long bytesCompacted,
+        long gets,
+        long segmentsProbed,
+        long blockCacheHits,
+        long blockCacheMisses) {
+
+    /**
+     * Total bytes written to segments for every byte flushed from the MemTable.
+     */
+    public double writeAmplification() {
+        return bytesFlushed == 0 ? 0 : (double) (bytesFlushed + bytesCompacted) / bytesFlushed;
+    }
+
+    /**
+     * Fraction of block lookups served by the block cache.
+     */
+    public double blockCacheHitRate() {
+        final long lookups = blockCacheHits + blockCacheMisses;
+        return lookups == 0 ? 0 : (double) blockCacheHits / lookups;
+    }
+
+    /**
+     * Average number of segments consulted by a lookup that missed the MemTable.
+     */
+    public double readAmplification() {
+        return gets == 0 ? 0 : (double) segmentsProbed / gets;
+    }
+}
@@ -0,0 +1,36 @@
+package keydb;
+
+import keydb.types.ValueIO;
+import lombok.SneakyThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+/**
+ * Hashes keys by their serialized form, so the result is stable across JVMs,
+ * unlike hashCode() which may be identity based for arbitrary key types.
+ */
+final class KeyHash {
+
+    private KeyHash() {
+    }
+
+    @SneakyThrows
+    static <T> long of(final T key, final ValueIO<T> valueIO) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        valueIO.write(key, new DataOutputStream(bytes));
+
+        // FNV-1a followed by the murmur3 finalizer to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : bytes.toByteArray()) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
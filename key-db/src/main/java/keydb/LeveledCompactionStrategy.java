@@ -0,0 +1,68 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compacts level 0 into level 1 once it holds too many segments, and any
+ * deeper level into the one below it once it grows beyond its size budget.
+ * The budget of level 1 is {@link DBConfig#getLevel1MaxBytes()} and each
+ * following level is {@link DBConfig#getLevelSizeRatio()} times larger.
+ * <p>
+ * Within a level the segment to push down is picked round-robin by key,
+ * so that every part of the key space is eventually compacted.
+ */
+public class LeveledCompactionStrategy<T extends Comparable<T>> implements CompactionStrategy<T> {
+
+    private final DBConfig config;
+    // Largest key of the segment last compacted out of each level
+    private final Map<Integer, T> compactPointers = new HashMap<>();
+
+    public LeveledCompactionStrategy(final DBConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public Option<CompactionTask<T>> pick(final Version<T> version) {
+        final List<Segment<T>> level0 = version.getLevel(0);
+        if (!level0.isEmpty() && level0.size() >= config.getLevel0CompactionTrigger()) {
+            final T minKey = level0.stream().map(Segment::getMinKey).min(Comparator.naturalOrder()).get();
+            final T maxKey = level0.stream().map(Segment::getMaxKey).max(Comparator.naturalOrder()).get();
+            return Option.some(task(level0, version.getOverlapping(1, minKey, maxKey), 1));
+        }
+
+        for (int level = 1; level < config.getMaxLevels() - 1; level++) {
+            if (version.getLevelSize(level) > getMaxBytesForLevel(level)) {
+                final Segment<T> segment = nextSegmentToCompact(version.getLevel(level), level);
+                compactPointers.put(level, segment.getMaxKey());
+                return Option.some(task(List.of(segment),
+                        version.getOverlapping(level + 1, segment.getMinKey(), segment.getMaxKey()), level + 1));
+            }
+        }
+        return Option.none();
+    }
+
+    public long getMaxBytesForLevel(final int level) {
+        return (long) (config.getLevel1MaxBytes() * Math.pow(config.getLevelSizeRatio(), level - 1));
+    }
+
+    private Segment<T> nextSegmentToCompact(final List<Segment<T>> segments, final int level) {
+        final T pointer = compactPointers.get(level);
+        return segments.stream()
+                .filter(segment -> pointer == null || segment.getMinKey().compareTo(pointer) > 0)
+                .findFirst()
+                .orElse(segments.get(0));
+    }
+
+    private CompactionTask<T> task(final List<Segment<T>> upper, final List<Segment<T>> lower, final int outputLevel) {
+        final List<Segment<T>> inputs = new ArrayList<>(upper);
+        inputs.addAll(lower);
+        return new CompactionTask<>(inputs, outputLevel, config.getTargetSegmentSizeBytes());
+    }
+}
@@ -0,0 +1,123 @@
+package keydb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.control.Option;
+import io.vavr.control.Try;
+import keydb.file.ByteBufferDataInput;
+import keydb.types.ValueIO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Persisted list of the live segments of a database and the level each of
+ * them belongs to, segments are listed in the same order as in {@link Version}.
+ * Directories in the segment directory not listed here are leftovers from an
+ * interrupted flush or compaction.
+ * <p>
+ * Along with the ids the manifest holds the metadata needed to open each segment without
+ * reading its files, so that loading a database takes the same time however many segments
+ * it has. Manifests written before the metadata existed have none, those segments are read.
+ * <p>
+ * The last sequence is that of the newest entry flushed to a segment, so that sequences keep
+ * increasing across restarts even once every log has been flushed and deleted. It is 0 in
+ * manifests written before sequences existed.
+ */
+public record Manifest(int nextSegmentId, List<List<Integer>> levels, Map<Integer, SegmentMetadata> segments,
+                       long lastSequence) {
+
+    public Manifest {
+        segments = segments == null ? Map.of() : segments;
+    }
+
+    public Manifest(final int nextSegmentId, final List<List<Integer>> levels) {
+        this(nextSegmentId, levels, Map.of());
+    }
+
+    public Manifest(final int nextSegmentId, final List<List<Integer>> levels, final Map<Integer, SegmentMetadata> segments) {
+        this(nextSegmentId, levels, segments, 0);
+    }
+
+    public static <T extends Comparable<T>> Manifest of(final Version<T> version, final int nextSegmentId,
+                                                        final long lastSequence, final ValueIO<T> valueIO) {
+        final Map<Integer, SegmentMetadata> segments = new HashMap<>();
+        for (final Segment<T> segment : version.getSegments()) {
+            segments.put(segment.getId(), SegmentMetadata.of(segment, valueIO));
+        }
+        return new Manifest(nextSegmentId, version.getLevels().stream()
+                .map(level -> level.stream().map(Segment::getId).collect(Collectors.toList()))
+                .collect(Collectors.toList()), segments, lastSequence);
+    }
+
+    public Option<SegmentMetadata> getMetadata(final int segmentId) {
+        return Option.of(segments.get(segmentId));
+    }
+
+    /**
+     * Replaces the manifest at the path atomically, readers see either the old or the new one.
+     * The new manifest is forced to disk before it replaces the old one, and the rename after.
+     */
+    public Try<Path> write(final Path path) {
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        return Try.of(() -> {
+            final ByteBuffer json = ByteBuffer.wrap(new ObjectMapper().writeValueAsBytes(this));
+            try (final FileChannel channel = FileChannel.open(tempPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (json.hasRemaining()) {
+                    channel.write(json);
+                }
+                channel.force(false);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            FileUtils.forceDirectory(path.toAbsolutePath().getParent());
+            return path;
+        });
+    }
+
+    public static Try<Manifest> from(final Path path) {
+        return Try.of(() -> new ObjectMapper().readValue(
+                Files.readString(path, StandardCharsets.UTF_8), Manifest.class));
+    }
+
+    /**
+     * The key range and footer of a segment. Keys are written by the ValueIO of the
+     * database and encoded in Base64, a version of 0 stands for a segment without footer.
+     */
+    public record SegmentMetadata(
+            String minKey, String maxKey, long indexOffset, int indexLength, int indexChecksum, int version) {
+
+        public static <T extends Comparable<T>> SegmentMetadata of(final Segment<T> segment, final ValueIO<T> valueIO) {
+            final SegmentFormat.Footer footer = segment.getFooter();
+            return new SegmentMetadata(encode(segment.getMinKey(), valueIO), encode(segment.getMaxKey(), valueIO),
+                    footer.indexOffset(), footer.indexLength(), footer.indexChecksum(), footer.version());
+        }
+
+        public <T extends Comparable<T>> Segment<T> open(final Path rootPath, final ValueIO<T> valueIO) throws IOException {
+            final SegmentFormat.Footer footer = new SegmentFormat.Footer(indexOffset, indexLength, indexChecksum, version);
+            return Segment.open(rootPath, decode(minKey, valueIO), decode(maxKey, valueIO), footer, valueIO);
+        }
+
+        private static <T> String encode(final T key, final ValueIO<T> valueIO) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Try.run(() -> valueIO.write(key, new DataOutputStream(bytes))).get();
+            return Base64.getEncoder().encodeToString(bytes.toByteArray());
+        }
+
+        private static <T> T decode(final String key, final ValueIO<T> valueIO) throws IOException {
+            return valueIO.read(new ByteBufferDataInput(ByteBuffer.wrap(Base64.getDecoder().decode(key))));
+        }
+    }
+}
@@ -3,119 +3,588 @@ package keydb;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
 import keydb.config.DBConfig;
-import keydb.file.InputFileManager;
+import keydb.config.WalDurability;
+import keydb.file.ByteBufferDataInput;
 import keydb.file.OutputFileManager;
+import keydb.types.Codec;
 import keydb.types.ValueIO;
 import lombok.EqualsAndHashCode;
-import lombok.Getter;
 import lombok.SneakyThrows;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
 
-@EqualsAndHashCode(exclude = {"fileManager"})
+/**
+ * Sorted in-memory table backed by a write-ahead log. Any number of threads may
+ * read concurrently with writers, writes are serialized so that the order of
+ * the log always matches the order in which values were applied to the table.
+ * <p>
+ * Every entry written gets the sequence number after the last one, which continues from the
+ * table frozen before. The table keeps every version of a key, so reads as of a sequence
+ * see exactly the writes made up to it.
+ * <p>
+ * The log starts with {@link #LOG_MAGIC}, followed by one record per put, delete or
+ * {@link WriteBatch}: the length of its body in bytes, the crc32c of the body, and the
+ * body holding the sequence of the first entry, the number of entries and the entries
+ * themselves. A last record cut short or garbled by a crash is dropped as a whole, as is a
+ * zeroed tail. A damaged record or length followed by other bytes means the log is corrupt
+ * and fails the load.
+ * <p>
+ * Logs written before sequences existed hold records without the sequence, logs written
+ * before records were checksummed hold the length and number of entries followed by the
+ * entries, logs written before records existed hold bare entries, and logs written before
+ * deletes existed hold entries without their kind. All of them are rewritten on load, their
+ * entries numbered in log order.
+ * <p>
+ * Deleted keys are kept as tombstones, so that they hide the values of older segments.
+ * <p>
+ * A full table is {@link #freeze(Path) frozen} into a read-only copy that is
+ * flushed to a segment in the background.
+ */
+@EqualsAndHashCode(exclude = {"fileManager", "config", "codec", "lastSequence", "logPosition", "flushedPosition",
+        "lastFlushNanos", "syncedPosition", "syncLock", "recordBuffer", "recordOutput"})
 public class MemTable<T extends Comparable<T>> implements AutoCloseable {
 
-    private final SortedMap<T, T> data;
+    // "KEYDBLG4"
+    static final long LOG_MAGIC = 0x4B455944424C4734L;
+    // "KEYDBLG3", records without sequence
+    static final long LOG_MAGIC_V3 = 0x4B455944424C4733L;
+    // "KEYDBLG2", records without checksum
+    static final long LOG_MAGIC_V2 = 0x4B455944424C4732L;
+    // "KEYDBLOG", records of entries written before deletes existed
+    static final long LOG_MAGIC_V1 = 0x4B455944424C4F47L;
+    private static final int RECORD_HEADER_BYTES = 8;
+    // Logs are replayed in chunks of this size, records larger than it are read whole
+    private static final int REPLAY_BUFFER_BYTES = 1 << 20;
+
+    private final MemTableData<T> data;
     private final Path logPath;
-    private final OutputFileManager fileManager;
+    // Empty once the table has been frozen
+    private final Option<OutputFileManager> fileManager;
     private final ValueIO<T> valueIO;
-    @Getter
-    private long size;
+    private final DBConfig config;
+    // Checks the entries before they are logged, see Codec#checkEncodable
+    private final Option<Codec<T>> codec;
+
+    // Sequence of the last entry applied, published once the entries up to it can be read
+    private volatile long lastSequence;
+    // Bytes written to the log by this table, and how far it has been flushed and forced to disk
+    private long logPosition;
+    private long flushedPosition;
+    private long lastFlushNanos = System.nanoTime();
+    private volatile long syncedPosition;
+    // Held by the thread forcing the log to disk, taken before the lock on the table itself
+    private final Object syncLock = new Object();
+    // Entries of the record being written, reused between writes
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private final DataOutputStream recordOutput = new DataOutputStream(recordBuffer);
 
-    @SneakyThrows
     MemTable(final Path logPath, final ValueIO<T> valueIO) {
-        this.data = new TreeMap<>();
+        this(logPath, valueIO, DBConfig.builder().build());
+    }
+
+    MemTable(final Path logPath, final ValueIO<T> valueIO, final DBConfig config) {
+        this(logPath, valueIO, config, 0);
+    }
+
+    /**
+     * A table whose first entry gets the sequence after {@code lastSequence}.
+     */
+    MemTable(final Path logPath, final ValueIO<T> valueIO, final DBConfig config, final long lastSequence) {
+        this(MemTableData.create(valueIO, config), logPath, Option.of(openLog(logPath)), valueIO, config, lastSequence);
+        this.logPosition = logSize(logPath);
+        this.flushedPosition = logPosition;
+    }
+
+    private MemTable(final MemTableData<T> data, final Path logPath, final Option<OutputFileManager> fileManager,
+                     final ValueIO<T> valueIO, final DBConfig config, final long lastSequence) {
+        this.data = data;
         this.logPath = logPath;
-        this.fileManager = new OutputFileManager(logPath, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
-        this.size = 0;
+        this.fileManager = fileManager;
         this.valueIO = valueIO;
+        this.config = config;
+        this.codec = valueIO.getCodec(config.getCharset());
+        this.lastSequence = lastSequence;
+    }
+
+    public long put(final T key, final T value) {
+        return put(new Entry<>(key, value));
+    }
+
+    /**
+     * Appends the entry to the log and applies it.
+     *
+     * @return the position in the log after the entry, to be passed to {@link #awaitDurable(long)}
+     */
+    public synchronized long put(final Entry<T> entry) {
+        return apply(List.of(entry));
     }
 
-    public void put(final T key, final T value) {
-        put(new Entry<>(key, value));
+    /**
+     * Appends all entries of the batch to the log as a single record and applies them in order.
+     * After a crash either all or none of them are recovered. Concurrent readers may still
+     * observe some entries of the batch before others.
+     *
+     * @return the position in the log after the batch, to be passed to {@link #awaitDurable(long)}
+     */
+    public synchronized long write(final WriteBatch<T> batch) {
+        return apply(batch.getEntries());
     }
 
-    public void put(final Entry<T> entry) {
-        setNoWrite(entry);
-        writeToLog(entry);
+    // Called with the lock on the table held
+    private long apply(final List<Entry<T>> entries) {
+        // Rejected before anything is logged, a flush could not write them to a segment
+        if (codec.isDefined()) {
+            for (final Entry<T> entry : entries) {
+                codec.get().checkEncodable(entry.key());
+                if (!entry.isTombstone()) {
+                    codec.get().checkEncodable(entry.value());
+                }
+            }
+        }
+        final long firstSequence = lastSequence + 1;
+        data.putAll(entries, firstSequence, writeToLog(entries, firstSequence));
+        lastSequence = firstSequence + entries.size() - 1;
+        return logPosition;
     }
 
+    /**
+     * Under {@link WalDurability#GROUP_COMMIT} durability, blocks until the log has been forced
+     * to disk up to {@code position}. The first waiting thread forces everything written so far,
+     * so writers arriving while it does so are covered by the next force together.
+     */
+    @SneakyThrows
+    public void awaitDurable(final long position) {
+        if (config.getWalDurability() != WalDurability.GROUP_COMMIT) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            final OutputFileManager log = fileManager.get();
+            final long target;
+            synchronized (this) {
+                log.flush();
+                target = logPosition;
+            }
+            // Writers may keep appending while the force is in progress
+            log.force();
+            syncedPosition = target;
+        }
+    }
+
+    /**
+     * The value of the key unless it is deleted or expired.
+     */
     public Option<T> get(final T key) {
-        return Option.of(data.get(key));
+        final long now = System.currentTimeMillis();
+        return getEntry(key).filter(entry -> entry.isLive(now)).map(Entry::value);
+    }
+
+    /**
+     * The latest entry of the key, which may be a tombstone or have expired.
+     */
+    public Option<Entry<T>> getEntry(final T key) {
+        return data.get(key);
+    }
+
+    /**
+     * The latest entry of the key written at or before {@code sequence}.
+     */
+    public Option<Entry<T>> getEntry(final T key, final long sequence) {
+        return data.get(key, sequence);
     }
 
-    private void setNoWrite(final Entry<T> entry) {
-        data.put(entry.key(), entry.value());
+    /**
+     * Iterates the entries with keys from {@code fromKey} inclusive to {@code toKey} exclusive,
+     * tombstones and expired entries included. Writes made while iterating may or may not be seen.
+     */
+    public CloseableIterator<Entry<T>> iterator(final T fromKey, final T toKey) {
+        return data.iterator(fromKey, toKey);
     }
 
-    private void writeToLog(final Entry<T> entry) {
-        fileManager.runWithOutput(dataOutputStream -> {
-            incrementSize(entry.write(dataOutputStream, valueIO));
-            dataOutputStream.flush();
+    /**
+     * Like {@link #iterator(Comparable, Comparable)}, but sees only the writes made up to {@code sequence}.
+     */
+    public CloseableIterator<Entry<T>> iterator(final T fromKey, final T toKey, final long sequence) {
+        return data.iterator(fromKey, toKey, sequence);
+    }
+
+    /**
+     * The sequence of the last entry written, every entry up to it can be read.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Bytes held by the table, see {@link keydb.config.MemTableStorage} for how they are counted.
+     */
+    public long getSize() {
+        return data.getSize();
+    }
+
+    /**
+     * Number of bytes written to the log so far, the position the next write starts at.
+     */
+    public long getLogPosition() {
+        return logPosition;
+    }
+
+    // Returns the number of bytes the entries take up in the record
+    @SneakyThrows
+    private long writeToLog(final List<Entry<T>> entries, final long firstSequence) {
+        final OutputFileManager log = fileManager.getOrElseThrow(() -> new IllegalStateException("MemTable is frozen"));
+        recordBuffer.reset();
+        recordOutput.writeLong(firstSequence);
+        recordOutput.writeInt(entries.size());
+        for (final Entry<T> entry : entries) {
+            entry.writeWithKind(recordOutput, valueIO);
+        }
+        log.runWithOutput(dataOutputStream -> {
+            dataOutputStream.writeInt(recordBuffer.size());
+            dataOutputStream.writeInt(checksum(ByteBuffer.wrap(recordBuffer.bytes(), 0, recordBuffer.size())));
+            recordBuffer.writeTo(dataOutputStream);
         });
+        logPosition += RECORD_HEADER_BYTES + recordBuffer.size();
+
+        switch (config.getWalDurability()) {
+            case PERIODIC -> {
+                if (logPosition - flushedPosition >= config.getWalFlushIntervalBytes()) {
+                    flushLog(log);
+                } else {
+                    flushLogIfDue();
+                }
+            }
+            case SYNC -> {
+                log.flush();
+                log.force();
+                syncedPosition = logPosition;
+            }
+            default -> {
+                // NONE leaves the bytes buffered, GROUP_COMMIT forces them in awaitDurable
+            }
+        }
+        return recordBuffer.size() - Long.BYTES - Integer.BYTES;
+    }
+
+    /**
+     * Under {@link WalDurability#PERIODIC} durability, flushes the log to the operating system if
+     * writes are buffered and walFlushIntervalMillis has passed since the last flush. Called at the
+     * interval too, so that the last writes of a burst are not held back until the next write.
+     */
+    public synchronized void flushLogIfDue() {
+        if (config.getWalDurability() != WalDurability.PERIODIC || logPosition == flushedPosition) {
+            return;
+        }
+        if (System.nanoTime() - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(config.getWalFlushIntervalMillis())) {
+            fileManager.forEach(this::flushLog);
+        }
+    }
+
+    @SneakyThrows
+    private void flushLog(final OutputFileManager log) {
+        log.flush();
+        flushedPosition = logPosition;
+        lastFlushNanos = System.nanoTime();
     }
 
     public static <P extends Comparable<P>> Try<MemTable<P>> from(final Path path, final ValueIO<P> io) {
+        return from(path, io, DBConfig.builder().build());
+    }
+
+    public static <P extends Comparable<P>> Try<MemTable<P>> from(
+            final Path path, final ValueIO<P> io, final DBConfig config) {
+        return from(path, io, config, 0);
+    }
+
+    /**
+     * Replays the log at the path. Entries of logs written before sequences existed are numbered
+     * from the sequence after {@code lastSequence}, new entries follow the last one replayed.
+     */
+    public static <P extends Comparable<P>> Try<MemTable<P>> from(
+            final Path path, final ValueIO<P> io, final DBConfig config, final long lastSequence) {
         return Try.of(() -> {
             if (!Files.isRegularFile(path)) {
                 throw new NoSuchFileException(path.toString());
             }
-            final MemTable<P> memTable = new MemTable<>(path, io);
+            final List<Sequenced<P>> entries = new ArrayList<>();
+            final long validBytes = readLog(path, io, lastSequence, entries);
 
-            try (final InputFileManager inputFileManager = new InputFileManager(path)) {
-                inputFileManager.acceptInputUntilEndOfFile(
-                        dataInputStream -> memTable.setNoWrite(Entry.read(dataInputStream, io)));
+            if (validBytes < 0) {
+                // Rewrite logs of older formats, appending records to them would corrupt them
+                final Path rewritten = path.resolveSibling(path.getFileName() + ".tmp");
+                Files.deleteIfExists(rewritten);
+                try (final MemTable<P> memTable = new MemTable<>(rewritten, io, config, lastSequence)) {
+                    entries.forEach(entry -> memTable.put(entry.entry()));
+                }
+                Files.move(rewritten, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileUtils.forceDirectory(path.toAbsolutePath().getParent());
+            } else if (validBytes < Files.size(path)) {
+                // Drop the record cut short by a crash so new records follow the last complete one
+                try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                }
             }
+
+            // Inserting in key order is several times faster than in log order, the sort is
+            // stable so later writes of a key still replace earlier ones
+            entries.sort(Comparator.comparing(entry -> entry.entry().key()));
+            final long replayedSequence = entries.stream().mapToLong(Sequenced::sequence).max().orElse(0);
+            final MemTable<P> memTable = new MemTable<>(path, io, config, Math.max(lastSequence, replayedSequence));
+            // Counts the headers of the records too, close enough to tell when to flush
+            memTable.data.putAll(entries.stream().map(Sequenced::entry).collect(Collectors.toList()),
+                    i -> entries.get(i).sequence(), Files.size(path) - Long.BYTES);
             return memTable;
         });
     }
 
+    /**
+     * Reads all complete records of the log into {@code entries}, those of older formats
+     * numbered from the sequence after {@code lastSequence}.
+     *
+     * @return the number of bytes up to the end of the last complete record,
+     * or -1 if the log was written in an older format
+     */
+    private static <P extends Comparable<P>> long readLog(final Path path, final ValueIO<P> io,
+                                                          final long lastSequence, final List<Sequenced<P>> entries)
+            throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final LogReader reader = new LogReader(channel);
+            if (!reader.fill(Long.BYTES)) {
+                // Either empty or a header cut short by a crash
+                return 0;
+            }
+            final long magic = reader.buffer().getLong();
+            if (magic != LOG_MAGIC && magic != LOG_MAGIC_V3 && magic != LOG_MAGIC_V2 && magic != LOG_MAGIC_V1) {
+                readBareLog(path, io, lastSequence, entries);
+                return -1;
+            }
+            final boolean checksummed = magic == LOG_MAGIC || magic == LOG_MAGIC_V3;
+            final int minLength = magic == LOG_MAGIC ? Long.BYTES + Integer.BYTES : checksummed ? Integer.BYTES : 0;
+            long sequence = lastSequence;
+
+            long validBytes = Long.BYTES;
+            final ByteBufferDataInput recordInput = new ByteBufferDataInput(ByteBuffer.allocate(0));
+            while (reader.fill(RECORD_HEADER_BYTES)) {
+                final ByteBuffer buffer = reader.buffer();
+                final int length = buffer.getInt();
+                final int checksumOrCount = buffer.getInt();
+                final long recordEnd = validBytes + RECORD_HEADER_BYTES + length;
+                if (length < minLength) {
+                    // Records hold at least their count, a shorter one is only valid as the zeroed tail of a crashed write
+                    if (isZeroedTail(channel, validBytes)) {
+                        break;
+                    }
+                    throw new IOException("Invalid length " + length + " of record at offset " + validBytes + " of " + path);
+                }
+                if (recordEnd > fileSize || !reader.fill(length)) {
+                    // The last record was cut short by a crash
+                    break;
+                }
+                final ByteBuffer record = reader.buffer().slice(reader.buffer().position(), length);
+                reader.buffer().position(reader.buffer().position() + length);
+
+                int count = checksumOrCount;
+                if (checksummed) {
+                    if (checksum(record) != checksumOrCount) {
+                        if (recordEnd == fileSize) {
+                            // The last record was being written when the machine crashed
+                            break;
+                        }
+                        throw new IOException("Checksum mismatch in record at offset " + validBytes + " of " + path);
+                    }
+                    if (magic == LOG_MAGIC) {
+                        sequence = record.getLong() - 1;
+                    }
+                    count = record.getInt();
+                }
+                recordInput.reset(record);
+                for (int i = 0; i < count; i++) {
+                    entries.add(new Sequenced<>(magic == LOG_MAGIC_V1
+                            ? Entry.read(recordInput, io)
+                            : Entry.readWithKind(recordInput, io), ++sequence));
+                }
+                validBytes = recordEnd;
+            }
+            return magic == LOG_MAGIC ? validBytes : -1;
+        }
+    }
+
+    // Whether the log holds nothing but zeros from the offset on
+    private static boolean isZeroedTail(final FileChannel channel, final long offset) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = offset;
+        int read;
+        while ((read = channel.read(buffer.clear(), position)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    // Logs written before records existed, a stream of entries up to the first incomplete one
+    private static <P extends Comparable<P>> void readBareLog(final Path path, final ValueIO<P> io,
+                                                              final long lastSequence, final List<Sequenced<P>> entries)
+            throws IOException {
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long sequence = lastSequence;
+            while (true) {
+                entries.add(new Sequenced<>(Entry.read(input, io), ++sequence));
+            }
+        } catch (final EOFException e) {
+            // The end of the log
+        }
+    }
+
+    private static int checksum(final ByteBuffer bytes) {
+        final CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Closes the log and moves it to {@code frozenLogPath}. The returned table holds the
+     * same data but rejects writes, it stays readable until it has been written to a segment.
+     */
+    public Try<MemTable<T>> freeze(final Path frozenLogPath) {
+        return Try.of(() -> {
+            close();
+            Files.move(logPath, frozenLogPath, StandardCopyOption.ATOMIC_MOVE);
+            FileUtils.forceDirectory(frozenLogPath.toAbsolutePath().getParent());
+            return new MemTable<>(data, frozenLogPath, Option.none(), valueIO, config, lastSequence);
+        });
+    }
+
+    public boolean isFrozen() {
+        return fileManager.isEmpty();
+    }
+
+    /**
+     * Closes the log and writes the content of the table to a new segment. The log is
+     * left in place so no data is lost until the segment has been recorded as live,
+     * it is then removed with {@link #deleteLog()}.
+     */
     public Try<Segment<T>> writeSegment(final Path path, final Integer id, final DBConfig config) {
         return Try.of(() -> {
             close();
-            Files.delete(logPath);
             final Path segmentDir = path.resolve(id.toString());
             Files.createDirectory(segmentDir);
+            FileUtils.forceDirectory(path);
 
-            return FileUtils.applyWithOutput(Segment.getDataPath(segmentDir), dataOutputStream -> {
-                final SparseIndex<T> index = writeDataAndCreateIndex(dataOutputStream, config);
-                index.write(Segment.getIndexPath(segmentDir));
-                return new Segment<>(index, segmentDir, id);
-            });
+            return data.writeSegment(segmentDir, id, valueIO, config);
         });
     }
 
-    private SparseIndex<T> writeDataAndCreateIndex(final DataOutputStream dataOutput, final DBConfig config) throws IOException {
-        long bytesWrittenTotal = 0;
-        final SparseIndex<T> index = new SparseIndex<>(valueIO);
-        long bytesWrittenSinceLastIndex = config.getBytesPerIndex();
-
-        for (final Map.Entry<T, T> entry : data.entrySet()) {
-            if (bytesWrittenSinceLastIndex >= config.getBytesPerIndex()) {
-                index.insert(entry.getKey(), bytesWrittenTotal);
-                bytesWrittenSinceLastIndex = 0;
-            }
-            final long bytesWritten = Entry.of(entry).write(dataOutput, valueIO);
-            bytesWrittenTotal += bytesWritten;
-            bytesWrittenSinceLastIndex += bytesWritten;
+    @SneakyThrows
+    private static OutputFileManager openLog(final Path logPath) {
+        final OutputFileManager log = new OutputFileManager(logPath, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+        if (Files.size(logPath) == 0) {
+            log.runWithOutput(dataOutputStream -> dataOutputStream.writeLong(LOG_MAGIC));
+            log.flush();
         }
-        return index;
+        return log;
     }
 
-    private void incrementSize(final long incr) {
-        size += incr;
+    @SneakyThrows
+    private static long logSize(final Path logPath) {
+        return Files.size(logPath);
     }
 
+    public Try<Void> deleteLog() {
+        return Try.run(() -> Files.deleteIfExists(logPath));
+    }
+
+    /**
+     * Closes the log, under GROUP_COMMIT and SYNC durability it is forced to disk first.
+     */
     @Override
     public void close() throws Exception {
-        fileManager.close();
+        synchronized (syncLock) {
+            synchronized (this) {
+                for (final OutputFileManager log : fileManager) {
+                    if (config.getWalDurability().isForced()) {
+                        log.flush();
+                        log.force();
+                    }
+                    log.close();
+                }
+                // Nothing can be written any more, writers waiting for a force are done
+                syncedPosition = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    // An entry replayed from the log along with its sequence
+    private record Sequenced<P extends Comparable<P>>(Entry<P> entry, long sequence) {
+    }
+
+    /**
+     * Reads a log through a direct buffer of {@link #REPLAY_BUFFER_BYTES}, so that records are
+     * decoded from memory instead of one stream call at a time.
+     */
+    private static class LogReader {
+
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(REPLAY_BUFFER_BYTES).flip();
+
+        LogReader(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * Makes at least {@code bytes} bytes available in the buffer, false if the log ends before.
+         */
+        boolean fill(final int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (bytes > buffer.capacity()) {
+                buffer = ByteBuffer.allocateDirect(bytes).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            int read = 0;
+            while (buffer.hasRemaining() && read >= 0) {
+                read = channel.read(buffer);
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+    }
+
+    // Exposes the bytes of the record, so that its checksum is computed without copying them
+    private static class RecordBuffer extends ByteArrayOutputStream {
+
+        byte[] bytes() {
+            return buf;
+        }
     }
 }
@@ -0,0 +1,68 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.config.MemTableStorage;
+import keydb.types.ValueIO;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+/**
+ * The sorted entries of a {@link MemTable}. Every version of a key is kept along with the
+ * sequence number of its write, so that reads as of an older sequence still find the entry
+ * that was latest then. Writes are serialized by the table, any number of threads may read
+ * concurrently with the writer.
+ */
+interface MemTableData<T extends Comparable<T>> {
+
+    static <P extends Comparable<P>> MemTableData<P> create(final ValueIO<P> valueIO, final DBConfig config) {
+        return config.getMemTableStorage() == MemTableStorage.OFF_HEAP
+                ? new ArenaMemTableData<>(valueIO, config)
+                : new HeapMemTableData<>();
+    }
+
+    /**
+     * Applies the entries in order, the first one with {@code firstSequence} and each next one
+     * with the sequence after. {@code loggedBytes} is the size of their record in the log.
+     */
+    default void putAll(final List<Entry<T>> entries, final long firstSequence, final long loggedBytes) {
+        putAll(entries, i -> firstSequence + i, loggedBytes);
+    }
+
+    /**
+     * Applies the entries in order, the i-th one with sequence {@code sequences(i)}. Versions of
+     * the same key have to be applied in the order of their sequences.
+     */
+    void putAll(List<Entry<T>> entries, IntToLongFunction sequences, long loggedBytes);
+
+    default Option<Entry<T>> get(final T key) {
+        return get(key, Long.MAX_VALUE);
+    }
+
+    /**
+     * The latest entry of the key written at or before {@code sequence}.
+     */
+    Option<Entry<T>> get(T key, long sequence);
+
+    default CloseableIterator<Entry<T>> iterator(final T fromKey, final T toKey) {
+        return iterator(fromKey, toKey, Long.MAX_VALUE);
+    }
+
+    /**
+     * The latest entries written at or before {@code sequence} with keys from {@code fromKey}
+     * inclusive to {@code toKey} exclusive, in order.
+     */
+    CloseableIterator<Entry<T>> iterator(T fromKey, T toKey, long sequence);
+
+    /**
+     * Bytes held by the entries, how exactly they are counted depends on the implementation.
+     */
+    long getSize();
+
+    /**
+     * Writes the latest entry of each key to a new segment in {@code segmentDir}.
+     */
+    Segment<T> writeSegment(Path segmentDir, Integer id, ValueIO<T> valueIO, DBConfig config) throws Exception;
+}
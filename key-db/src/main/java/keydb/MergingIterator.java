@@ -0,0 +1,63 @@
+package keydb;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of sorted entry iterators into a single sorted stream.
+ * The sources must be given newest first, when several of them contain
+ * the same key only the entry from the newest source is returned.
+ */
+public class MergingIterator<T extends Comparable<T>> implements CloseableIterator<Entry<T>> {
+
+    private final List<? extends CloseableIterator<Entry<T>>> sources;
+    private final PriorityQueue<Head<T>> heads;
+
+    public MergingIterator(final List<? extends CloseableIterator<Entry<T>>> sources) {
+        this.sources = sources;
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), Comparator
+                .comparing((Head<T> head) -> head.entry().key())
+                .thenComparingInt(Head::source));
+
+        for (int i = 0; i < sources.size(); i++) {
+            advance(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Entry<T> next() {
+        final Head<T> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        advance(head.source());
+
+        // Older versions of the same key are shadowed by the one just returned
+        while (!heads.isEmpty() && heads.peek().entry().key().compareTo(head.entry().key()) == 0) {
+            advance(heads.poll().source());
+        }
+        return head.entry();
+    }
+
+    @Override
+    public void close() {
+        sources.forEach(CloseableIterator::close);
+    }
+
+    private void advance(final int source) {
+        final CloseableIterator<Entry<T>> iterator = sources.get(source);
+        if (iterator.hasNext()) {
+            heads.add(new Head<>(iterator.next(), source));
+        }
+    }
+
+    private record Head<T extends Comparable<T>>(Entry<T> entry, int source) {
+    }
+}
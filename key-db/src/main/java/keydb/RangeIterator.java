@@ -0,0 +1,62 @@
+package keydb;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Ends an iterator sorted by key before the first key at or after {@code toKey}, and runs
+ * {@code onClose} once when closed. It closes itself as soon as it is exhausted.
+ */
+public class RangeIterator<T extends Comparable<T>> implements CloseableIterator<Entry<T>> {
+
+    private final CloseableIterator<Entry<T>> iterator;
+    private final T toKey;
+    private final Runnable onClose;
+    private Entry<T> nextEntry;
+    private boolean closed;
+
+    public RangeIterator(final CloseableIterator<Entry<T>> iterator, final T toKey, final Runnable onClose) {
+        this.iterator = iterator;
+        this.toKey = toKey;
+        this.onClose = onClose;
+        this.nextEntry = readNext();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextEntry != null;
+    }
+
+    @Override
+    public Entry<T> next() {
+        if (nextEntry == null) {
+            throw new NoSuchElementException();
+        }
+        final Entry<T> entry = nextEntry;
+        nextEntry = readNext();
+        return entry;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            nextEntry = null;
+            try {
+                iterator.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+
+    private Entry<T> readNext() {
+        if (!closed && iterator.hasNext()) {
+            final Entry<T> entry = iterator.next();
+            if (entry.key().compareTo(toKey) < 0) {
+                return entry;
+            }
+        }
+        close();
+        return null;
+    }
+}
@@ -0,0 +1,106 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.file.ByteBufferDataInput;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buffers a thread reuses between lookups in segments, each grown when what it holds does not
+ * fit. Platform threads keep their own, the reads of the async executor borrow them from a
+ * {@link Pool} since its virtual threads live for a single task.
+ */
+final class ScratchBuffers {
+
+    private static final ThreadLocal<ScratchBuffers> CURRENT = new ThreadLocal<>();
+
+    // A block as stored on disk
+    private ByteBuffer block = ByteBuffer.allocate(8192);
+    // The decompressed entries of the block last read
+    private ByteBuffer entries = ByteBuffer.allocate(8192);
+    // The encoded key looked up in a block
+    private ByteBuffer key = ByteBuffer.allocate(256);
+    // The key being rebuilt by a lookup in a sparse index, and the encoded key it looks for
+    private ByteBuffer indexKey = ByteBuffer.allocate(256);
+    private ByteBuffer probe = ByteBuffer.allocate(256);
+    private final ByteBufferDataInput blockInput = new ByteBufferDataInput(ByteBuffer.allocate(0));
+
+    static ScratchBuffers current() {
+        ScratchBuffers buffers = CURRENT.get();
+        if (buffers == null) {
+            buffers = new ScratchBuffers();
+            CURRENT.set(buffers);
+        }
+        return buffers;
+    }
+
+    ByteBuffer block(final int size) {
+        block = grow(block, size);
+        return block.clear().limit(size);
+    }
+
+    ByteBuffer entries() {
+        return entries;
+    }
+
+    /**
+     * Keeps the buffer the entries were decompressed into, in case it had to be replaced by a larger one.
+     */
+    void setEntries(final ByteBuffer entries) {
+        this.entries = entries;
+    }
+
+    ByteBuffer key(final int size) {
+        key = grow(key, size);
+        return key.clear();
+    }
+
+    ByteBuffer indexKey(final int size) {
+        indexKey = grow(indexKey, size);
+        return indexKey.clear();
+    }
+
+    ByteBuffer probe(final int size) {
+        probe = grow(probe, size);
+        return probe.clear();
+    }
+
+    ByteBufferDataInput blockInput(final ByteBuffer buffer) {
+        return blockInput.reset(buffer);
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer, final int size) {
+        return buffer.capacity() < size ? ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2)) : buffer;
+    }
+
+    /**
+     * Lends at most {@code capacity} sets of buffers to the threads running tasks, new ones are
+     * only made when all of them are in use.
+     */
+    static final class Pool {
+
+        private final BlockingQueue<ScratchBuffers> idle;
+
+        Pool(final int capacity) {
+            this.idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        }
+
+        /**
+         * Runs the task with buffers of the pool as those of the calling thread, which gets
+         * back its own afterwards.
+         */
+        void run(final Runnable task) {
+            final ScratchBuffers own = CURRENT.get();
+            final ScratchBuffers buffers = Option.of(idle.poll()).getOrElse(ScratchBuffers::new);
+            CURRENT.set(buffers);
+            try {
+                task.run();
+            } finally {
+                CURRENT.set(own);
+                idle.offer(buffers);
+            }
+        }
+    }
+}
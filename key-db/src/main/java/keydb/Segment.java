@@ -1,49 +1,550 @@
 package keydb;
 
+import io.vavr.Lazy;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
+import keydb.types.Codec;
 import keydb.types.ValueIO;
+import keydb.types.VarInt;
+import keydb.file.ByteBufferDataInput;
+import keydb.metrics.KeyDBMetrics;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.commons.io.input.ProxyInputStream;
 
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-@RequiredArgsConstructor
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 @Getter
 @EqualsAndHashCode
-public class Segment<T extends Comparable<T>> implements Comparable<Segment<T>> {
+public class Segment<T extends Comparable<T>> implements Comparable<Segment<T>>, AutoCloseable {
 
-    private final SparseIndex<T> index;
+    // Read on first use, so that a segment opened from its metadata in the manifest reads no file until it is used
+    @Getter(AccessLevel.NONE)
+    private final Lazy<SegmentFormat.IndexSection<T>> indexSection;
+    @Getter(AccessLevel.NONE)
+    private final Lazy<BloomFilter<T>> bloomFilter;
+    // Smallest and largest key stored in the segment
+    private final T minKey;
+    private final T maxKey;
     private final Path rootPath;
     private final Integer id;
+    private final SegmentFormat.Footer footer;
+
+    // The data file is opened on first access and kept open until the segment is closed
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile DataFile dataFile;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile boolean closed;
+
+    // Number of versions holding the segment, the last one to let go closes it
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger refs = new AtomicInteger();
+    // Set once the segment has been replaced by a compaction, its files are deleted when it is closed
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile boolean obsolete;
+    // Run after the files of an obsolete segment have been deleted
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile Runnable onDeleted = () -> { };
+    // Where the bytes read from the files of the segment are counted, none until it joins a database
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile KeyDBMetrics metrics;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final AtomicBoolean indexCounted = new AtomicBoolean();
+
+    public Segment(
+            final SparseIndex<T> index,
+            final BloomFilter<T> bloomFilter,
+            final T minKey,
+            final T maxKey,
+            final Path rootPath,
+            final Integer id,
+            final SegmentFormat.Footer footer,
+            final Option<Codec<T>> codec) {
+        this(Lazy.of(() -> new SegmentFormat.IndexSection<>(index, maxKey, codec)), Lazy.of(() -> bloomFilter),
+                minKey, maxKey, rootPath, id, footer);
+        // Already in memory, so it must not be counted as read
+        indexCounted.set(true);
+    }
+
+    public SparseIndex<T> getIndex() {
+        return getIndexSection().index();
+    }
+
+    /**
+     * Counts the bytes read from the files of the segment from now on in the metrics of the database.
+     */
+    public void countReadsIn(final KeyDBMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private SegmentFormat.IndexSection<T> getIndexSection() {
+        final boolean unread = !indexSection.isEvaluated();
+        final SegmentFormat.IndexSection<T> section = indexSection.get();
+        if (unread && indexCounted.compareAndSet(false, true)) {
+            final KeyDBMetrics counted = metrics;
+            if (counted != null) {
+                counted.addIndexBytesRead(footer.indexLength());
+            }
+        }
+        return section;
+    }
+
+    private void countBlockBytesRead(final long bytes) {
+        final KeyDBMetrics counted = metrics;
+        if (counted != null) {
+            counted.addSegmentBytesRead(bytes);
+        }
+    }
+
+    public BloomFilter<T> getBloomFilter() {
+        return bloomFilter.get();
+    }
+
+    /**
+     * Encodes the entries of segments written in format version 2 and later.
+     */
+    public Option<Codec<T>> getCodec() {
+        return getIndexSection().codec();
+    }
 
     public Try<Option<T>> get(final T key, final ValueIO<T> valueIO) {
-        return Try.of(() -> FileUtils.applyWithInput(getDataPath(rootPath), dataInputStream -> {
-            dataInputStream.skip(index.getStartSearchByteOffset(key));
+        return get(key, valueIO, BlockCache.disabled());
+    }
 
-            while (true) {
-                try {
-                    final Entry<T> entry = Entry.read(dataInputStream, valueIO);
-                    final int order = entry.key().compareTo(key);
-
-                    if (order > 0) {
-                        break;
-                    } else if (order == 0) {
-                        return Option.some(entry.value());
-                    }
-                } catch (final EOFException e) {
-                    break;
+    /**
+     * Looks up the value of the key, none if it is deleted or expired.
+     */
+    public Try<Option<T>> get(final T key, final ValueIO<T> valueIO, final BlockCache<T> blockCache) {
+        final long now = System.currentTimeMillis();
+        return getEntry(key, valueIO, blockCache).map(entry -> entry.filter(e -> e.isLive(now)).map(Entry::value));
+    }
+
+    /**
+     * Looks up the entry of the key, which may be a tombstone or have expired. Its block is
+     * read from the cache if present and added to it otherwise.
+     */
+    public Try<Option<Entry<T>>> getEntry(final T key, final ValueIO<T> valueIO, final BlockCache<T> blockCache) {
+        return Try.of(() -> findEntry(key, valueIO, blockCache));
+    }
+
+    /**
+     * Looks up the entries of many keys, which must be sorted, in one forward pass over the
+     * blocks that may hold them. Each block is read once however many of the keys it holds.
+     * Returns the entries found, tombstones and expired entries included.
+     */
+    public Try<Map<T, Entry<T>>> getEntries(final List<T> keys, final ValueIO<T> valueIO, final BlockCache<T> blockCache) {
+        return Try.of(() -> findEntries(keys, valueIO, blockCache));
+    }
+
+    private Map<T, Entry<T>> findEntries(final List<T> keys, final ValueIO<T> valueIO, final BlockCache<T> blockCache) throws IOException {
+        final Map<T, Entry<T>> found = new HashMap<>();
+        final SparseIndex<T> index = getIndex();
+        final List<T> blockKeys = new ArrayList<>();
+        int currentBlock = -1;
+        for (final T key : keys) {
+            if (!getBloomFilter().mightContain(key)) {
+                continue;
+            }
+            final int block = index.getBlock(key);
+            if (block < 0) {
+                continue;
+            }
+            if (block != currentBlock && !blockKeys.isEmpty()) {
+                findInBlock(currentBlock, blockKeys, valueIO, blockCache, found);
+                blockKeys.clear();
+            }
+            currentBlock = block;
+            blockKeys.add(key);
+        }
+        if (!blockKeys.isEmpty()) {
+            findInBlock(currentBlock, blockKeys, valueIO, blockCache, found);
+        }
+        return found;
+    }
+
+    // Resolves the sorted keys that all fall in the block with a single walk over its entries
+    private void findInBlock(final int block, final List<T> keys, final ValueIO<T> valueIO,
+                             final BlockCache<T> blockCache, final Map<T, Entry<T>> found) throws IOException {
+        final Option<Codec<T>> codec = getCodec();
+        if (blockCache.isEnabled()) {
+            final long offset = getIndex().getBlockOffset(block);
+            BlockCache.Block<T> decoded = blockCache.get(id, offset).getOrNull();
+            if (decoded == null) {
+                final ByteBuffer buffer = readBlock(block);
+                final int weight = buffer.remaining();
+                decoded = decodeBlock(buffer, SegmentFormat.entryIO(valueIO, codec));
+                blockCache.put(id, offset, decoded, weight);
+            }
+            for (final T key : keys) {
+                decoded.get(key).forEach(entry -> found.put(key, entry));
+            }
+            return;
+        }
+
+        if (codec.isDefined()) {
+            findAll(readBlock(block), keys, codec.get(), footer.hasEntryKinds(), found);
+            return;
+        }
+
+        final ByteBufferDataInput input = ScratchBuffers.current().blockInput(readBlock(block));
+        int next = 0;
+        while (input.hasRemaining() && next < keys.size()) {
+            final Entry<T> entry = readEntry(input, valueIO, footer.hasEntryKinds());
+            int order = entry.key().compareTo(keys.get(next));
+            // Keys sorting before the entry are not in the block
+            while (order > 0 && ++next < keys.size()) {
+                order = entry.key().compareTo(keys.get(next));
+            }
+            if (order == 0) {
+                found.put(keys.get(next++), entry);
+            }
+        }
+    }
+
+    // Like find, but for many sorted keys at once, moving on to the next key whenever an entry passes the current one
+    private static <T extends Comparable<T>> void findAll(final ByteBuffer entries, final List<T> keys, final Codec<T> codec,
+                                                          final boolean withKinds, final Map<T, Entry<T>> found) {
+        int next = 0;
+        ByteBuffer encodedKey = encodeKey(keys.get(next), codec);
+
+        while (entries.hasRemaining()) {
+            final int entryKeyLength = VarInt.get(entries);
+            final int entryKeyOffset = entries.position();
+            int order = codec.compare(entries, entryKeyOffset, entryKeyLength, encodedKey, 0, encodedKey.limit());
+            while (order > 0) {
+                if (++next == keys.size()) {
+                    return;
+                }
+                encodedKey = encodeKey(keys.get(next), codec);
+                order = codec.compare(entries, entryKeyOffset, entryKeyLength, encodedKey, 0, encodedKey.limit());
+            }
+            entries.position(entryKeyOffset + entryKeyLength);
+
+            final byte kind = withKinds ? entries.get() : Entry.PUT;
+            Entry<T> entry = null;
+            if (kind == Entry.TOMBSTONE) {
+                entry = order == 0 ? Entry.tombstone(keys.get(next)) : null;
+            } else {
+                final long expiresAt = kind == Entry.EXPIRING_PUT ? entries.getLong() : Entry.NEVER;
+                final int valueLength = VarInt.get(entries);
+                if (order == 0) {
+                    entry = new Entry<>(keys.get(next), codec.decode(entries, valueLength), expiresAt);
+                } else {
+                    entries.position(entries.position() + valueLength);
                 }
             }
+            if (entry != null) {
+                found.put(entry.key(), entry);
+                if (++next == keys.size()) {
+                    return;
+                }
+                encodedKey = encodeKey(keys.get(next), codec);
+            }
+        }
+    }
 
+    private Option<Entry<T>> findEntry(final T key, final ValueIO<T> valueIO, final BlockCache<T> blockCache) throws IOException {
+        if (!getBloomFilter().mightContain(key)) {
             return Option.none();
-        }));
+        }
+
+        final SparseIndex<T> index = getIndex();
+        final int block = index.getBlock(key);
+        if (block < 0) {
+            return Option.none();
+        }
+
+        final Option<Codec<T>> codec = getCodec();
+        if (blockCache.isEnabled()) {
+            final long offset = index.getBlockOffset(block);
+            final Option<BlockCache.Block<T>> cached = blockCache.get(id, offset);
+            if (cached.isDefined()) {
+                return cached.get().get(key);
+            }
+            final ByteBuffer buffer = readBlock(block);
+            final int weight = buffer.remaining();
+            final BlockCache.Block<T> decoded = decodeBlock(buffer, SegmentFormat.entryIO(valueIO, codec));
+            blockCache.put(id, offset, decoded, weight);
+            return decoded.get(key);
+        }
+
+        if (codec.isDefined()) {
+            return find(readBlock(block), key, codec.get(), footer.hasEntryKinds());
+        }
+
+        final ByteBufferDataInput input = ScratchBuffers.current().blockInput(readBlock(block));
+        while (input.hasRemaining()) {
+            final Entry<T> entry = readEntry(input, valueIO, footer.hasEntryKinds());
+            final int order = entry.key().compareTo(key);
+
+            if (order > 0) {
+                break;
+            } else if (order == 0) {
+                return Option.some(entry);
+            }
+        }
+
+        return Option.none();
+    }
+
+    // Walks the encoded entries of a block comparing keys without decoding them, only the value found is decoded
+    private static <T extends Comparable<T>> Option<Entry<T>> find(
+            final ByteBuffer entries, final T key, final Codec<T> codec, final boolean withKinds) {
+        final ByteBuffer encodedKey = encodeKey(key, codec);
+        final int keyLength = encodedKey.limit();
+
+        while (entries.hasRemaining()) {
+            final int entryKeyLength = VarInt.get(entries);
+            final int entryKeyOffset = entries.position();
+            final int order = codec.compare(entries, entryKeyOffset, entryKeyLength, encodedKey, 0, keyLength);
+            if (order > 0) {
+                break;
+            }
+            entries.position(entryKeyOffset + entryKeyLength);
+
+            final byte kind = withKinds ? entries.get() : Entry.PUT;
+            if (kind == Entry.TOMBSTONE) {
+                if (order == 0) {
+                    return Option.some(Entry.tombstone(key));
+                }
+                continue;
+            }
+            final long expiresAt = kind == Entry.EXPIRING_PUT ? entries.getLong() : Entry.NEVER;
+            final int valueLength = VarInt.get(entries);
+            if (order == 0) {
+                return Option.some(new Entry<>(key, codec.decode(entries, valueLength), expiresAt));
+            }
+            entries.position(entries.position() + valueLength);
+        }
+
+        return Option.none();
+    }
+
+    private static <T extends Comparable<T>> Entry<T> readEntry(
+            final DataInput input, final ValueIO<T> valueIO, final boolean withKinds) throws IOException {
+        return withKinds ? Entry.readWithKind(input, valueIO) : Entry.read(input, valueIO);
+    }
+
+    private static <T> ByteBuffer encodeKey(final T key, final Codec<T> codec) {
+        final ByteBuffer buffer = ScratchBuffers.current().key(codec.encodedSize(key));
+        codec.encode(key, buffer);
+        return buffer.flip();
+    }
+
+    private BlockCache.Block<T> decodeBlock(final ByteBuffer buffer, final ValueIO<T> valueIO) throws IOException {
+        final ByteBufferDataInput input = ScratchBuffers.current().blockInput(buffer);
+        final List<T> keys = new ArrayList<>();
+        final List<Entry<T>> entries = new ArrayList<>();
+        while (input.hasRemaining()) {
+            final Entry<T> entry = readEntry(input, valueIO, footer.hasEntryKinds());
+            keys.add(entry.key());
+            entries.add(entry);
+        }
+        return new BlockCache.Block<>(keys, entries);
+    }
+
+    /**
+     * Iterates over all entries of the segment in key order, tombstones and expired entries included.
+     */
+    public Try<CloseableIterator<Entry<T>>> iterator(final ValueIO<T> valueIO) {
+        return Try.of(() -> new SegmentIterator<>(openEntries(Files.newInputStream(getDataPath(rootPath)), 0),
+                SegmentFormat.entryIO(valueIO, getCodec()), footer.hasEntryKinds()));
+    }
+
+    /**
+     * Iterates the entries from {@code fromKey} onwards, reading sequentially from the block that may hold it.
+     */
+    public Try<CloseableIterator<Entry<T>>> iterator(final ValueIO<T> valueIO, final T fromKey) {
+        return Try.of(() -> {
+            final SegmentFormat.IndexSection<T> section = getIndexSection();
+            final SeekableByteChannel channel = Files.newByteChannel(getDataPath(rootPath));
+            try {
+                final long start = section.index().getStartSearchByteOffset(fromKey);
+                channel.position(start);
+                final SegmentIterator<T> iterator = new SegmentIterator<>(openEntries(Channels.newInputStream(channel), start),
+                        SegmentFormat.entryIO(valueIO, section.codec()), footer.hasEntryKinds());
+                iterator.skipTo(fromKey);
+                return iterator;
+            } catch (final IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        });
+    }
+
+    // Entries from the given offset of the data file onwards, decoding the blocks unless the segment predates them
+    private DataInputStream openEntries(final InputStream data, final long start) {
+        final InputStream counted = new ProxyInputStream(data) {
+            @Override
+            protected void afterRead(final int n) {
+                if (n > 0) {
+                    countBlockBytesRead(n);
+                }
+            }
+        };
+        return footer.isLegacy()
+                ? new DataInputStream(new BufferedInputStream(counted))
+                : new DataInputStream(new SegmentFormat.BlockInputStream(counted, footer.indexOffset() - start));
+    }
+
+    /**
+     * Size of the data file, known from the footer without opening the file unless the segment predates it.
+     */
+    @SneakyThrows
+    public long getDataSize() {
+        if (!footer.isLegacy()) {
+            return footer.indexOffset() + footer.indexLength() + SegmentFormat.FOOTER_SIZE;
+        }
+        return getDataFile().size();
+    }
+
+    public void retain() {
+        refs.incrementAndGet();
+    }
+
+    /**
+     * Drops a reference taken by {@link #retain()}. Once the last one is gone the
+     * segment is closed, and if it is obsolete its files are deleted.
+     */
+    @SneakyThrows
+    public void release() {
+        if (refs.decrementAndGet() == 0) {
+            close();
+            if (obsolete) {
+                FileUtils.deleteDirectory(rootPath);
+                onDeleted.run();
+            }
+        }
+    }
+
+    public void markObsolete() {
+        markObsolete(() -> { });
+    }
+
+    /**
+     * Marks the segment to be deleted once released, {@code onDeleted} runs after its files are gone.
+     */
+    public void markObsolete(final Runnable onDeleted) {
+        this.onDeleted = onDeleted;
+        obsolete = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        final DataFile file = dataFile;
+        if (file != null) {
+            file.channel().close();
+        }
+    }
+
+    // Returns the entries of the block, decompressed into a buffer of the calling thread
+    private ByteBuffer readBlock(final int block) throws IOException {
+        final ByteBuffer stored = readStoredBlock(block);
+        if (footer.isLegacy()) {
+            return stored;
+        }
+        final ScratchBuffers buffers = ScratchBuffers.current();
+        final ByteBuffer entries = SegmentFormat.decodeBlock(stored, buffers.entries());
+        buffers.setEntries(entries);
+        return entries;
+    }
+
+    // Reads the whole block as stored on disk with positional reads into the buffer of the calling thread
+    private ByteBuffer readStoredBlock(final int block) throws IOException {
+        final SparseIndex<T> index = getIndex();
+        final DataFile file = getDataFile();
+        final long start = index.getBlockOffset(block);
+        final long blocksEnd = footer.isLegacy() ? file.size() : footer.indexOffset();
+        final long end = block + 1 < index.numBlocks() ? index.getBlockOffset(block + 1) : blocksEnd;
+        final ByteBuffer buffer = ScratchBuffers.current().block((int) (end - start));
+        countBlockBytesRead(end - start);
+
+        try {
+            while (buffer.hasRemaining()) {
+                if (file.channel().read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException(getDataPath(rootPath).toString());
+                }
+            }
+        } catch (final ClosedChannelException e) {
+            // An interrupted reader closes the channel for everyone, reopen it unless the segment is closed
+            if (closed || Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            synchronized (this) {
+                if (dataFile == file) {
+                    dataFile = null;
+                }
+            }
+            return readStoredBlock(block);
+        }
+        return buffer.flip();
+    }
+
+    private DataFile getDataFile() throws IOException {
+        DataFile file = dataFile;
+        if (file == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new ClosedChannelException();
+                }
+                if (dataFile == null) {
+                    final FileChannel channel = FileChannel.open(getDataPath(rootPath), StandardOpenOption.READ);
+                    dataFile = new DataFile(channel, channel.size());
+                }
+                file = dataFile;
+            }
+        }
+        return file;
     }
 
+    public boolean overlaps(final T fromKey, final T toKey) {
+        return minKey.compareTo(toKey) <= 0 && maxKey.compareTo(fromKey) >= 0;
+    }
+
+    /**
+     * Whether the segment may hold an entry of the key, without reading any of its blocks.
+     */
+    public boolean mightContain(final T key) {
+        return overlaps(key, key) && getBloomFilter().mightContain(key);
+    }
+
+    /**
+     * Opens the segment by reading its footer and index, as needed when the manifest holds no metadata for it.
+     */
     public static <P extends Comparable<P>> Try<Segment<P>> from(final Path rootPath, final ValueIO<P> valueIO) {
         return Try.of(() -> {
             if (!Files.isDirectory(rootPath)) {
@@ -51,12 +552,68 @@ public class Segment<T extends Comparable<T>> implements Comparable<Segment<T>>
             }
 
             final Integer id = Integer.parseInt(rootPath.getFileName().toString());
+            try (final FileChannel channel = FileChannel.open(getDataPath(rootPath), StandardOpenOption.READ)) {
+                final SegmentFormat.Footer footer = SegmentFormat.readFooter(channel);
+                if (!footer.isLegacy()) {
+                    final SegmentFormat.IndexSection<P> section = SegmentFormat.readIndex(channel, footer, valueIO);
+                    final P minKey = section.index().getKey(0);
+                    return new Segment<>(Lazy.of(() -> section), lazyBloomFilter(rootPath, valueIO),
+                            minKey, section.maxKey(), rootPath, id, footer);
+                }
+            }
+
             final SparseIndex<P> index = SparseIndex.from(getIndexPath(rootPath), valueIO).get();
+            final P minKey = index.getKey(0);
+            final P maxKey = readLastKey(getDataPath(rootPath), index.getBlockOffset(index.numBlocks() - 1), valueIO);
 
-            return new Segment<>(index, rootPath, id);
+            return new Segment<>(Lazy.of(() -> new SegmentFormat.IndexSection<>(index, maxKey, Option.none())),
+                    lazyBloomFilter(rootPath, valueIO), minKey, maxKey, rootPath, id, SegmentFormat.Footer.LEGACY);
         });
     }
 
+    /**
+     * Opens the segment from the metadata recorded in the manifest without reading any of its
+     * files, its index and bloom filter are read when the segment is first used.
+     */
+    public static <P extends Comparable<P>> Segment<P> open(
+            final Path rootPath, final P minKey, final P maxKey, final SegmentFormat.Footer footer, final ValueIO<P> valueIO) {
+        final Lazy<SegmentFormat.IndexSection<P>> section = Lazy.of(() -> Try.of(() -> {
+            if (footer.isLegacy()) {
+                final SparseIndex<P> index = SparseIndex.from(getIndexPath(rootPath), valueIO).get();
+                return new SegmentFormat.IndexSection<>(index, maxKey, Option.<Codec<P>>none());
+            }
+            try (final FileChannel channel = FileChannel.open(getDataPath(rootPath), StandardOpenOption.READ)) {
+                return SegmentFormat.readIndex(channel, footer, valueIO);
+            }
+        }).get());
+        final Integer id = Integer.parseInt(rootPath.getFileName().toString());
+        return new Segment<>(section, lazyBloomFilter(rootPath, valueIO), minKey, maxKey, rootPath, id, footer);
+    }
+
+    // Segments written before bloom filters were introduced simply go without one
+    private static <P extends Comparable<P>> Lazy<BloomFilter<P>> lazyBloomFilter(final Path rootPath, final ValueIO<P> valueIO) {
+        return Lazy.of(() -> Files.isRegularFile(getBloomFilterPath(rootPath))
+                ? BloomFilter.from(getBloomFilterPath(rootPath), valueIO).get()
+                : BloomFilter.empty(valueIO));
+    }
+
+    // Without a footer the last key is found by scanning the final block of the data file
+    private static <P extends Comparable<P>> P readLastKey(
+            final Path dataPath, final long lastBlockOffset, final ValueIO<P> valueIO) throws Throwable {
+        return FileUtils.applyWithInput(dataPath, dataInputStream -> {
+            dataInputStream.skipNBytes(lastBlockOffset);
+            P lastKey = null;
+            while (true) {
+                try {
+                    lastKey = Entry.read(dataInputStream, valueIO).key();
+                } catch (final EOFException e) {
+                    return lastKey;
+                }
+            }
+        });
+    }
+
+    // Only segments written before the index moved into the data file have an index file
     public static Path getIndexPath(final Path root) {
         return root.resolve("index");
     }
@@ -65,8 +622,67 @@ public class Segment<T extends Comparable<T>> implements Comparable<Segment<T>>
         return root.resolve("data");
     }
 
+    public static Path getBloomFilterPath(final Path root) {
+        return root.resolve("bloom");
+    }
+
     @Override
     public int compareTo(final Segment<T> anotherSegment) {
         return anotherSegment.id.compareTo(id);
     }
+
+    private static class SegmentIterator<T extends Comparable<T>> implements CloseableIterator<Entry<T>> {
+
+        private final DataInputStream dataInputStream;
+        private final ValueIO<T> valueIO;
+        private final boolean withKinds;
+        private Entry<T> nextEntry;
+
+        SegmentIterator(final DataInputStream dataInputStream, final ValueIO<T> valueIO, final boolean withKinds) {
+            this.dataInputStream = dataInputStream;
+            this.valueIO = valueIO;
+            this.withKinds = withKinds;
+            this.nextEntry = readNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry != null;
+        }
+
+        @Override
+        public Entry<T> next() {
+            if (nextEntry == null) {
+                throw new NoSuchElementException();
+            }
+            final Entry<T> entry = nextEntry;
+            nextEntry = readNext();
+            return entry;
+        }
+
+        @Override
+        @SneakyThrows
+        public void close() {
+            dataInputStream.close();
+        }
+
+        void skipTo(final T key) {
+            while (nextEntry != null && nextEntry.key().compareTo(key) < 0) {
+                nextEntry = readNext();
+            }
+        }
+
+        private Entry<T> readNext() {
+            try {
+                return readEntry(dataInputStream, valueIO, withKinds);
+            } catch (final EOFException e) {
+                return null;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private record DataFile(FileChannel channel, long size) {
+    }
 }
@@ -0,0 +1,287 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.compression.BlockCodec;
+import keydb.compression.NoCodec;
+import keydb.file.ByteBufferDataInput;
+import keydb.types.Codec;
+import keydb.types.CodecValueIO;
+import keydb.types.ValueIO;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32C;
+
+/**
+ * Layout of the data file of a segment:
+ * <pre>
+ *   block*   [byte codec][int length][int stored length][int crc32c of the stored bytes][stored bytes]
+ *   index    [charset][packed sparse index][largest key]
+ *   footer   [long index offset][int index length][int crc32c of the index][int version][long magic]
+ * </pre>
+ * Each block holds the entries between two consecutive keys of the sparse index, compressed by
+ * its codec. Data files written before the format was versioned are a bare stream of entries
+ * with the index in a file of its own, they are told apart by the missing magic.
+ * <p>
+ * From version 2 on keys and values are encoded by the {@link Codec} of their type, each framed
+ * by a varint of its length, and the index starts with the charset strings were encoded in.
+ * Version 1 wrote them with the {@link ValueIO}, which is still done for types without a codec.
+ * <p>
+ * From version 3 on each key is followed by the kind of its entry, see
+ * {@link Entry#writeWithKind}, so that deleted keys and expiring values can be stored. The
+ * charset is then written for every segment, left empty when there is no codec.
+ * <p>
+ * From version 4 on the index is stored as packed by {@link SparseIndex#writePacked}, so it is
+ * read back with a few bulk reads. Versions before wrote {@code [int count]([key][long block offset])*}.
+ */
+public final class SegmentFormat {
+
+    public static final long MAGIC = 0x4B45594442534547L;
+    public static final int VERSION = 4;
+    public static final int BLOCK_HEADER_SIZE = 13;
+    public static final int FOOTER_SIZE = 28;
+
+    private SegmentFormat() {
+    }
+
+    /**
+     * Writes the first {@code length} bytes of {@code entries} as one block, uncompressed if the
+     * codec does not make it smaller. Returns the number of bytes written.
+     */
+    public static int writeBlock(
+            final DataOutput output, final byte[] entries, final int length, final BlockCodec codec) throws IOException {
+        final byte[] compressed = codec.compress(entries, length);
+        final boolean shrunk = compressed.length < length;
+        final byte[] stored = shrunk ? compressed : entries;
+        final int storedLength = shrunk ? compressed.length : length;
+
+        output.writeByte(shrunk ? codec.getId() : NoCodec.ID);
+        output.writeInt(length);
+        output.writeInt(storedLength);
+        output.writeInt(checksum(ByteBuffer.wrap(stored, 0, storedLength)));
+        output.write(stored, 0, storedLength);
+        return BLOCK_HEADER_SIZE + storedLength;
+    }
+
+    /**
+     * Verifies and decompresses a block read from disk, header included. The entries are decoded
+     * into {@code target} if it is large enough, into a new buffer otherwise.
+     */
+    public static ByteBuffer decodeBlock(final ByteBuffer block, final ByteBuffer target) throws IOException {
+        if (block.remaining() < BLOCK_HEADER_SIZE) {
+            throw new EOFException("Block is shorter than its header");
+        }
+        final byte codecId = block.get();
+        final int length = block.getInt();
+        final int storedLength = block.getInt();
+        final int checksum = block.getInt();
+        if (storedLength != block.remaining() || length < 0) {
+            throw new IOException("Block length does not match its header");
+        }
+        if (checksum(block) != checksum) {
+            throw new IOException("Block checksum mismatch");
+        }
+
+        final ByteBuffer entries = target.capacity() >= length ? target.clear().limit(length) : ByteBuffer.allocate(length);
+        BlockCodec.forId(codecId).decompress(block, entries);
+        return entries.flip();
+    }
+
+    /**
+     * How the keys and values of a segment are written, by the codec if there is one.
+     */
+    public static <T> ValueIO<T> entryIO(final ValueIO<T> valueIO, final Option<Codec<T>> codec) {
+        return codec.<ValueIO<T>>map(CodecValueIO::new).getOrElse(valueIO);
+    }
+
+    /**
+     * Appends the index and the footer after the last block, which ended at {@code indexOffset}.
+     */
+    public static <T extends Comparable<T>> Footer writeIndex(
+            final DataOutput output,
+            final long indexOffset,
+            final SparseIndex<T> index,
+            final T maxKey,
+            final ValueIO<T> valueIO,
+            final Option<Codec<T>> codec,
+            final Charset charset) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream indexOutput = new DataOutputStream(bytes);
+        indexOutput.writeUTF(codec.isDefined() ? charset.name() : "");
+        final ValueIO<T> entryIO = entryIO(valueIO, codec);
+        index.writePacked(indexOutput);
+        entryIO.write(maxKey, indexOutput);
+        final byte[] indexBytes = bytes.toByteArray();
+
+        final Footer footer = new Footer(indexOffset, indexBytes.length, checksum(ByteBuffer.wrap(indexBytes)), VERSION);
+        output.write(indexBytes);
+        output.writeLong(footer.indexOffset());
+        output.writeInt(footer.indexLength());
+        output.writeInt(footer.indexChecksum());
+        output.writeInt(footer.version());
+        output.writeLong(MAGIC);
+        return footer;
+    }
+
+    public static Footer readFooter(final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size < FOOTER_SIZE) {
+            return Footer.LEGACY;
+        }
+        final ByteBuffer buffer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+        final Footer footer = new Footer(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+        if (buffer.getLong() != MAGIC) {
+            return Footer.LEGACY;
+        }
+        if (footer.version() > VERSION) {
+            throw new IOException("Unsupported segment format version " + footer.version());
+        }
+        return footer;
+    }
+
+    /**
+     * Reads the index the footer points at, returning it along with the largest key of the
+     * segment and the codec its entries were written with.
+     */
+    public static <T extends Comparable<T>> IndexSection<T> readIndex(
+            final FileChannel channel, final Footer footer, final ValueIO<T> valueIO) throws IOException {
+        final ByteBuffer buffer = readFully(channel, footer.indexOffset(), footer.indexLength());
+        if (checksum(buffer) != footer.indexChecksum()) {
+            throw new IOException("Index checksum mismatch");
+        }
+
+        final ByteBufferDataInput input = new ByteBufferDataInput(buffer);
+        Option<Codec<T>> codec = Option.none();
+        final String charset = footer.version() >= 2 ? input.readUTF() : "";
+        if (!charset.isEmpty()) {
+            codec = Option.some(valueIO.getCodec(Charset.forName(charset)).getOrElseThrow(
+                    () -> new IOException("No codec to read segment entries encoded in " + charset)));
+        }
+        final ValueIO<T> entryIO = entryIO(valueIO, codec);
+        final SparseIndex<T> index;
+        if (footer.hasPackedIndex()) {
+            index = SparseIndex.readPacked(input, valueIO, codec);
+        } else {
+            index = new SparseIndex<>(valueIO, codec);
+            final int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                final SparseIndex.Index<T> entry = SparseIndex.Index.read(input, entryIO);
+                index.insert(entry.key(), entry.offset());
+            }
+        }
+        return new IndexSection<>(index, entryIO.read(input), codec);
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int checksum(final ByteBuffer bytes) {
+        final CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Where the index of a data file starts, {@link #LEGACY} for data files without a footer.
+     */
+    public record Footer(long indexOffset, int indexLength, int indexChecksum, int version) {
+
+        public static final Footer LEGACY = new Footer(-1, 0, 0, 0);
+
+        public boolean isLegacy() {
+            return version == 0;
+        }
+
+        /**
+         * Whether entries are written with their kind, older versions only hold plain puts.
+         */
+        public boolean hasEntryKinds() {
+            return version >= 3;
+        }
+
+        public boolean hasPackedIndex() {
+            return version >= 4;
+        }
+    }
+
+    public record IndexSection<T extends Comparable<T>>(SparseIndex<T> index, T maxKey, Option<Codec<T>> codec) {
+    }
+
+    /**
+     * Decodes consecutive blocks of a data file into the stream of entries they hold,
+     * ending after {@code length} bytes of blocks.
+     */
+    public static class BlockInputStream extends InputStream {
+
+        private final DataInputStream input;
+        private long remaining;
+        private ByteBuffer entries = ByteBuffer.allocate(0);
+        private byte[] stored = new byte[0];
+
+        public BlockInputStream(final InputStream input, final long length) {
+            this.input = new DataInputStream(new BufferedInputStream(input));
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? entries.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            final int read = Math.min(len, entries.remaining());
+            entries.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        private boolean fill() throws IOException {
+            while (!entries.hasRemaining()) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+                input.readFully(header.array());
+                final int size = BLOCK_HEADER_SIZE + header.getInt(5);
+                if (size < BLOCK_HEADER_SIZE || size > remaining) {
+                    throw new IOException("Block length does not match its header");
+                }
+                if (stored.length < size) {
+                    stored = new byte[size];
+                }
+                System.arraycopy(header.array(), 0, stored, 0, BLOCK_HEADER_SIZE);
+                input.readFully(stored, BLOCK_HEADER_SIZE, size - BLOCK_HEADER_SIZE);
+                remaining -= size;
+                entries = decodeBlock(ByteBuffer.wrap(stored, 0, size), entries);
+            }
+            return true;
+        }
+    }
+}
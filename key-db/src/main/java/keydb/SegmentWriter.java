@@ -0,0 +1,182 @@
+package keydb;
+
+import io.vavr.control.Option;
+import io.vavr.control.Try;
+import keydb.compression.BlockCodec;
+import keydb.config.DBConfig;
+import keydb.types.Codec;
+import keydb.types.ValueIO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Writes a sorted stream of entries into a segment directory, creating the data
+ * file of compressed blocks, see {@link SegmentFormat}, along with its bloom filter.
+ * The stream must contain at least one entry. Both files are forced to disk before the
+ * segment is returned whatever the {@link keydb.config.WalDurability}, since the manifest
+ * listing the segment is, and the log or segments it replaces are deleted right after.
+ */
+public final class SegmentWriter {
+
+    private SegmentWriter() {
+    }
+
+    public static <T extends Comparable<T>> Try<Segment<T>> write(
+            final Path segmentDir,
+            final Integer id,
+            final Iterator<Entry<T>> entries,
+            final long expectedEntries,
+            final ValueIO<T> valueIO,
+            final DBConfig config) {
+        return write(segmentDir, id, entries, expectedEntries, Long.MAX_VALUE, valueIO, config);
+    }
+
+    /**
+     * Like {@link #write(Path, Integer, Iterator, long, ValueIO, DBConfig)} but stops once the data file
+     * has grown to at least {@code maxDataBytes}, leaving the remaining entries in the iterator.
+     */
+    public static <T extends Comparable<T>> Try<Segment<T>> write(
+            final Path segmentDir,
+            final Integer id,
+            final Iterator<Entry<T>> entries,
+            final long expectedEntries,
+            final long maxDataBytes,
+            final ValueIO<T> valueIO,
+            final DBConfig config) {
+        final ValueIO<T> entryIO = SegmentFormat.entryIO(valueIO, valueIO.getCodec(config.getCharset()));
+        final Iterator<EncodedEntry<T>> encoded = io.vavr.collection.Iterator.ofAll(entries)
+                .map(entry -> EncodedEntry.of(entry, entryIO));
+        return writeEncoded(segmentDir, id, encoded, expectedEntries, maxDataBytes, valueIO, config);
+    }
+
+    /**
+     * Like {@link #write(Path, Integer, Iterator, long, ValueIO, DBConfig)} for entries that are already
+     * encoded the way the segment stores them, their bytes are copied into the blocks as they are.
+     */
+    public static <T extends Comparable<T>> Try<Segment<T>> writeEncoded(
+            final Path segmentDir,
+            final Integer id,
+            final Iterator<EncodedEntry<T>> entries,
+            final long expectedEntries,
+            final ValueIO<T> valueIO,
+            final DBConfig config) {
+        return writeEncoded(segmentDir, id, entries, expectedEntries, Long.MAX_VALUE, valueIO, config);
+    }
+
+    private static <T extends Comparable<T>> Try<Segment<T>> writeEncoded(
+            final Path segmentDir,
+            final Integer id,
+            final Iterator<EncodedEntry<T>> entries,
+            final long expectedEntries,
+            final long maxDataBytes,
+            final ValueIO<T> valueIO,
+            final DBConfig config) {
+        return Try.of(() -> {
+            final BloomFilter<T> bloomFilter = BloomFilter.create(
+                    expectedEntries, config.getBloomFilterFalsePositiveRate(), valueIO);
+
+            final Segment<T> segment = FileUtils.applyWithOutput(Segment.getDataPath(segmentDir), true, dataOutputStream -> {
+                final Option<Codec<T>> codec = valueIO.getCodec(config.getCharset());
+                final Writer<T> writer = new Writer<>(
+                        new SparseIndex<>(valueIO, codec), bloomFilter, BlockCodec.of(config.getCompression()));
+                writer.writeData(dataOutputStream, entries, maxDataBytes, config);
+                final SegmentFormat.Footer footer = SegmentFormat.writeIndex(dataOutputStream,
+                        writer.bytesWritten, writer.index, writer.maxKey, valueIO, codec, config.getCharset());
+                bloomFilter.write(Segment.getBloomFilterPath(segmentDir), true).get();
+                return new Segment<>(
+                        writer.index, bloomFilter, writer.minKey, writer.maxKey, segmentDir, id, footer, codec);
+            });
+            // The files are forced, their entries in the directory have to be as well
+            FileUtils.forceDirectory(segmentDir);
+            return segment;
+        });
+    }
+
+    /**
+     * An entry along with a way to write it as {@link Entry#writeWithKind} does with the
+     * entry IO of the segment, see {@link SegmentFormat#entryIO}.
+     */
+    public interface EncodedEntry<T> {
+
+        T key();
+
+        void writeTo(DataOutputStream output) throws IOException;
+
+        static <P extends Comparable<P>> EncodedEntry<P> of(final Entry<P> entry, final ValueIO<P> entryIO) {
+            return new EncodedEntry<>() {
+                @Override
+                public P key() {
+                    return entry.key();
+                }
+
+                @Override
+                public void writeTo(final DataOutputStream output) throws IOException {
+                    entry.writeWithKind(output, entryIO);
+                }
+            };
+        }
+    }
+
+    private static class Writer<T extends Comparable<T>> {
+
+        private final SparseIndex<T> index;
+        private final BloomFilter<T> bloomFilter;
+        private final BlockCodec codec;
+        // Entries of the block being filled, before compression
+        private final BlockBuffer block = new BlockBuffer();
+        private final DataOutputStream blockOutput = new DataOutputStream(block);
+        private T minKey;
+        private T maxKey;
+        private long bytesWritten;
+
+        Writer(final SparseIndex<T> index, final BloomFilter<T> bloomFilter, final BlockCodec codec) {
+            this.index = index;
+            this.bloomFilter = bloomFilter;
+            this.codec = codec;
+        }
+
+        void writeData(
+                final DataOutputStream dataOutput,
+                final Iterator<EncodedEntry<T>> entries,
+                final long maxDataBytes,
+                final DBConfig config) throws IOException {
+            while (entries.hasNext() && bytesWritten + block.size() < maxDataBytes) {
+                final EncodedEntry<T> entry = entries.next();
+                final T key = entry.key();
+                // Each block starts at an index, so a lookup decompresses exactly one block
+                if (block.size() == 0) {
+                    index.insert(key, bytesWritten);
+                }
+                if (minKey == null) {
+                    minKey = key;
+                }
+                maxKey = key;
+                bloomFilter.add(key);
+                entry.writeTo(blockOutput);
+                if (block.size() >= config.getBytesPerIndex()) {
+                    writeBlock(dataOutput);
+                }
+            }
+            if (block.size() > 0) {
+                writeBlock(dataOutput);
+            }
+        }
+
+        private void writeBlock(final DataOutputStream dataOutput) throws IOException {
+            bytesWritten += SegmentFormat.writeBlock(dataOutput, block.bytes(), block.size(), codec);
+            block.reset();
+        }
+    }
+
+    private static class BlockBuffer extends ByteArrayOutputStream {
+
+        // The backing array, valid up to size()
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package keydb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.config.ShardHash;
+import keydb.types.ValueIO;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Partitions the keys over {@link DBConfig#getShards()} independent {@link KeyDB}s by their
+ * hash, so that writes to different shards don't wait for each other's log and MemTable.
+ * Each shard lives in a directory {@code shard-<n>} of the root, next to the
+ * {@code config.json} that fixes the number of shards.
+ * <p>
+ * Keys are routed by a hash of their bytes as written by the {@link ValueIO} of the type, the
+ * scheme is kept in the config as {@link DBConfig#getShardHash()}. Every shard has a MemTable
+ * and a block cache of the size given by the config.
+ */
+public class ShardedKeyDB<T extends Comparable<T>> implements AutoCloseable {
+
+    private final List<KeyDB<T>> shards;
+    private final ShardHash shardHash;
+    private final ValueIO<T> valueIO;
+
+    private ShardedKeyDB(final List<KeyDB<T>> shards, final ShardHash shardHash, final ValueIO<T> valueIO) {
+        this.shards = List.copyOf(shards);
+        this.shardHash = shardHash;
+        this.valueIO = valueIO;
+    }
+
+    public static <P extends Comparable<P>> ShardedKeyDB<P> create(final Path rootPath, final DBConfig config,
+                                                                  final Class<P> type) throws IOException {
+        if (config.getShards() < 1) {
+            throw new IllegalArgumentException("A sharded database needs at least one shard");
+        }
+        Files.createDirectory(rootPath);
+        Files.writeString(configPath(rootPath), new ObjectMapper().writeValueAsString(config),
+                StandardOpenOption.CREATE_NEW);
+        final List<KeyDB<P>> shards = new ArrayList<>();
+        for (int shard = 0; shard < config.getShards(); shard++) {
+            shards.add(KeyDB.create(shardPath(rootPath, shard), config, type));
+        }
+        return new ShardedKeyDB<>(shards, config.getShardHash(), ValueIO.getProvider(type));
+    }
+
+    public static <P extends Comparable<P>> ShardedKeyDB<P> load(final Path rootPath, final Class<P> type) throws IOException {
+        if (!Files.isRegularFile(configPath(rootPath))) {
+            throw new FileNotFoundException("No config found");
+        }
+        final DBConfig config = new ObjectMapper().readValue(
+                Files.readString(configPath(rootPath), StandardCharsets.UTF_8), DBConfig.class);
+        final List<KeyDB<P>> shards = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < config.getShards(); shard++) {
+                shards.add(KeyDB.load(shardPath(rootPath, shard), type));
+            }
+        } catch (final IOException | RuntimeException e) {
+            for (final KeyDB<P> loaded : shards) {
+                try {
+                    loaded.close();
+                } catch (final Exception suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return new ShardedKeyDB<>(shards, config.getShardHash(), ValueIO.getProvider(type));
+    }
+
+    public void put(final T key, final T value) {
+        shardOf(key).put(key, value);
+    }
+
+    public void put(final T key, final T value, final Duration ttl) {
+        shardOf(key).put(key, value, ttl);
+    }
+
+    public CompletableFuture<Void> putAsync(final T key, final T value) {
+        return shardOf(key).putAsync(key, value);
+    }
+
+    public void delete(final T key) {
+        shardOf(key).delete(key);
+    }
+
+    public Option<T> get(final T key) {
+        return shardOf(key).get(key);
+    }
+
+    public CompletableFuture<Option<T>> getAsync(final T key) {
+        return shardOf(key).getAsync(key);
+    }
+
+    /**
+     * Looks up the keys of each shard with one {@link KeyDB#getAll} and returns the values of
+     * those present in key order.
+     */
+    public Map<T, T> getAll(final Collection<T> keys) {
+        final List<List<T>> keysByShard = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            keysByShard.add(new ArrayList<>());
+        }
+        for (final T key : keys) {
+            keysByShard.get(shardIndex(key)).add(key);
+        }
+        final TreeMap<T, T> found = new TreeMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (!keysByShard.get(shard).isEmpty()) {
+                found.putAll(shards.get(shard).getAll(keysByShard.get(shard)));
+            }
+        }
+        return new LinkedHashMap<>(found);
+    }
+
+    /**
+     * Iterates the entries with keys from {@code fromKey} inclusive to {@code toKey} exclusive in
+     * key order, merging a scan of every shard. See {@link KeyDB#scan}.
+     */
+    public CloseableIterator<Entry<T>> scan(final T fromKey, final T toKey) {
+        final List<CloseableIterator<Entry<T>>> scans = new ArrayList<>();
+        try {
+            for (final KeyDB<T> shard : shards) {
+                scans.add(shard.scan(fromKey, toKey));
+            }
+        } catch (final RuntimeException e) {
+            scans.forEach(CloseableIterator::close);
+            throw e;
+        }
+        // The shards hold disjoint keys, so the merge never has to pick between them
+        return new MergingIterator<>(scans);
+    }
+
+    /**
+     * Flushes every shard and waits for all of them to finish.
+     */
+    public void flush() throws ExecutionException, InterruptedException {
+        final List<Future<?>> flushes = new ArrayList<>();
+        for (final KeyDB<T> shard : shards) {
+            flushes.add(shard.flush());
+        }
+        for (final Future<?> flush : flushes) {
+            flush.get();
+        }
+    }
+
+    public int numSegments() {
+        return shards.stream().mapToInt(KeyDB::numSegments).sum();
+    }
+
+    /**
+     * The shards, for their stats and metrics.
+     */
+    public List<KeyDB<T>> getShards() {
+        return shards;
+    }
+
+    /**
+     * Closes every shard, even when closing one of them fails.
+     */
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+        for (final KeyDB<T> shard : shards) {
+            try {
+                shard.close();
+            } catch (final Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private KeyDB<T> shardOf(final T key) {
+        return shards.get(shardIndex(key));
+    }
+
+    private int shardIndex(final T key) {
+        final long hash = switch (shardHash) {
+            case KEY_BYTES -> KeyHash.of(key, valueIO);
+        };
+        return (int) Math.floorMod(hash, (long) shards.size());
+    }
+
+    private static Path configPath(final Path rootPath) {
+        return rootPath.resolve("config.json");
+    }
+
+    private static Path shardPath(final Path rootPath, final int shard) {
+        return rootPath.resolve("shard-" + shard);
+    }
+}
@@ -0,0 +1,59 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks segments to merge by grouping neighbouring segments of similar size.
+ * All segments live in level 0 and only runs that are contiguous in age are
+ * picked, which is what allows the merged segment to take the place of its
+ * inputs without reordering any other segment in relation to them.
+ */
+@RequiredArgsConstructor
+public final class SizeTieredCompactionStrategy<T extends Comparable<T>> implements CompactionStrategy<T> {
+
+    private final DBConfig config;
+
+    @Override
+    public Option<CompactionTask<T>> pick(final Version<T> version) {
+        final List<Segment<T>> run = pick(version.getLevel(0), config);
+        return run.isEmpty() ? Option.none() : Option.some(new CompactionTask<>(run, 0, Long.MAX_VALUE));
+    }
+
+    /**
+     * @param segments all segments, ordered from newest to oldest
+     * @return the newest run of at least {@link DBConfig#getCompactionMinThreshold()} similarly
+     * sized segments ordered from newest to oldest, or an empty list if there is none
+     */
+    public static <P extends Comparable<P>> List<Segment<P>> pick(
+            final List<Segment<P>> segments, final DBConfig config) {
+        List<Segment<P>> run = new ArrayList<>();
+        long runSize = 0;
+
+        for (final Segment<P> segment : segments) {
+            final long size = segment.getDataSize();
+            final double average = run.isEmpty() ? size : (double) runSize / run.size();
+
+            if (size < average * config.getCompactionBucketLow() || size > average * config.getCompactionBucketHigh()) {
+                if (run.size() >= config.getCompactionMinThreshold()) {
+                    break;
+                }
+                run = new ArrayList<>();
+                runSize = 0;
+            }
+
+            run.add(segment);
+            runSize += size;
+
+            if (run.size() >= config.getCompactionMaxThreshold()) {
+                break;
+            }
+        }
+
+        return run.size() >= config.getCompactionMinThreshold() ? run : List.of();
+    }
+}
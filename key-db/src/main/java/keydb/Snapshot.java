@@ -0,0 +1,64 @@
+package keydb;
+
+import io.vavr.control.Option;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A consistent view of a {@link KeyDB} as of a sequence: reads see every write up to it and
+ * none made after, however many writes, flushes and compactions run meanwhile. Reads take no
+ * lock and never wait for writers. Entries expire as of the time the snapshot was taken.
+ * <p>
+ * The snapshot holds on to the MemTables it was taken from and retains the segments it reads,
+ * segments compacted away are deleted once every snapshot and scan using them is closed.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class Snapshot<T extends Comparable<T>> implements AutoCloseable {
+
+    private final KeyDB<T> db;
+    private final KeyDB.MemTables<T> tables;
+    private final Version<T> version;
+    @Getter
+    private final long sequence;
+    @Getter
+    private final long timestampMillis;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public Option<T> get(final T key) {
+        checkOpen();
+        return db.getEntry(tables, version, sequence, key)
+                .filter(entry -> entry.isLive(timestampMillis))
+                .map(Entry::value);
+    }
+
+    /**
+     * Like {@link KeyDB#scan}, but sees only the writes made up to the sequence. The iterator
+     * keeps the segments open until it is closed or exhausted, even if the snapshot is closed first.
+     */
+    public CloseableIterator<Entry<T>> scan(final T fromKey, final T toKey) {
+        checkOpen();
+        if (!version.tryRetain()) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+        return db.scan(tables, version, sequence, timestampMillis, fromKey, toKey);
+    }
+
+    /**
+     * Releases the segments of the snapshot, scans still open keep theirs until they are closed.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            version.release();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed.get()) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+    }
+}
@@ -1,60 +1,243 @@
 package keydb;
 
+import io.vavr.control.Option;
 import io.vavr.control.Try;
+import keydb.file.ByteBufferDataInput;
 import keydb.file.InputFileManager;
 import keydb.file.OutputFileManager;
+import keydb.types.Codec;
 import keydb.types.ValueIO;
-import lombok.EqualsAndHashCode;
+import keydb.types.VarInt;
 import lombok.Getter;
-import lombok.ToString;
+import lombok.SneakyThrows;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
-@EqualsAndHashCode
-@ToString
-@Getter
+import java.util.Arrays;
+
+/**
+ * The offset of each block of a segment along with the first key of the block, packed into a
+ * few arrays so that an index takes the same handful of objects however many blocks it has.
+ * <p>
+ * Keys are encoded by the codec of their type, or by the ValueIO for types without one, and
+ * front coded: each key is stored as the number of bytes it shares with the key before it
+ * followed by the bytes that differ. Every {@link #RESTART_INTERVAL}:th key is stored in full,
+ * a lookup binary searches these on the packed bytes and then walks at most
+ * {@link #RESTART_INTERVAL} keys from there. Segments store the index in the same layout:
+ * <pre>
+ *   [int count][int restart interval][int length of keys]
+ *   keys      ([varint shared][varint unshared][unshared bytes])*
+ *   restarts  [int position in keys]* of every restart interval:th key
+ *   offsets   [long block offset]* of every key
+ * </pre>
+ */
 public class SparseIndex<T extends Comparable<T>> {
-    private final List<Index<T>> indices;
 
+    public static final int RESTART_INTERVAL = 16;
+
+    @Getter
     private final ValueIO<T> valueIO;
+    private final Option<Codec<T>> codec;
+
+    private byte[] keys;
+    private int keysLength;
+    private int[] restarts;
+    private long[] offsets;
+    private int count;
+    // Length of the longest key, the key rebuilt by a lookup never outgrows it
+    private int maxKeyLength;
+    // The last key inserted, which the next one is front coded against
+    private byte[] lastKey = new byte[0];
 
+    /**
+     * An index packing keys with the codec of the type in UTF-8, if it has one.
+     */
     public SparseIndex(final ValueIO<T> valueIO) {
-        this.indices = new ArrayList<>();
+        this(valueIO, valueIO.getCodec(StandardCharsets.UTF_8));
+    }
+
+    public SparseIndex(final ValueIO<T> valueIO, final Option<Codec<T>> codec) {
+        this(valueIO, codec, new byte[64], 0, new int[4], new long[4], 0);
+    }
+
+    private SparseIndex(final ValueIO<T> valueIO, final Option<Codec<T>> codec, final byte[] keys,
+                        final int keysLength, final int[] restarts, final long[] offsets, final int count) {
         this.valueIO = valueIO;
+        this.codec = codec;
+        this.keys = keys;
+        this.keysLength = keysLength;
+        this.restarts = restarts;
+        this.offsets = offsets;
+        this.count = count;
     }
 
+    /**
+     * Appends the key of the next block, keys must be inserted in order.
+     */
     public void insert(final T key, final long byteOffset) {
-        insert(new Index<>(key, byteOffset));
+        final byte[] encoded = encode(key);
+        final int shared = count % RESTART_INTERVAL == 0 ? 0 : sharedLength(lastKey, encoded);
+        final int unshared = encoded.length - shared;
+
+        if (count % RESTART_INTERVAL == 0) {
+            if (restarts.length == count / RESTART_INTERVAL) {
+                restarts = Arrays.copyOf(restarts, restarts.length * 2);
+            }
+            restarts[count / RESTART_INTERVAL] = keysLength;
+        }
+        final int needed = keysLength + VarInt.size(shared) + VarInt.size(unshared) + unshared;
+        if (needed > keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(needed, keys.length * 2));
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(keys).position(keysLength);
+        VarInt.put(buffer, shared);
+        VarInt.put(buffer, unshared);
+        buffer.put(encoded, shared, unshared);
+        keysLength = buffer.position();
+
+        if (offsets.length == count) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[count++] = byteOffset;
+        maxKeyLength = Math.max(maxKeyLength, encoded.length);
+        lastKey = encoded;
     }
 
     public long getStartSearchByteOffset(final T key) {
-        final int searchIndex = Collections.binarySearch(
-                indices, new Index<>(key, 0), Comparator.comparing(Index::key));
+        final int block = getBlock(key);
+        return block < 0 ? 0 : getBlockOffset(block);
+    }
+
+    /**
+     * The data between two consecutive indices forms a block, this returns the
+     * block that contains the key if it is present at all. Returns -1 when the
+     * key sorts before the first indexed key.
+     */
+    public int getBlock(final T key) {
+        if (count == 0) {
+            return -1;
+        }
+        final ByteBuffer probe = codec.isDefined() ? encodeProbe(key, codec.get()) : null;
+        final ByteBuffer packed = ByteBuffer.wrap(keys);
+
+        // The last restart key not after the key
+        int low = 0;
+        int high = (count - 1) / RESTART_INTERVAL;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int position = restarts[mid];
+            final int length = readVarInt(keys, position + 1);
+            final int order = compare(packed, position + 1 + VarInt.size(length), length, key, probe);
+            if (order < 0) {
+                low = mid + 1;
+            } else if (order > 0) {
+                high = mid - 1;
+            } else {
+                return mid * RESTART_INTERVAL;
+            }
+        }
+        final int restart = low - 1;
+        if (restart < 0) {
+            return -1;
+        }
+
+        // Rebuild the keys after it one by one, until one sorts after the key
+        final ByteBuffer current = keyBuffer();
+        int position = restarts[restart];
+        int block = restart * RESTART_INTERVAL;
+        position = appendKey(position, current);
+        for (int next = block + 1; next < count && next < (restart + 1) * RESTART_INTERVAL; next++) {
+            position = appendKey(position, current);
+            final int order = compare(current, 0, current.position(), key, probe);
+            if (order > 0) {
+                break;
+            }
+            block = next;
+            if (order == 0) {
+                break;
+            }
+        }
+        return block;
+    }
+
+    public long getBlockOffset(final int block) {
+        return offsets[block];
+    }
 
-        if (searchIndex < 0) {
-            final int insertAt = -searchIndex - 1;
-            return (insertAt == 0) ? 0 : indices.get(insertAt - 1).offset();
-        } else {
-            return indices.get(searchIndex).offset();
+    /**
+     * The first key of the block.
+     */
+    public T getKey(final int block) {
+        final ByteBuffer current = keyBuffer();
+        int position = restarts[block / RESTART_INTERVAL];
+        for (int i = block - block % RESTART_INTERVAL; i <= block; i++) {
+            position = appendKey(position, current);
         }
+        return decode(current, 0, current.position());
     }
 
+    public int numBlocks() {
+        return count;
+    }
+
+    /**
+     * Writes the packed index, see the layout above.
+     */
+    public void writePacked(final DataOutput output) throws IOException {
+        output.writeInt(count);
+        output.writeInt(RESTART_INTERVAL);
+        output.writeInt(keysLength);
+        output.write(keys, 0, keysLength);
+        for (int i = 0; i < numRestarts(); i++) {
+            output.writeInt(restarts[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            output.writeLong(offsets[i]);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writePacked}, its keys must have been encoded with {@code codec}.
+     */
+    public static <P extends Comparable<P>> SparseIndex<P> readPacked(
+            final DataInput input, final ValueIO<P> valueIO, final Option<Codec<P>> codec) throws IOException {
+        final int count = input.readInt();
+        if (input.readInt() != RESTART_INTERVAL) {
+            throw new IOException("Unsupported restart interval of index");
+        }
+        final byte[] keys = new byte[input.readInt()];
+        input.readFully(keys);
+        final int[] restarts = new int[(count + RESTART_INTERVAL - 1) / RESTART_INTERVAL];
+        for (int i = 0; i < restarts.length; i++) {
+            restarts[i] = input.readInt();
+        }
+        final long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = input.readLong();
+        }
+
+        final SparseIndex<P> index = new SparseIndex<>(valueIO, codec, keys, keys.length, restarts, offsets, count);
+        index.maxKeyLength = index.findMaxKeyLength();
+        return index;
+    }
+
+    /**
+     * Writes the index file of segments written before indexes were part of the data file.
+     */
     public Try<Path> write(final Path path) {
         return Try.of(() -> Files.createFile(path))
             .andThenTry(() -> {
                 try (final OutputFileManager outputFileManager = new OutputFileManager(path)) {
                     outputFileManager.runWithOutput(dataOutputStream -> {
-                            // TODO: clean
-                            for (final Index<T> index : indices) {
-                                index.write(dataOutputStream, valueIO);
+                            for (int i = 0; i < count; i++) {
+                                new Index<>(getKey(i), offsets[i]).write(dataOutputStream, valueIO);
                             }
                         }
                     );
@@ -68,17 +251,125 @@ public class SparseIndex<T extends Comparable<T>> {
 
         return Try.of(() -> {
             try (final InputFileManager inputFileManager = new InputFileManager(path)) {
-                inputFileManager.acceptInputUntilEndOfFile(
-                        dataInputStream -> sparseIndex.insert(Index.read(dataInputStream, valueIO)));
+                inputFileManager.acceptInputUntilEndOfFile(dataInputStream -> {
+                    final Index<P> index = Index.read(dataInputStream, valueIO);
+                    sparseIndex.insert(index.key(), index.offset());
+                });
                 return sparseIndex;
             }
         });
     }
 
-    private void insert(final Index<T> index) {
-        indices.add(index);
+    // Packed indexes are equal if they hold the same keys and offsets
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof SparseIndex<?> that)) {
+            return false;
+        }
+        return count == that.count
+                && Arrays.equals(keys, 0, keysLength, that.keys, 0, that.keysLength)
+                && Arrays.equals(offsets, 0, count, that.offsets, 0, that.count);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = count;
+        for (int i = 0; i < keysLength; i++) {
+            hash = 31 * hash + keys[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseIndex(blocks=" + count + ", keyBytes=" + keysLength + ")";
+    }
+
+    private int numRestarts() {
+        return (count + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+    }
+
+    // Applies the front coded key at the position to the key before it, returning where the next key starts
+    private int appendKey(final int position, final ByteBuffer current) {
+        final int shared = readVarInt(keys, position);
+        final int unsharedPosition = position + VarInt.size(shared);
+        final int unshared = readVarInt(keys, unsharedPosition);
+        final int bytesPosition = unsharedPosition + VarInt.size(unshared);
+        current.position(shared).put(keys, bytesPosition, unshared);
+        return bytesPosition + unshared;
+    }
+
+    private int compare(final ByteBuffer encoded, final int offset, final int length, final T key, final ByteBuffer probe) {
+        if (probe != null) {
+            return codec.get().compare(encoded, offset, length, probe, 0, probe.limit());
+        }
+        return decode(encoded, offset, length).compareTo(key);
+    }
+
+    @SneakyThrows
+    private T decode(final ByteBuffer encoded, final int offset, final int length) {
+        if (codec.isDefined()) {
+            return codec.get().decode(encoded.duplicate().position(offset), length);
+        }
+        return valueIO.read(new ByteBufferDataInput(encoded.duplicate().position(offset).limit(offset + length)));
+    }
+
+    @SneakyThrows
+    private byte[] encode(final T key) {
+        if (codec.isDefined()) {
+            final ByteBuffer buffer = ByteBuffer.allocate(codec.get().encodedSize(key));
+            codec.get().encode(key, buffer);
+            return buffer.array();
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        valueIO.write(key, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    // A buffer of the thread large enough for any key of the index
+    private ByteBuffer keyBuffer() {
+        return ScratchBuffers.current().indexKey(maxKeyLength);
+    }
+
+    private static <P> ByteBuffer encodeProbe(final P key, final Codec<P> codec) {
+        final ByteBuffer buffer = ScratchBuffers.current().probe(codec.encodedSize(key));
+        codec.encode(key, buffer);
+        return buffer.flip();
+    }
+
+    private int findMaxKeyLength() {
+        int max = 0;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            final int shared = readVarInt(keys, position);
+            final int unsharedPosition = position + VarInt.size(shared);
+            final int unshared = readVarInt(keys, unsharedPosition);
+            max = Math.max(max, shared + unshared);
+            position = unsharedPosition + VarInt.size(unshared) + unshared;
+        }
+        return max;
+    }
+
+    private static int sharedLength(final byte[] a, final byte[] b) {
+        final int mismatch = Arrays.mismatch(a, b);
+        return mismatch < 0 ? a.length : Math.min(mismatch, Math.min(a.length, b.length));
+    }
+
+    private static int readVarInt(final byte[] bytes, final int position) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            final byte b = bytes[position + i];
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in index");
     }
 
+    /**
+     * An entry of the index file of segments written before indexes were part of the data file.
+     */
     public record Index<T>(T key, long offset) {
 
         public void write(final DataOutput output, final ValueIO<T> valueIO) throws IOException {
@@ -0,0 +1,178 @@
+package keydb;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the live segments arranged in levels. Level 0 holds
+ * freshly flushed segments ordered from newest to oldest, their key ranges may
+ * overlap. Every level below holds segments with disjoint key ranges ordered by
+ * key, so at most one segment per level can contain any given key.
+ * <p>
+ * Versions are reference counted. Each version holds a reference to all of its
+ * segments, which are closed once no version in use refers to them any more.
+ */
+@EqualsAndHashCode
+@ToString
+public class Version<T extends Comparable<T>> {
+
+    private final List<List<Segment<T>>> levels;
+    // Held once by the database while this is the current version and once by every reader using it
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private Version(final List<List<Segment<T>>> levels) {
+        this.levels = levels.stream().map(List::copyOf).collect(Collectors.toUnmodifiableList());
+    }
+
+    public static <P extends Comparable<P>> Version<P> empty() {
+        return new Version<>(List.of());
+    }
+
+    public static <P extends Comparable<P>> Version<P> of(final List<List<Segment<P>>> levels) {
+        return new Version<>(levels);
+    }
+
+    /**
+     * Takes a reference unless the version has already been released for good.
+     */
+    public boolean tryRetain() {
+        int current;
+        do {
+            current = refs.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!refs.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Drops a reference, the last one releases every segment of the version.
+     */
+    public void release() {
+        if (refs.decrementAndGet() == 0) {
+            getSegments().forEach(Segment::release);
+        }
+    }
+
+    public int numLevels() {
+        return levels.size();
+    }
+
+    public List<Segment<T>> getLevel(final int level) {
+        return level < levels.size() ? levels.get(level) : List.of();
+    }
+
+    public List<List<Segment<T>>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * All segments, from the one holding the newest data to the one holding the oldest.
+     */
+    public List<Segment<T>> getSegments() {
+        return levels.stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    public int numSegments() {
+        return levels.stream().mapToInt(List::size).sum();
+    }
+
+    public long getLevelSize(final int level) {
+        return getLevel(level).stream().mapToLong(Segment::getDataSize).sum();
+    }
+
+    /**
+     * The segments whose key range covers the key, ordered from newest to oldest.
+     */
+    public List<Segment<T>> getCandidates(final T key) {
+        final List<Segment<T>> candidates = new ArrayList<>();
+        for (final Segment<T> segment : getLevel(0)) {
+            if (segment.overlaps(key, key)) {
+                candidates.add(segment);
+            }
+        }
+        for (int level = 1; level < levels.size(); level++) {
+            final List<Segment<T>> segments = levels.get(level);
+            int low = 0;
+            int high = segments.size() - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final Segment<T> segment = segments.get(mid);
+                if (segment.getMaxKey().compareTo(key) < 0) {
+                    low = mid + 1;
+                } else if (segment.getMinKey().compareTo(key) > 0) {
+                    high = mid - 1;
+                } else {
+                    candidates.add(segment);
+                    break;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * The segments that may hold older data than any of the given ones, all segments
+     * following the newest of them apart from the given ones themselves.
+     */
+    public List<Segment<T>> getOlderThan(final Collection<Segment<T>> segments) {
+        final List<Segment<T>> all = getSegments();
+        final int newest = (int) all.stream().takeWhile(segment -> !segments.contains(segment)).count();
+        return all.subList(newest, all.size()).stream()
+                .filter(segment -> !segments.contains(segment))
+                .collect(Collectors.toList());
+    }
+
+    public List<Segment<T>> getOverlapping(final int level, final T fromKey, final T toKey) {
+        return getLevel(level).stream()
+                .filter(segment -> segment.overlaps(fromKey, toKey))
+                .collect(Collectors.toList());
+    }
+
+    public Version<T> withFlushedSegment(final Segment<T> segment) {
+        final List<List<Segment<T>>> newLevels = mutableLevels(1);
+        newLevels.get(0).add(0, segment);
+        return new Version<>(newLevels);
+    }
+
+    /**
+     * Removes the given segments from all levels and adds the new ones to {@code level}.
+     * In level 0 the new segments take the place of the newest removed segment of
+     * that level, in all other levels they are sorted into place by key.
+     */
+    public Version<T> replace(final Collection<Segment<T>> removed, final int level, final List<Segment<T>> added) {
+        final List<List<Segment<T>>> newLevels = mutableLevels(level + 1);
+        final List<Segment<T>> target = newLevels.get(level);
+
+        int position = 0;
+        if (level == 0) {
+            final int newestRemoved = (int) target.stream().takeWhile(segment -> !removed.contains(segment)).count();
+            position = newestRemoved == target.size() ? 0 : newestRemoved;
+        }
+        newLevels.forEach(segments -> segments.removeAll(removed));
+        target.addAll(position, added);
+
+        if (level > 0) {
+            target.sort(Comparator.comparing(Segment::getMinKey));
+        }
+        return new Version<>(newLevels);
+    }
+
+    private List<List<Segment<T>>> mutableLevels(final int minLevels) {
+        final List<List<Segment<T>>> newLevels = new ArrayList<>();
+        for (int level = 0; level < Math.max(minLevels, levels.size()); level++) {
+            newLevels.add(new ArrayList<>(getLevel(level)));
+        }
+        return newLevels;
+    }
+}
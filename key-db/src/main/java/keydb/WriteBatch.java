@@ -0,0 +1,48 @@
+package keydb;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group of puts and deletes that {@link KeyDB#write(WriteBatch)} applies with a single record
+ * in the write-ahead log, so that after a crash either all of them are recovered or none of them.
+ * Later writes of the same key within the batch overwrite earlier ones.
+ */
+public class WriteBatch<T extends Comparable<T>> {
+
+    @Getter
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    public WriteBatch<T> put(final T key, final T value) {
+        entries.add(new Entry<>(key, value));
+        return this;
+    }
+
+    /**
+     * Puts a value that expires once {@code ttl} has passed, counted from when it is added to the batch.
+     */
+    public WriteBatch<T> put(final T key, final T value, final Duration ttl) {
+        entries.add(new Entry<>(key, value, Entry.expiresAfter(ttl)));
+        return this;
+    }
+
+    public WriteBatch<T> delete(final T key) {
+        entries.add(Entry.tombstone(key));
+        return this;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
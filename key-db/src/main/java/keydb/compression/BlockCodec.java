@@ -0,0 +1,44 @@
+package keydb.compression;
+
+import keydb.config.Compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the blocks of a segment. Every block records the id of the codec it was
+ * written with, so segments written under different settings can be read side by side.
+ */
+public interface BlockCodec {
+
+    byte getId();
+
+    /**
+     * Compresses the first {@code length} bytes of {@code src}. The result may be larger than
+     * the input, in which case the block is better stored uncompressed.
+     */
+    byte[] compress(byte[] src, int length);
+
+    /**
+     * Decompresses the remaining bytes of {@code src} into {@code dst}, which must have
+     * exactly the uncompressed length of the block remaining.
+     */
+    void decompress(ByteBuffer src, ByteBuffer dst) throws IOException;
+
+    static BlockCodec of(final Compression compression) {
+        return switch (compression) {
+            case NONE -> NoCodec.INSTANCE;
+            case DEFLATE -> DeflateCodec.INSTANCE;
+            case LZ -> LzCodec.INSTANCE;
+        };
+    }
+
+    static BlockCodec forId(final byte id) throws IOException {
+        return switch (id) {
+            case NoCodec.ID -> NoCodec.INSTANCE;
+            case DeflateCodec.ID -> DeflateCodec.INSTANCE;
+            case LzCodec.ID -> LzCodec.INSTANCE;
+            default -> throw new IOException("Unknown block codec " + id);
+        };
+    }
+}
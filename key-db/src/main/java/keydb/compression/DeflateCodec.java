@@ -0,0 +1,61 @@
+package keydb.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class DeflateCodec implements BlockCodec {
+
+    public static final byte ID = 1;
+    public static final DeflateCodec INSTANCE = new DeflateCodec();
+
+    // Both hold native memory, so they are kept per thread instead of created for every block
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private DeflateCodec() {
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(final byte[] src, final int length) {
+        final Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(src, 0, length);
+        deflater.finish();
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        final byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public void decompress(final ByteBuffer src, final ByteBuffer dst) throws IOException {
+        final Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(src);
+        try {
+            while (dst.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(dst) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt deflate block", e);
+        }
+        if (dst.hasRemaining()) {
+            throw new EOFException("Deflate block is shorter than its uncompressed length");
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package keydb.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Byte oriented LZ77 codec in the style of LZ4, giving up some compression for speed.
+ * A block is a run of sequences. Each starts with a token holding the number of literals
+ * in its high and the match length minus four in its low four bits, a nibble of 15 being
+ * continued by bytes that are added on until one is below 255. The literals follow, then
+ * a two byte little endian offset back to the start of the match and any continued match
+ * length. The last sequence ends after its literals.
+ */
+public final class LzCodec implements BlockCodec {
+
+    public static final byte ID = 2;
+    public static final LzCodec INSTANCE = new LzCodec();
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 12;
+
+    private LzCodec() {
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(final byte[] src, final int length) {
+        final byte[] out = new byte[length + length / 255 + 16];
+        // Last position at which each hash of four bytes was seen
+        final int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+
+        int outPosition = 0;
+        int anchor = 0;
+        int position = 0;
+        while (position + MIN_MATCH <= length) {
+            final int sequence = readInt(src, position);
+            final int hash = (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+            final int candidate = table[hash];
+            table[hash] = position;
+
+            if (candidate < 0 || position - candidate > MAX_OFFSET || readInt(src, candidate) != sequence) {
+                position++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < length && src[candidate + matchLength] == src[position + matchLength]) {
+                matchLength++;
+            }
+            outPosition = writeSequence(out, outPosition, src, anchor, position - anchor, position - candidate, matchLength);
+            position += matchLength;
+            anchor = position;
+        }
+        outPosition = writeSequence(out, outPosition, src, anchor, length - anchor, 0, 0);
+        return Arrays.copyOf(out, outPosition);
+    }
+
+    @Override
+    public void decompress(final ByteBuffer src, final ByteBuffer dst) throws IOException {
+        // Decoding works on arrays, blocks read into direct buffers are copied over first
+        final byte[] in;
+        int inPosition;
+        final int inEnd;
+        if (src.hasArray()) {
+            in = src.array();
+            inPosition = src.arrayOffset() + src.position();
+            inEnd = src.arrayOffset() + src.limit();
+        } else {
+            in = new byte[src.remaining()];
+            src.duplicate().get(in);
+            inPosition = 0;
+            inEnd = in.length;
+        }
+        final ByteBuffer target = dst.hasArray() ? dst : ByteBuffer.allocate(dst.remaining());
+        final byte[] out = target.array();
+        final int outStart = target.arrayOffset() + target.position();
+        final int outEnd = target.arrayOffset() + target.limit();
+        int outPosition = outStart;
+
+        while (inPosition < inEnd) {
+            final int token = in[inPosition++] & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int next;
+                do {
+                    if (inPosition >= inEnd) {
+                        throw new IOException("Corrupt LZ block");
+                    }
+                    next = in[inPosition++] & 0xFF;
+                    literalLength += next;
+                } while (next == 255);
+            }
+            if (literalLength > inEnd - inPosition || literalLength > outEnd - outPosition) {
+                throw new IOException("Corrupt LZ block");
+            }
+            System.arraycopy(in, inPosition, out, outPosition, literalLength);
+            inPosition += literalLength;
+            outPosition += literalLength;
+
+            if (inPosition == inEnd) {
+                break;
+            }
+            if (inEnd - inPosition < 2) {
+                throw new IOException("Corrupt LZ block");
+            }
+            final int offset = (in[inPosition] & 0xFF) | (in[inPosition + 1] & 0xFF) << 8;
+            inPosition += 2;
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                int next;
+                do {
+                    if (inPosition >= inEnd) {
+                        throw new IOException("Corrupt LZ block");
+                    }
+                    next = in[inPosition++] & 0xFF;
+                    matchLength += next;
+                } while (next == 255);
+            }
+            matchLength += MIN_MATCH;
+            final int matchStart = outPosition - offset;
+            if (offset == 0 || matchStart < outStart || matchLength > outEnd - outPosition) {
+                throw new IOException("Corrupt LZ block");
+            }
+            if (offset >= matchLength) {
+                System.arraycopy(out, matchStart, out, outPosition, matchLength);
+                outPosition += matchLength;
+            } else {
+                // The match overlaps the bytes it produces, so it is copied one byte at a time
+                for (int i = 0; i < matchLength; i++) {
+                    out[outPosition++] = out[matchStart + i];
+                }
+            }
+        }
+        if (outPosition != outEnd) {
+            throw new IOException("LZ block is shorter than its uncompressed length");
+        }
+
+        src.position(src.limit());
+        target.position(outPosition - target.arrayOffset());
+        if (target != dst) {
+            dst.put(target.flip());
+        }
+    }
+
+    private static int writeSequence(
+            final byte[] out,
+            final int position,
+            final byte[] src,
+            final int literalStart,
+            final int literalLength,
+            final int offset,
+            final int matchLength) {
+        final int token = position;
+        int outPosition = writeLength(out, position + 1, literalLength);
+        System.arraycopy(src, literalStart, out, outPosition, literalLength);
+        outPosition += literalLength;
+
+        int tokenValue = Math.min(literalLength, 15) << 4;
+        if (matchLength > 0) {
+            tokenValue |= Math.min(matchLength - MIN_MATCH, 15);
+            out[outPosition++] = (byte) offset;
+            out[outPosition++] = (byte) (offset >>> 8);
+            outPosition = writeLength(out, outPosition, matchLength - MIN_MATCH);
+        }
+        out[token] = (byte) tokenValue;
+        return outPosition;
+    }
+
+    // Writes the part of a length that does not fit in its nibble of the token
+    private static int writeLength(final byte[] out, final int position, final int length) {
+        int outPosition = position;
+        if (length >= 15) {
+            int rest = length - 15;
+            while (rest >= 255) {
+                out[outPosition++] = (byte) 255;
+                rest -= 255;
+            }
+            out[outPosition++] = (byte) rest;
+        }
+        return outPosition;
+    }
+
+    private static int readInt(final byte[] src, final int position) {
+        return (src[position] & 0xFF)
+                | (src[position + 1] & 0xFF) << 8
+                | (src[position + 2] & 0xFF) << 16
+                | (src[position + 3] & 0xFF) << 24;
+    }
+}
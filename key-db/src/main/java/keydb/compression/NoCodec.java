@@ -0,0 +1,31 @@
+package keydb.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public final class NoCodec implements BlockCodec {
+
+    public static final byte ID = 0;
+    public static final NoCodec INSTANCE = new NoCodec();
+
+    private NoCodec() {
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(final byte[] src, final int length) {
+        return src;
+    }
+
+    @Override
+    public void decompress(final ByteBuffer src, final ByteBuffer dst) throws IOException {
+        if (src.remaining() != dst.remaining()) {
+            throw new IOException("Uncompressed block has the wrong length");
+        }
+        dst.put(src);
+    }
+}
@@ -0,0 +1,28 @@
+package keydb.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public enum AsyncExecutor {
+    // A new virtual thread for every operation, blocking on the disk then only parks the virtual
+    // thread. Falls back to PLATFORM_THREADS on JDKs without virtual threads
+    VIRTUAL_THREADS,
+    // A pool of platform threads that grows with the number of operations in flight
+    PLATFORM_THREADS;
+
+    /**
+     * Creates the executor, {@code platformThreads} makes the threads of PLATFORM_THREADS.
+     */
+    public ExecutorService newExecutor(final ThreadFactory platformThreads) {
+        if (this == VIRTUAL_THREADS) {
+            try {
+                // Looked up at runtime so that the library still runs on JDKs before 21
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (final ReflectiveOperationException e) {
+                return PLATFORM_THREADS.newExecutor(platformThreads);
+            }
+        }
+        return Executors.newCachedThreadPool(platformThreads);
+    }
+}
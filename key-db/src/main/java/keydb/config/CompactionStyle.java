@@ -0,0 +1,10 @@
+package keydb.config;
+
+public enum CompactionStyle {
+    // Segments are never merged
+    NONE,
+    // Runs of similarly sized segments are merged into one larger segment
+    SIZE_TIERED,
+    // Segments are merged down into levels of non-overlapping key ranges
+    LEVELED
+}
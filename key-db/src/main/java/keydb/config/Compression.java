@@ -0,0 +1,10 @@
+package keydb.config;
+
+public enum Compression {
+    // Blocks are stored as they are
+    NONE,
+    // Deflate from java.util.zip, smaller blocks at a higher cost to write and read
+    DEFLATE,
+    // Byte oriented LZ77 in the style of LZ4, cheap enough to decompress on every lookup
+    LZ
+}
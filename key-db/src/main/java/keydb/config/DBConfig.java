@@ -20,12 +20,135 @@ public class DBConfig {
     @Builder.Default
     long memTableFlushSizeBytes = 2_000_000;
 
+    // Number of full MemTables that may wait to be flushed in the background
+    // before writes block until one of them has been written to a segment
+    // Default: 2
+    @Builder.Default
+    int maxImmutableMemTables = 2;
+
+    // Where the MemTable keeps its entries until they are flushed, see MemTableStorage
+    // Default: HEAP
+    @Builder.Default
+    MemTableStorage memTableStorage = MemTableStorage.HEAP;
+
+    // How writes to the log of the MemTable are made durable, see WalDurability
+    // Default: PERIODIC
+    @Builder.Default
+    WalDurability walDurability = WalDurability.PERIODIC;
+
+    // Under PERIODIC durability the log buffer is flushed once this much time has
+    // passed or this many bytes have been written since the last flush, checked on
+    // each write. Writes left buffered are flushed in the background once the time
+    // has passed. Zero flushes after every write
+    // Default: 0 ms, 0 bytes
+    @Builder.Default
+    long walFlushIntervalMillis = 0;
+    @Builder.Default
+    long walFlushIntervalBytes = 0;
+
     // Approximate number of bytes between the indices that are created
     // when a MemTable is persisted to form a new segment
     // Default: 4 KB  (~500 indices for a 2MB segment)
     @Builder.Default
     long bytesPerIndex = 4_096;
 
+    // Codec compressing each block of a segment, a block spans the entries between
+    // two indices. Segments written with any codec can be read regardless of this setting
+    // Default: LZ
+    @Builder.Default
+    Compression compression = Compression.LZ;
+
+    // Target false positive rate of the bloom filter written with each
+    // segment, lower rates cost more memory per key. 1.0 disables the filter
+    // Default: 1 %  (~10 bits per key)
+    @Builder.Default
+    double bloomFilterFalsePositiveRate = 0.01;
+
+    // Capacity of the cache of decoded segment blocks shared by all segments,
+    // measured in the uncompressed size of the blocks. 0 disables the cache
+    // Default: 8 MB
+    @Builder.Default
+    long blockCacheSizeBytes = 8_000_000;
+
+    // Strategy used by the background thread that merges segments
+    // Default: SIZE_TIERED
+    @Builder.Default
+    CompactionStyle compactionStyle = CompactionStyle.SIZE_TIERED;
+
+    // Minimum number of similarly sized segments in a row that
+    // triggers a size-tiered compaction
+    // Default: 4
+    @Builder.Default
+    int compactionMinThreshold = 4;
+
+    // Maximum number of segments merged by a single compaction
+    // Default: 32
+    @Builder.Default
+    int compactionMaxThreshold = 32;
+
+    // A segment is considered similar in size to a run of segments if its size
+    // lies between these fractions of the average size of the run
+    // Default: 0.5 - 1.5
+    @Builder.Default
+    double compactionBucketLow = 0.5;
+    @Builder.Default
+    double compactionBucketHigh = 1.5;
+
+    // Number of segments in level 0 that triggers a leveled compaction into level 1
+    // Default: 4
+    @Builder.Default
+    int level0CompactionTrigger = 4;
+
+    // Maximum size of level 1 under leveled compaction
+    // Default: 20 MB
+    @Builder.Default
+    long level1MaxBytes = 20_000_000;
+
+    // Each level below level 1 may grow this many times larger than the one above it
+    // Default: 10
+    @Builder.Default
+    int levelSizeRatio = 10;
+
+    // Number of levels under leveled compaction, the last level is never compacted further
+    // Default: 7
+    @Builder.Default
+    int maxLevels = 7;
+
+    // Size at which leveled compaction splits its output into a new segment
+    // Default: 2 MB
+    @Builder.Default
+    long targetSegmentSizeBytes = 2_000_000;
+
+    // Threads running the asynchronous operations of KeyDB, see AsyncExecutor
+    // Default: VIRTUAL_THREADS
+    @Builder.Default
+    AsyncExecutor asyncExecutor = AsyncExecutor.VIRTUAL_THREADS;
+
+    // Maximum number of asynchronous reads that may read segments at the same time, the
+    // rest are queued without holding a thread until one of them finishes. Reads served by
+    // the MemTables are not limited
+    // Default: 64
+    @Builder.Default
+    int maxAsyncSegmentReads = 64;
+
+    // Registers the metrics of the database as an MBean named after its path,
+    // see KeyDBMetricsMXBean
+    // Default: false
+    @Builder.Default
+    boolean registerMBean = false;
+
+    // Number of KeyDBs a ShardedKeyDB partitions its keys over, each with its own
+    // MemTable, log and segments. Fixed when the ShardedKeyDB is created, KeyDB ignores it
+    // Default: 1
+    @Builder.Default
+    int shards = 1;
+
+    // How a ShardedKeyDB picks the shard of a key, see ShardHash. Fixed when the
+    // ShardedKeyDB is created, KeyDB ignores it
+    // Default: KEY_BYTES
+    @Builder.Default
+    ShardHash shardHash = ShardHash.KEY_BYTES;
+
     // Charset used when serializing the String key/value pairs
     // Default: UTF-8
     @Builder.Default
@@ -0,0 +1,12 @@
+package keydb.config;
+
+public enum MemTableStorage {
+    // Entries are kept as objects on the heap. The size of the MemTable is the
+    // number of bytes its entries took up in the log
+    HEAP,
+    // Entries are serialized into chunks of memory outside the heap, indexed by a skip
+    // list of their offsets, which leaves far fewer objects for the garbage collector and
+    // lets a flush copy them into the segment as they are. The size of the MemTable is
+    // the exact number of bytes taken up in the chunks
+    OFF_HEAP
+}
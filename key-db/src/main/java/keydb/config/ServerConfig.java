@@ -0,0 +1,35 @@
+package keydb.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+
+@Value
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerConfig {
+
+    // Address the server listens on
+    // Default: all interfaces
+    @Builder.Default
+    String host = "0.0.0.0";
+
+    // Port the server listens on, 0 picks a free one
+    // Default: 7070
+    @Builder.Default
+    int port = 7070;
+
+    // Initial size of the input and output buffers of each connection, they grow
+    // to fit larger frames and are reused for all of its requests
+    // Default: 64 KB
+    @Builder.Default
+    int bufferBytes = 64 * 1024;
+
+    // Largest request or response frame, a connection sending a larger request is
+    // closed and a larger response is replaced by an error
+    // Default: 16 MB
+    @Builder.Default
+    int maxFrameBytes = 16 * 1024 * 1024;
+}
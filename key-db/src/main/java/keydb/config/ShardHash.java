@@ -0,0 +1,7 @@
+package keydb.config;
+
+public enum ShardHash {
+    // FNV-1a of the key as written by its ValueIO, mixed by the murmur3 finalizer. Depends only
+    // on the stored bytes of the key, so it routes every key to the same shard in every run
+    KEY_BYTES
+}
@@ -0,0 +1,23 @@
+package keydb.config;
+
+public enum WalDurability {
+    // Writes are left in the log buffer until it fills up, a crash of the process may lose them
+    NONE,
+    // The log buffer is flushed to the operating system at the interval given by
+    // walFlushIntervalMillis and walFlushIntervalBytes, writes survive a crash of the
+    // process once flushed but not a crash of the machine
+    PERIODIC,
+    // Every put waits until its write has been forced to disk, writers waiting at
+    // the same time share a single fsync
+    GROUP_COMMIT,
+    // Every write is forced to disk on its own before the put returns
+    SYNC;
+
+    /**
+     * Whether the log is forced to disk. Segments are always forced before they are listed in
+     * the manifest, only the log is left to the durability.
+     */
+    public boolean isForced() {
+        return this == GROUP_COMMIT || this == SYNC;
+    }
+}
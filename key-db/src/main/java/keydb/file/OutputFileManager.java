@@ -6,18 +6,53 @@ import lombok.SneakyThrows;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class OutputFileManager extends FileManager<DataOutputStream> {
 
+    private final FileChannel channel;
+
     public OutputFileManager(final Path path, final OpenOption... options) throws IOException {
-        super(new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, options))));
+        this(FileChannel.open(path, writeOptions(options)));
+    }
+
+    private OutputFileManager(final FileChannel channel) {
+        super(new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel))));
+        this.channel = channel;
     }
 
     @SneakyThrows
     public void runWithOutput(final CheckedConsumer<DataOutputStream> consumer) {
         consumer.accept(resource);
     }
+
+    /**
+     * Hands the buffered bytes to the operating system, they survive a crash of the process.
+     */
+    public void flush() throws IOException {
+        resource.flush();
+    }
+
+    /**
+     * Forces the flushed bytes to the storage device, they survive a crash of the machine.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    // Same defaults as Files.newOutputStream
+    private static Set<OpenOption> writeOptions(final OpenOption... options) {
+        final Set<OpenOption> writeOptions = new HashSet<>(options.length == 0
+                ? List.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+                : List.of(options));
+        writeOptions.add(StandardOpenOption.WRITE);
+        return writeOptions;
+    }
 }
@@ -0,0 +1,101 @@
+package keydb.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values, such as latencies in nanoseconds, recorded without locks
+ * from any number of threads.
+ * <p>
+ * Values below 8 have a bucket each, larger ones are bucketed by their highest bit and the three
+ * bits below it, so a bucket spans at most an eighth of its lower bound. Every bucket is a
+ * {@link LongAdder}, which spreads concurrent increments over cells instead of contending on one.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the value, negative values are recorded as 0.
+     */
+    public void record(final long value) {
+        final long recorded = Math.max(value, 0);
+        counts[bucket(recorded)].increment();
+        sum.add(recorded);
+        max.accumulate(recorded);
+    }
+
+    /**
+     * The values recorded so far. Values recorded while the snapshot is taken may be missing
+     * from some of its fields.
+     */
+    public Snapshot snapshot() {
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        return new Snapshot(count, sum.sum(), max.get(), snapshot);
+    }
+
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // The largest value that falls in the bucket
+    static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (highestBit - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (highestBit - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @param count  number of values recorded
+     * @param sum    sum of the values
+     * @param max    largest value, 0 if there is none
+     * @param counts number of values in each bucket
+     */
+    public record Snapshot(long count, long sum, long max, long[] counts) {
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * The value below which the given fraction of values fall, accurate to the width of its
+         * bucket. 0 if nothing was recorded.
+         */
+        public long percentile(final double fraction) {
+            final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
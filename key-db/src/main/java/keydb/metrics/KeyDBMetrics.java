@@ -0,0 +1,234 @@
+package keydb.metrics;
+
+import lombok.SneakyThrows;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Latencies and I/O volumes of a database. Recording only touches {@link LongAdder}s, so it is
+ * cheap enough to stay on: no locks are taken and concurrent threads rarely share a counter.
+ * The sizes of the MemTables and segments are read from the database when a snapshot is taken.
+ */
+public class KeyDBMetrics implements KeyDBMetricsMXBean {
+
+    private final Histogram putLatency = new Histogram();
+    private final Histogram getLatency = new Histogram();
+    private final Histogram flushLatency = new Histogram();
+    private final Histogram segmentsProbed = new Histogram();
+    private final LongAdder walBytesWritten = new LongAdder();
+    private final LongAdder segmentBytesWritten = new LongAdder();
+    private final LongAdder segmentBytesRead = new LongAdder();
+    private final LongAdder indexBytesRead = new LongAdder();
+
+    private final LongSupplier memTableSizeBytes;
+    private final IntSupplier segmentCount;
+    private final LongSupplier diskBytes;
+
+    // Runs the reporters, created by the first of them
+    private ScheduledExecutorService reporters;
+    private ObjectName mBeanName;
+
+    public KeyDBMetrics(final LongSupplier memTableSizeBytes, final IntSupplier segmentCount, final LongSupplier diskBytes) {
+        this.memTableSizeBytes = memTableSizeBytes;
+        this.segmentCount = segmentCount;
+        this.diskBytes = diskBytes;
+    }
+
+    /**
+     * Metrics of nothing, for segments that do not belong to a database.
+     */
+    public static KeyDBMetrics detached() {
+        return new KeyDBMetrics(() -> 0, () -> 0, () -> 0);
+    }
+
+    public void recordPut(final long nanos) {
+        putLatency.record(nanos);
+    }
+
+    public void recordGet(final long nanos) {
+        getLatency.record(nanos);
+    }
+
+    public void recordSegmentsProbed(final int segments) {
+        segmentsProbed.record(segments);
+    }
+
+    public void recordFlush(final long nanos) {
+        flushLatency.record(nanos);
+    }
+
+    public void addWalBytesWritten(final long bytes) {
+        walBytesWritten.add(bytes);
+    }
+
+    public void addSegmentBytesWritten(final long bytes) {
+        segmentBytesWritten.add(bytes);
+    }
+
+    public void addSegmentBytesRead(final long bytes) {
+        segmentBytesRead.add(bytes);
+    }
+
+    public void addIndexBytesRead(final long bytes) {
+        indexBytesRead.add(bytes);
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(putLatency.snapshot(), getLatency.snapshot(), flushLatency.snapshot(),
+                segmentsProbed.snapshot(), walBytesWritten.sum(), segmentBytesWritten.sum(), segmentBytesRead.sum(),
+                indexBytesRead.sum(), memTableSizeBytes.getAsLong(), segmentCount.getAsInt(), diskBytes.getAsLong());
+    }
+
+    /**
+     * Hands a snapshot to the reporter every {@code period} until the returned future is
+     * cancelled or the database is closed. A reporter that throws is not called again.
+     */
+    public synchronized ScheduledFuture<?> startReporting(final MetricsReporter reporter, final Duration period) {
+        if (reporters == null) {
+            reporters = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "keydb-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return reporters.scheduleAtFixedRate(() -> reporter.report(snapshot()),
+                period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under {@code keydb:type=KeyDB,name=<name>}.
+     */
+    @SneakyThrows
+    public synchronized void registerMBean(final String name) {
+        final ObjectName objectName = new ObjectName("keydb:type=KeyDB,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        mBeanName = objectName;
+    }
+
+    /**
+     * Stops the reporters and unregisters the MBean.
+     */
+    @SneakyThrows
+    public synchronized void close() {
+        if (reporters != null) {
+            reporters.shutdownNow();
+        }
+        if (mBeanName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+            mBeanName = null;
+        }
+    }
+
+    @Override
+    public long getPutCount() {
+        return putLatency.snapshot().count();
+    }
+
+    @Override
+    public double getPutLatencyMeanMicros() {
+        return micros(putLatency.snapshot().mean());
+    }
+
+    @Override
+    public double getPutLatencyP99Micros() {
+        return micros(putLatency.snapshot().percentile(0.99));
+    }
+
+    @Override
+    public double getPutLatencyMaxMicros() {
+        return micros(putLatency.snapshot().max());
+    }
+
+    @Override
+    public long getGetCount() {
+        return getLatency.snapshot().count();
+    }
+
+    @Override
+    public double getGetLatencyMeanMicros() {
+        return micros(getLatency.snapshot().mean());
+    }
+
+    @Override
+    public double getGetLatencyP99Micros() {
+        return micros(getLatency.snapshot().percentile(0.99));
+    }
+
+    @Override
+    public double getGetLatencyMaxMicros() {
+        return micros(getLatency.snapshot().max());
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushLatency.snapshot().count();
+    }
+
+    @Override
+    public double getFlushLatencyMeanMicros() {
+        return micros(flushLatency.snapshot().mean());
+    }
+
+    @Override
+    public double getFlushLatencyMaxMicros() {
+        return micros(flushLatency.snapshot().max());
+    }
+
+    @Override
+    public double getSegmentsProbedMean() {
+        return segmentsProbed.snapshot().mean();
+    }
+
+    @Override
+    public long getSegmentsProbedP99() {
+        return segmentsProbed.snapshot().percentile(0.99);
+    }
+
+    @Override
+    public long getWalBytesWritten() {
+        return walBytesWritten.sum();
+    }
+
+    @Override
+    public long getSegmentBytesWritten() {
+        return segmentBytesWritten.sum();
+    }
+
+    @Override
+    public long getSegmentBytesRead() {
+        return segmentBytesRead.sum();
+    }
+
+    @Override
+    public long getIndexBytesRead() {
+        return indexBytesRead.sum();
+    }
+
+    @Override
+    public long getMemTableSizeBytes() {
+        return memTableSizeBytes.getAsLong();
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return segmentCount.getAsInt();
+    }
+
+    @Override
+    public long getDiskBytes() {
+        return diskBytes.getAsLong();
+    }
+
+    private static double micros(final double nanos) {
+        return nanos / 1_000;
+    }
+}
@@ -0,0 +1,47 @@
+package keydb.metrics;
+
+/**
+ * The metrics of a database as JMX attributes, latencies in microseconds.
+ */
+public interface KeyDBMetricsMXBean {
+
+    long getPutCount();
+
+    double getPutLatencyMeanMicros();
+
+    double getPutLatencyP99Micros();
+
+    double getPutLatencyMaxMicros();
+
+    long getGetCount();
+
+    double getGetLatencyMeanMicros();
+
+    double getGetLatencyP99Micros();
+
+    double getGetLatencyMaxMicros();
+
+    long getFlushCount();
+
+    double getFlushLatencyMeanMicros();
+
+    double getFlushLatencyMaxMicros();
+
+    double getSegmentsProbedMean();
+
+    long getSegmentsProbedP99();
+
+    long getWalBytesWritten();
+
+    long getSegmentBytesWritten();
+
+    long getSegmentBytesRead();
+
+    long getIndexBytesRead();
+
+    long getMemTableSizeBytes();
+
+    int getSegmentCount();
+
+    long getDiskBytes();
+}
@@ -0,0 +1,11 @@
+package keydb.metrics;
+
+/**
+ * Receives the metrics of a database at the interval it was started with, see
+ * {@link KeyDBMetrics#startReporting}. Called from a single background thread.
+ */
+@FunctionalInterface
+public interface MetricsReporter {
+
+    void report(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,31 @@
+package keydb.metrics;
+
+/**
+ * Point in time view of the metrics of a database. Latencies are in nanoseconds, byte counts
+ * are totals since the database was opened.
+ *
+ * @param putLatency          time taken by puts, deletes and write batches, including waiting for the log
+ * @param getLatency          time taken by gets
+ * @param flushLatency        time taken to write a frozen MemTable to a segment
+ * @param segmentsProbed      number of segments each get read, 0 for gets answered by the MemTables
+ * @param walBytesWritten     bytes written to the logs of the MemTables
+ * @param segmentBytesWritten bytes of segments written by flushes and compactions
+ * @param segmentBytesRead    bytes of segment blocks read by gets, scans and compactions
+ * @param indexBytesRead      bytes of sparse indexes read from segments
+ * @param memTableSizeBytes   size of the active and frozen MemTables
+ * @param segmentCount        number of live segments
+ * @param diskBytes           size of the data files of the live segments
+ */
+public record MetricsSnapshot(
+        Histogram.Snapshot putLatency,
+        Histogram.Snapshot getLatency,
+        Histogram.Snapshot flushLatency,
+        Histogram.Snapshot segmentsProbed,
+        long walBytesWritten,
+        long segmentBytesWritten,
+        long segmentBytesRead,
+        long indexBytesRead,
+        long memTableSizeBytes,
+        int segmentCount,
+        long diskBytes) {
+}
@@ -0,0 +1,131 @@
+package keydb.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The buffers of one end of a connection, reused for every frame it reads and writes. They are
+ * direct, so the channel doesn't copy them, and only grow when a frame doesn't fit.
+ */
+final class FrameBuffers {
+
+    private final int maxFrameBytes;
+    // Read mode, from position to limit are bytes read but not yet consumed
+    private ByteBuffer in;
+    // Write mode, from 0 to position are frames not yet written to the channel
+    private ByteBuffer out;
+    private int frameStart = -1;
+
+    FrameBuffers(final int bufferBytes, final int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.in = ByteBuffer.allocateDirect(bufferBytes).flip();
+        this.out = ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    /**
+     * The next frame read, without its length, or null if it hasn't been read in full. The
+     * frame is only valid until the next {@link #read}.
+     */
+    ByteBuffer nextFrame() throws IOException {
+        checkFrameLength();
+        final int length = Protocol.completeFrameLength(in);
+        if (length < 0) {
+            return null;
+        }
+        final ByteBuffer frame = in.slice(in.position() + Protocol.LENGTH_BYTES, length);
+        in.position(in.position() + Protocol.LENGTH_BYTES + length);
+        return frame;
+    }
+
+    /**
+     * Reads what the channel has, blocking until there is something.
+     *
+     * @return false if the channel was closed by the other end between two frames
+     * @throws EOFException if it was closed in the middle of a frame
+     */
+    boolean read(final ReadableByteChannel channel) throws IOException {
+        in.compact();
+        if (!in.hasRemaining()) {
+            in = grow(in.flip(), in.capacity() * 2);
+        }
+        final int read = channel.read(in);
+        in.flip();
+        if (read < 0) {
+            if (in.hasRemaining()) {
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts a frame of the given command or status.
+     */
+    void begin(final byte type) {
+        frameStart = out.position();
+        reserve(Protocol.LENGTH_BYTES + 1).putInt(0).put(type);
+    }
+
+    /**
+     * The output buffer with room for at least the given number of bytes.
+     */
+    ByteBuffer reserve(final int bytes) {
+        if (out.remaining() < bytes) {
+            out = grow(out.flip(), Math.max(out.capacity() * 2, out.limit() + bytes));
+        }
+        return out;
+    }
+
+    void end() {
+        final int length = out.position() - frameStart - Protocol.LENGTH_BYTES;
+        if (length > maxFrameBytes) {
+            abort();
+            throw new IllegalArgumentException("Frame of " + length + " bytes is larger than the limit of " + maxFrameBytes);
+        }
+        out.putInt(frameStart, length);
+        frameStart = -1;
+    }
+
+    /**
+     * Drops the frame begun last, if it hasn't been ended.
+     */
+    void abort() {
+        if (frameStart >= 0) {
+            out.position(frameStart);
+            frameStart = -1;
+        }
+    }
+
+    /**
+     * Writes the frames ended so far to the channel.
+     */
+    void flush(final WritableByteChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    int outputBytes() {
+        return out.position();
+    }
+
+    private void checkFrameLength() throws IOException {
+        if (in.remaining() >= Protocol.LENGTH_BYTES) {
+            final int length = in.getInt(in.position());
+            if (length < 1 || length > maxFrameBytes) {
+                throw new IOException("Frame of " + length + " bytes is not between 1 and " + maxFrameBytes);
+            }
+        }
+    }
+
+    // Copies the bytes from position to limit into a new buffer, left in write mode after them
+    private static ByteBuffer grow(final ByteBuffer buffer, final int capacity) {
+        return ByteBuffer.allocateDirect(capacity).put(buffer);
+    }
+}
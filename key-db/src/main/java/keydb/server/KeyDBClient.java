@@ -0,0 +1,246 @@
+package keydb.server;
+
+import io.vavr.control.Option;
+import keydb.Entry;
+import keydb.config.ServerConfig;
+import keydb.types.Codec;
+import keydb.types.VarInt;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A connection to a {@link KeyDBServer}, safe to share between threads. The async methods send
+ * their request right away without waiting for the responses to the earlier ones, so any number
+ * of requests can be in flight on the one connection. A reader thread completes their futures
+ * as the responses come back.
+ */
+public class KeyDBClient<T extends Comparable<T>> implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final Codec<T> codec;
+    // Only the senders use the output buffer, holding the send lock, and only the reader the input
+    private final FrameBuffers buffers;
+    private final Lock sendLock = new ReentrantLock();
+    // Requests waiting for their response, in the order they were sent
+    private final Queue<Pending<?>> pending = new ConcurrentLinkedQueue<>();
+    private final Thread reader;
+    private volatile IOException failure;
+
+    // The decoder reads the response from its status on
+    private record Pending<R>(CompletableFuture<R> future, Function<ByteBuffer, R> decoder) {
+
+        void complete(final ByteBuffer frame) {
+            try {
+                if (frame.get(frame.position()) == Protocol.ERROR) {
+                    frame.get();
+                    future.completeExceptionally(new IllegalStateException(Protocol.getMessage(frame)));
+                } else {
+                    future.complete(decoder.apply(frame));
+                }
+            } catch (final RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private KeyDBClient(final SocketChannel channel, final Codec<T> codec, final ServerConfig config) {
+        this.channel = channel;
+        this.codec = codec;
+        this.buffers = new FrameBuffers(config.getBufferBytes(), config.getMaxFrameBytes());
+        this.reader = new Thread(this::read, "keydb-client");
+        this.reader.setDaemon(true);
+    }
+
+    public static <P extends Comparable<P>> KeyDBClient<P> connect(final InetSocketAddress address, final Codec<P> codec)
+            throws IOException {
+        return connect(address, codec, ServerConfig.builder().build());
+    }
+
+    public static KeyDBClient<String> connect(final InetSocketAddress address) throws IOException {
+        return connect(address, Codec.find(String.class, StandardCharsets.UTF_8).get());
+    }
+
+    /**
+     * Connects to the server, with the buffer sizes and frame limit of {@code config}.
+     */
+    public static <P extends Comparable<P>> KeyDBClient<P> connect(final InetSocketAddress address, final Codec<P> codec,
+                                                                   final ServerConfig config) throws IOException {
+        final SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        final KeyDBClient<P> client = new KeyDBClient<>(channel, codec, config);
+        client.reader.start();
+        return client;
+    }
+
+    public Option<T> get(final T key) {
+        return join(getAsync(key));
+    }
+
+    public void put(final T key, final T value) {
+        join(putAsync(key, value));
+    }
+
+    /**
+     * At most {@code limit} entries with keys from {@code fromKey} inclusive to {@code toKey}
+     * exclusive in key order.
+     */
+    public List<Entry<T>> scan(final T fromKey, final T toKey, final int limit) {
+        return join(scanAsync(fromKey, toKey, limit));
+    }
+
+    /**
+     * The values of the keys that are present, in the order of the keys.
+     */
+    public Map<T, T> multiGet(final Collection<T> keys) {
+        return join(multiGetAsync(keys));
+    }
+
+    public CompletableFuture<Option<T>> getAsync(final T key) {
+        return send(Protocol.GET, out -> codec.put(key, out.reserve(codec.framedSize(key))), frame ->
+                frame.get() == Protocol.OK ? Option.some(codec.get(frame)) : Option.none());
+    }
+
+    public CompletableFuture<Void> putAsync(final T key, final T value) {
+        return send(Protocol.PUT, out -> {
+            codec.put(key, out.reserve(codec.framedSize(key)));
+            codec.put(value, out.reserve(codec.framedSize(value)));
+        }, frame -> null);
+    }
+
+    public CompletableFuture<List<Entry<T>>> scanAsync(final T fromKey, final T toKey, final int limit) {
+        return send(Protocol.SCAN, out -> {
+            codec.put(fromKey, out.reserve(codec.framedSize(fromKey)));
+            codec.put(toKey, out.reserve(codec.framedSize(toKey)));
+            VarInt.put(out.reserve(VarInt.size(limit)), limit);
+        }, frame -> {
+            frame.get();
+            final int count = VarInt.get(frame);
+            final List<Entry<T>> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry<>(codec.get(frame), codec.get(frame)));
+            }
+            return entries;
+        });
+    }
+
+    public CompletableFuture<Map<T, T>> multiGetAsync(final Collection<T> keys) {
+        final List<T> ordered = List.copyOf(keys);
+        return send(Protocol.MULTIGET, out -> {
+            VarInt.put(out.reserve(VarInt.size(ordered.size())), ordered.size());
+            for (final T key : ordered) {
+                codec.put(key, out.reserve(codec.framedSize(key)));
+            }
+        }, frame -> {
+            frame.get();
+            final int count = VarInt.get(frame);
+            final Map<T, T> values = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                if (frame.get() != 0) {
+                    values.put(ordered.get(i), codec.get(frame));
+                }
+            }
+            return values;
+        });
+    }
+
+    /**
+     * Closes the connection, requests still in flight fail.
+     */
+    @Override
+    public void close() throws Exception {
+        channel.close();
+        reader.join();
+    }
+
+    private <R> CompletableFuture<R> send(final byte command, final RequestWriter request,
+                                          final Function<ByteBuffer, R> decoder) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        sendLock.lock();
+        try {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                return future;
+            }
+            buffers.begin(command);
+            request.write(buffers);
+            buffers.end();
+            // Queued before the request is written, so the reader always finds it
+            pending.add(new Pending<>(future, decoder));
+            buffers.flush(channel);
+        } catch (final IOException e) {
+            fail(e);
+        } catch (final RuntimeException e) {
+            buffers.abort();
+            future.completeExceptionally(e);
+        } finally {
+            sendLock.unlock();
+        }
+        return future;
+    }
+
+    private interface RequestWriter {
+        void write(FrameBuffers out);
+    }
+
+    private void read() {
+        try {
+            do {
+                ByteBuffer frame;
+                while ((frame = buffers.nextFrame()) != null) {
+                    final Pending<?> next = pending.poll();
+                    if (next == null) {
+                        throw new IOException("Response without a request");
+                    }
+                    next.complete(frame);
+                }
+            } while (buffers.read(channel));
+            fail(new IOException("Connection closed by the server"));
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    // Holds the send lock, so no request is queued after the pending ones have been failed
+    private void fail(final IOException e) {
+        sendLock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+            Pending<?> next;
+            while ((next = pending.poll()) != null) {
+                next.future().completeExceptionally(failure);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private static <R> R join(final CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package keydb.server;
+
+import io.vavr.control.Option;
+import keydb.CloseableIterator;
+import keydb.Entry;
+import keydb.KeyDB;
+import keydb.config.ServerConfig;
+import keydb.types.Codec;
+import keydb.types.VarInt;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves a database over TCP with the binary {@link Protocol}. Every connection is served by a
+ * thread of the async executor of the database, a virtual thread when the JDK has them, which
+ * reads the requests, runs them in order and writes back the responses of all requests read at
+ * once in a single write.
+ */
+public class KeyDBServer<T extends Comparable<T>> implements AutoCloseable {
+
+    private final KeyDB<T> db;
+    private final Codec<T> codec;
+    private final ServerConfig config;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections;
+    private final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    private KeyDBServer(final KeyDB<T> db, final Codec<T> codec, final ServerConfig config) throws IOException {
+        this.db = db;
+        this.codec = codec;
+        this.config = config;
+        this.serverChannel = ServerSocketChannel.open()
+                .bind(new InetSocketAddress(config.getHost(), config.getPort()));
+        this.connections = db.getConfig().getAsyncExecutor().newExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "keydb-server-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::accept, "keydb-server");
+    }
+
+    /**
+     * Starts serving the database, which stays open when the server is closed.
+     */
+    public static <P extends Comparable<P>> KeyDBServer<P> start(final KeyDB<P> db, final Codec<P> codec,
+                                                                 final ServerConfig config) throws IOException {
+        final KeyDBServer<P> server = new KeyDBServer<>(db, codec, config);
+        server.acceptor.start();
+        return server;
+    }
+
+    /**
+     * Serves a database of strings, opening the one at {@code --path} or creating it there.
+     * For example {@code --path=/var/lib/keydb --port=7070}.
+     */
+    public static void main(final String[] args) throws IOException {
+        Path path = Path.of("keydb");
+        final ServerConfig.ServerConfigBuilder config = ServerConfig.builder();
+        for (final String arg : args) {
+            final String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--path=")) {
+                path = Path.of(value);
+            } else if (arg.startsWith("--host=")) {
+                config.host(value);
+            } else if (arg.startsWith("--port=")) {
+                config.port(Integer.parseInt(value));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        final KeyDB<String> db = Files.exists(path)
+                ? KeyDB.load(path, String.class)
+                : KeyDB.create(path, String.class);
+        final KeyDBServer<String> server = start(db, Codec.find(String.class, StandardCharsets.UTF_8).get(), config.build());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try (db) {
+                server.close();
+            } catch (final Exception e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        System.out.println("Serving " + path + " on " + server.getAddress());
+    }
+
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Server is closed", e);
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones, requests in flight may not be answered.
+     */
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        serverChannel.close();
+        for (final SocketChannel channel : open) {
+            channel.close();
+        }
+        connections.shutdownNow();
+        acceptor.join();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                final SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                open.add(channel);
+                connections.execute(() -> serve(channel));
+            } catch (final ClosedChannelException e) {
+                return;
+            } catch (final IOException e) {
+                // A connection that failed before it was accepted, keep accepting the others
+            }
+        }
+    }
+
+    private void serve(final SocketChannel channel) {
+        final FrameBuffers buffers = new FrameBuffers(config.getBufferBytes(), config.getMaxFrameBytes());
+        try (channel) {
+            do {
+                ByteBuffer frame;
+                while ((frame = buffers.nextFrame()) != null) {
+                    handle(frame, buffers);
+                    // Don't hold back responses once a buffer full of them is ready
+                    if (buffers.outputBytes() >= config.getBufferBytes()) {
+                        buffers.flush(channel);
+                    }
+                }
+                buffers.flush(channel);
+            } while (buffers.read(channel));
+        } catch (final IOException e) {
+            // The client went away or sent a frame that could not be read, either way the
+            // connection is done
+        } finally {
+            open.remove(channel);
+        }
+    }
+
+    private void handle(final ByteBuffer frame, final FrameBuffers out) {
+        try {
+            final byte command = frame.get();
+            switch (command) {
+                case Protocol.GET -> get(frame, out);
+                case Protocol.PUT -> put(frame, out);
+                case Protocol.SCAN -> scan(frame, out);
+                case Protocol.MULTIGET -> multiGet(frame, out);
+                default -> throw new IllegalArgumentException("Unknown command " + command);
+            }
+            out.end();
+        } catch (final RuntimeException e) {
+            // Malformed requests end up here too, as buffer underflows
+            out.abort();
+            final String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            out.begin(Protocol.ERROR);
+            Protocol.putMessage(out.reserve(Protocol.messageSize(message)), message);
+            out.end();
+        }
+    }
+
+    private void get(final ByteBuffer frame, final FrameBuffers out) {
+        final Option<T> value = db.get(codec.get(frame));
+        if (value.isDefined()) {
+            out.begin(Protocol.OK);
+            codec.put(value.get(), out.reserve(codec.framedSize(value.get())));
+        } else {
+            out.begin(Protocol.NOT_FOUND);
+        }
+    }
+
+    private void put(final ByteBuffer frame, final FrameBuffers out) {
+        final T key = codec.get(frame);
+        final T value = codec.get(frame);
+        db.put(key, value);
+        out.begin(Protocol.OK);
+    }
+
+    private void scan(final ByteBuffer frame, final FrameBuffers out) {
+        final T from = codec.get(frame);
+        final T to = codec.get(frame);
+        final int limit = VarInt.get(frame);
+        final List<Entry<T>> entries = new ArrayList<>();
+        try (final CloseableIterator<Entry<T>> iterator = db.scan(from, to)) {
+            while (entries.size() < limit && iterator.hasNext()) {
+                entries.add(iterator.next());
+            }
+        }
+        out.begin(Protocol.OK);
+        VarInt.put(out.reserve(VarInt.size(entries.size())), entries.size());
+        for (final Entry<T> entry : entries) {
+            codec.put(entry.key(), out.reserve(codec.framedSize(entry.key())));
+            codec.put(entry.value(), out.reserve(codec.framedSize(entry.value())));
+        }
+    }
+
+    private void multiGet(final ByteBuffer frame, final FrameBuffers out) {
+        final int count = VarInt.get(frame);
+        // Every key takes at least a byte, so a bogus count cannot size the list beyond the frame
+        final List<T> keys = new ArrayList<>(Math.min(count, frame.remaining()));
+        for (int i = 0; i < count; i++) {
+            keys.add(codec.get(frame));
+        }
+        final Map<T, T> found = db.getAll(keys);
+        out.begin(Protocol.OK);
+        VarInt.put(out.reserve(VarInt.size(count)), count);
+        for (final T key : keys) {
+            final T value = found.get(key);
+            if (value == null) {
+                out.reserve(1).put((byte) 0);
+            } else {
+                out.reserve(1).put((byte) 1);
+                codec.put(value, out.reserve(codec.framedSize(value)));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package keydb.server;
+
+import keydb.types.VarInt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol of {@link KeyDBServer}. Every request and response is a frame:
+ * <pre>
+ *   [int length][byte command or status][payload of length - 1 bytes]
+ * </pre>
+ * Keys and values in the payload are written by the {@link keydb.types.Codec} of the database,
+ * framed by a varint of their length. Counts are varints too.
+ * <pre>
+ *   GET      [key]                    -> OK [value] | NOT_FOUND
+ *   PUT      [key][value]             -> OK
+ *   SCAN     [from][to][limit]        -> OK [count]([key][value])*
+ *   MULTIGET [count][key]*            -> OK [count]([byte found][value if found])*
+ *   any                               -> ERROR [varint length][UTF-8 message]
+ * </pre>
+ * A client may send any number of requests without waiting, the responses come back in the
+ * order of the requests.
+ */
+final class Protocol {
+
+    static final byte GET = 1;
+    static final byte PUT = 2;
+    static final byte SCAN = 3;
+    static final byte MULTIGET = 4;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+
+    static final int LENGTH_BYTES = Integer.BYTES;
+
+    private Protocol() {
+    }
+
+    /**
+     * Length of the frame starting at the position of the buffer, or -1 if the buffer doesn't
+     * hold all of it yet.
+     */
+    static int completeFrameLength(final ByteBuffer buffer) {
+        if (buffer.remaining() < LENGTH_BYTES) {
+            return -1;
+        }
+        final int length = buffer.getInt(buffer.position());
+        return buffer.remaining() - LENGTH_BYTES >= length ? length : -1;
+    }
+
+    static void putMessage(final ByteBuffer buffer, final String message) {
+        final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        VarInt.put(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    static int messageSize(final String message) {
+        final int length = message.getBytes(StandardCharsets.UTF_8).length;
+        return VarInt.size(length) + length;
+    }
+
+    static String getMessage(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[VarInt.get(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
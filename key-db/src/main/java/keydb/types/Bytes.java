@@ -0,0 +1,34 @@
+package keydb.types;
+
+import java.util.Arrays;
+
+/**
+ * Raw bytes as a key or value, byte arrays themselves are not {@link Comparable}.
+ * Ordered by comparing the bytes as unsigned.
+ */
+public record Bytes(byte[] bytes) implements Comparable<Bytes> {
+
+    public static Bytes of(final byte... bytes) {
+        return new Bytes(bytes);
+    }
+
+    @Override
+    public int compareTo(final Bytes other) {
+        return Arrays.compareUnsigned(bytes, other.bytes);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof Bytes && Arrays.equals(bytes, ((Bytes) other).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "Bytes" + Arrays.toString(bytes);
+    }
+}
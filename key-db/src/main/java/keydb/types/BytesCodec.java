@@ -0,0 +1,28 @@
+package keydb.types;
+
+import java.nio.ByteBuffer;
+
+public record BytesCodec() implements Codec<Bytes> {
+
+    @Override
+    public int encodedSize(final Bytes value) {
+        return value.bytes().length;
+    }
+
+    @Override
+    public void encode(final Bytes value, final ByteBuffer buffer) {
+        buffer.put(value.bytes());
+    }
+
+    @Override
+    public Bytes decode(final ByteBuffer buffer, final int length) {
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new Bytes(bytes);
+    }
+
+    @Override
+    public boolean canHandle(final Class<?> clazz) {
+        return clazz.equals(Bytes.class);
+    }
+}
@@ -0,0 +1,111 @@
+package keydb.types;
+
+import io.vavr.control.Option;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ServiceLoader;
+import java.util.UUID;
+
+/**
+ * Encodes values into and decodes them from {@link ByteBuffer}s. Unlike {@link ValueIO} the
+ * encoded form can be compared without decoding it, {@link #compare} orders two encoded
+ * values the same way {@code compareTo} orders the values themselves.
+ * <p>
+ * Values are framed by a varint of their encoded length when written with {@link #put}.
+ */
+public interface Codec<T> {
+
+    /**
+     * Number of bytes {@link #encode} writes for the value.
+     */
+    int encodedSize(T value);
+
+    /**
+     * Writes the value at the position of the buffer, which must have {@link #encodedSize} bytes remaining.
+     */
+    void encode(T value, ByteBuffer buffer);
+
+    /**
+     * Reads a value encoded in the next {@code length} bytes of the buffer.
+     */
+    T decode(ByteBuffer buffer, int length);
+
+    /**
+     * Compares two encoded values at absolute offsets, leaving the positions of the buffers alone.
+     * By default the bytes are compared as unsigned, codecs for which that is not the order of
+     * their values override this.
+     */
+    default int compare(final ByteBuffer a, final int aOffset, final int aLength,
+                        final ByteBuffer b, final int bOffset, final int bLength) {
+        return compareBytes(a, aOffset, aLength, b, bOffset, bLength);
+    }
+
+    boolean canHandle(Class<?> clazz);
+
+    /**
+     * Throws an {@link IllegalArgumentException} if the value cannot be encoded without losing
+     * information, so that it would read back as or compare equal to another value.
+     */
+    default void checkEncodable(final T value) {
+    }
+
+    default int framedSize(final T value) {
+        final int size = encodedSize(value);
+        return VarInt.size(size) + size;
+    }
+
+    default void put(final T value, final ByteBuffer buffer) {
+        VarInt.put(buffer, encodedSize(value));
+        encode(value, buffer);
+    }
+
+    default T get(final ByteBuffer buffer) {
+        return decode(buffer, VarInt.get(buffer));
+    }
+
+    static int compareBytes(final ByteBuffer a, final int aOffset, final int aLength,
+                            final ByteBuffer b, final int bOffset, final int bLength) {
+        final int length = Math.min(aLength, bLength);
+        int i = 0;
+        // Eight bytes at a time, big endian longs compare like the bytes they are made of
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            final long x = a.getLong(aOffset + i);
+            final long y = b.getLong(bOffset + i);
+            if (x != y) {
+                return Long.compareUnsigned(x, y);
+            }
+        }
+        for (; i < length; i++) {
+            final int x = a.get(aOffset + i) & 0xFF;
+            final int y = b.get(bOffset + i) & 0xFF;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return Integer.compare(aLength, bLength);
+    }
+
+    /**
+     * The built in codec for the class, or one registered as a service.
+     */
+    @SuppressWarnings("unchecked")
+    static <P> Option<Codec<P>> find(final Class<P> clazz, final Charset charset) {
+        if (clazz.equals(String.class)) {
+            return Option.some((Codec<P>) new StringCodec(charset));
+        } else if (clazz.equals(Long.class)) {
+            return Option.some((Codec<P>) new LongCodec());
+        } else if (clazz.equals(Integer.class)) {
+            return Option.some((Codec<P>) new IntegerCodec());
+        } else if (clazz.equals(UUID.class)) {
+            return Option.some((Codec<P>) new UuidCodec());
+        } else if (clazz.equals(Bytes.class)) {
+            return Option.some((Codec<P>) new BytesCodec());
+        }
+        return Option.ofOptional(ServiceLoader.load(Codec.class).stream()
+                .map(ServiceLoader.Provider::get)
+                .filter(codec -> codec.canHandle(clazz))
+                .map(codec -> (Codec<P>) codec)
+                .findFirst());
+    }
+}
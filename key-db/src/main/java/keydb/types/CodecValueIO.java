@@ -0,0 +1,47 @@
+package keydb.types;
+
+import io.vavr.control.Option;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes values of a {@link Codec} to streams, framed by a varint of their length.
+ */
+public class CodecValueIO<T> implements ValueIO<T> {
+
+    private final Codec<T> codec;
+
+    public CodecValueIO(final Codec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public void write(final T value, final DataOutput output) throws IOException {
+        final int size = codec.encodedSize(value);
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        codec.encode(value, buffer);
+        VarInt.write(output, size);
+        output.write(buffer.array());
+    }
+
+    @Override
+    public T read(final DataInput input) throws IOException {
+        final byte[] bytes = new byte[VarInt.read(input)];
+        input.readFully(bytes);
+        return codec.decode(ByteBuffer.wrap(bytes), bytes.length);
+    }
+
+    @Override
+    public boolean canHandle(final Class<?> clazz) {
+        return codec.canHandle(clazz);
+    }
+
+    @Override
+    public Option<Codec<T>> getCodec(final Charset charset) {
+        return Option.some(codec);
+    }
+}
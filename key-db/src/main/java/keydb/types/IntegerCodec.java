@@ -0,0 +1,29 @@
+package keydb.types;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Big endian with the sign bit flipped, so negative numbers sort before positive ones.
+ */
+public record IntegerCodec() implements Codec<Integer> {
+
+    @Override
+    public int encodedSize(final Integer value) {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public void encode(final Integer value, final ByteBuffer buffer) {
+        buffer.putInt(value ^ Integer.MIN_VALUE);
+    }
+
+    @Override
+    public Integer decode(final ByteBuffer buffer, final int length) {
+        return buffer.getInt() ^ Integer.MIN_VALUE;
+    }
+
+    @Override
+    public boolean canHandle(final Class<?> clazz) {
+        return clazz.equals(Integer.class);
+    }
+}
@@ -0,0 +1,29 @@
+package keydb.types;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Big endian with the sign bit flipped, so negative numbers sort before positive ones.
+ */
+public record LongCodec() implements Codec<Long> {
+
+    @Override
+    public int encodedSize(final Long value) {
+        return Long.BYTES;
+    }
+
+    @Override
+    public void encode(final Long value, final ByteBuffer buffer) {
+        buffer.putLong(value ^ Long.MIN_VALUE);
+    }
+
+    @Override
+    public Long decode(final ByteBuffer buffer, final int length) {
+        return buffer.getLong() ^ Long.MIN_VALUE;
+    }
+
+    @Override
+    public boolean canHandle(final Class<?> clazz) {
+        return clazz.equals(Long.class);
+    }
+}
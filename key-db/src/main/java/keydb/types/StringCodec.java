@@ -0,0 +1,197 @@
+package keydb.types;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strings in the given charset. UTF-8 is encoded, sized and compared without allocating, unpaired
+ * surrogates are encoded as three bytes like any other char so that every string round trips.
+ * Other charsets reject the strings they cannot represent with an {@link IllegalArgumentException}.
+ */
+public record StringCodec(Charset charset) implements Codec<String> {
+
+    @Override
+    public int encodedSize(final String value) {
+        if (!isUtf8()) {
+            return encodeStrictly(value).remaining();
+        }
+        int size = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (isSurrogatePair(value, i)) {
+                size += 4;
+                i++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void encode(final String value, final ByteBuffer buffer) {
+        if (!isUtf8()) {
+            buffer.put(encodeStrictly(value));
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (isSurrogatePair(value, i)) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    @Override
+    public String decode(final ByteBuffer buffer, final int length) {
+        final int offset = buffer.position();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, charset);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, charset);
+        }
+        if (isUtf8() && value.indexOf('\uFFFD') >= 0) {
+            // The JDK decoder replaces the three byte form of unpaired surrogates
+            value = decodeUtf8(buffer, offset, length);
+        }
+        return value;
+    }
+
+    @Override
+    public int compare(final ByteBuffer a, final int aOffset, final int aLength,
+                       final ByteBuffer b, final int bOffset, final int bLength) {
+        if (isUtf8()) {
+            return compareUtf8(a, aOffset, aLength, b, bOffset, bLength);
+        }
+        // In these charsets the order of the bytes is the order of the chars
+        if (charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.UTF_16BE)) {
+            return Codec.compareBytes(a, aOffset, aLength, b, bOffset, bLength);
+        }
+        return decode(a.duplicate().position(aOffset), aLength).compareTo(decode(b.duplicate().position(bOffset), bLength));
+    }
+
+    @Override
+    public boolean canHandle(final Class<?> clazz) {
+        return clazz.equals(String.class);
+    }
+
+    @Override
+    public void checkEncodable(final String value) {
+        if (!isUtf8()) {
+            encodeStrictly(value);
+        }
+    }
+
+    private boolean isUtf8() {
+        return charset.equals(StandardCharsets.UTF_8);
+    }
+
+    // Unlike String.getBytes, which replaces the chars the charset cannot represent by '?'
+    private ByteBuffer encodeStrictly(final String value) {
+        try {
+            return charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .encode(CharBuffer.wrap(value));
+        } catch (final CharacterCodingException e) {
+            throw new IllegalArgumentException("String cannot be encoded in " + charset, e);
+        }
+    }
+
+    private static boolean isSurrogatePair(final String value, final int index) {
+        return Character.isHighSurrogate(value.charAt(index))
+                && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+
+    // UTF-8 bytes sort by code point, String.compareTo sorts by UTF-16 char. The two only disagree
+    // between supplementary characters and the chars from U+E000 up, so the first differing
+    // code points are compared as chars
+    private static int compareUtf8(final ByteBuffer a, final int aOffset, final int aLength,
+                                   final ByteBuffer b, final int bOffset, final int bLength) {
+        final int length = Math.min(aLength, bLength);
+        int i = 0;
+        // Skip the common prefix eight bytes at a time, the first differing byte of two big
+        // endian longs is given by the leading zeros of their xor
+        long diff = 0;
+        while (i + Long.BYTES <= length && (diff = a.getLong(aOffset + i) ^ b.getLong(bOffset + i)) == 0) {
+            i += Long.BYTES;
+        }
+        if (diff != 0) {
+            i += Long.numberOfLeadingZeros(diff) >>> 3;
+        }
+        while (i < length && a.get(aOffset + i) == b.get(bOffset + i)) {
+            i++;
+        }
+        if (i == length) {
+            return Integer.compare(aLength, bLength);
+        }
+        // Back up to the lead byte of the code point, which both share
+        while (i > 0 && (a.get(aOffset + i) & 0xC0) == 0x80) {
+            i--;
+        }
+        final int x = codePointAt(a, aOffset + i);
+        final int y = codePointAt(b, bOffset + i);
+        final char xFirst = Character.isBmpCodePoint(x) ? (char) x : Character.highSurrogate(x);
+        final char yFirst = Character.isBmpCodePoint(y) ? (char) y : Character.highSurrogate(y);
+        if (xFirst != yFirst) {
+            return xFirst - yFirst;
+        }
+        if (Character.isBmpCodePoint(x) || Character.isBmpCodePoint(y)) {
+            // An unpaired high surrogate against a pair starting with it, the next chars decide
+            return decodeUtf8(a, aOffset + i, aLength - i).compareTo(decodeUtf8(b, bOffset + i, bLength - i));
+        }
+        return Character.lowSurrogate(x) - Character.lowSurrogate(y);
+    }
+
+    private static String decodeUtf8(final ByteBuffer buffer, final int offset, final int length) {
+        final StringBuilder value = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            final int lead = buffer.get(offset + i) & 0xFF;
+            value.appendCodePoint(codePointAt(buffer, offset + i));
+            i += lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+        }
+        return value.toString();
+    }
+
+    private static int codePointAt(final ByteBuffer buffer, final int offset) {
+        final int lead = buffer.get(offset) & 0xFF;
+        if (lead < 0x80) {
+            return lead;
+        } else if (lead < 0xE0) {
+            return (lead & 0x1F) << 6 | buffer.get(offset + 1) & 0x3F;
+        } else if (lead < 0xF0) {
+            return (lead & 0x0F) << 12 | (buffer.get(offset + 1) & 0x3F) << 6 | buffer.get(offset + 2) & 0x3F;
+        }
+        return (lead & 0x07) << 18 | (buffer.get(offset + 1) & 0x3F) << 12
+                | (buffer.get(offset + 2) & 0x3F) << 6 | buffer.get(offset + 3) & 0x3F;
+    }
+}
@@ -1,8 +1,11 @@
 package keydb.types;
 
+import io.vavr.control.Option;
+
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 public class StringIO implements ValueIO<String> {
 
@@ -20,4 +23,9 @@ public class StringIO implements ValueIO<String> {
     public boolean canHandle(final Class<?> clazz) {
         return clazz.equals(String.class);
     }
+
+    @Override
+    public Option<Codec<String>> getCodec(final Charset charset) {
+        return Option.some(new StringCodec(charset));
+    }
 }
@@ -0,0 +1,31 @@
+package keydb.types;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Both halves big endian with their sign bits flipped, {@link UUID#compareTo} compares them as signed longs.
+ */
+public record UuidCodec() implements Codec<UUID> {
+
+    @Override
+    public int encodedSize(final UUID value) {
+        return 2 * Long.BYTES;
+    }
+
+    @Override
+    public void encode(final UUID value, final ByteBuffer buffer) {
+        buffer.putLong(value.getMostSignificantBits() ^ Long.MIN_VALUE);
+        buffer.putLong(value.getLeastSignificantBits() ^ Long.MIN_VALUE);
+    }
+
+    @Override
+    public UUID decode(final ByteBuffer buffer, final int length) {
+        return new UUID(buffer.getLong() ^ Long.MIN_VALUE, buffer.getLong() ^ Long.MIN_VALUE);
+    }
+
+    @Override
+    public boolean canHandle(final Class<?> clazz) {
+        return clazz.equals(UUID.class);
+    }
+}
@@ -1,10 +1,14 @@
 package keydb.types;
 
+import io.vavr.control.Option;
+
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.ServiceLoader;
 
@@ -16,6 +20,16 @@ public interface ValueIO<T> {
 
     boolean canHandle(Class<?> stringClass);
 
+    /**
+     * A {@link Codec} for the same type, segments store their entries with it when there is one.
+     */
+    default Option<Codec<T>> getCodec(final Charset charset) {
+        return Option.none();
+    }
+
+    /**
+     * Finds a ValueIO registered as a service, or one writing the values of a {@link Codec}.
+     */
     @SuppressWarnings("unchecked")
     static <P> ValueIO<P> getProvider(final Class<P> clazz) {
         final ServiceLoader<ValueIO> loaded = ServiceLoader.load(ValueIO.class);
@@ -24,6 +38,8 @@ public interface ValueIO<T> {
                 .filter(valueIOProvider -> valueIOProvider.get().canHandle(clazz))
                 .map(ServiceLoader.Provider::get).findFirst();
 
-        return first.orElseThrow(() -> new RuntimeException("No ValueIO implementation found"));
+        return first.map(valueIO -> (ValueIO<P>) valueIO)
+                .or(() -> Codec.find(clazz, StandardCharsets.UTF_8).map(CodecValueIO::new).toJavaOptional())
+                .orElseThrow(() -> new RuntimeException("No ValueIO implementation found"));
     }
 }
@@ -0,0 +1,134 @@
+package keydb;
+
+import io.vavr.collection.List;
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArenaMemTableDataTest extends TestBase {
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+
+    // Writes strings like StringIO but has no codec, so keys are compared by decoding them
+    private final ValueIO<String> valueIOWithoutCodec = new ValueIO<>() {
+        @Override
+        public void write(final String value, final DataOutput output) throws IOException {
+            output.writeUTF(value);
+        }
+
+        @Override
+        public String read(final DataInput input) throws IOException {
+            return input.readUTF();
+        }
+
+        @Override
+        public boolean canHandle(final Class<?> clazz) {
+            return clazz.equals(String.class);
+        }
+    };
+
+    @Test
+    void returns_the_latest_entry_of_each_key() {
+        final ArenaMemTableData<String> sut = new ArenaMemTableData<>(valueIO, DBConfig.builder().build());
+
+        sut.putAll(java.util.List.of(new Entry<>("hey", "bob"), new Entry<>("hello", "alice")), 1, 0);
+        sut.putAll(java.util.List.of(new Entry<>("hey", "carol"), Entry.tombstone("hello")), 3, 0);
+
+        assertThat(sut.get("hey")).isEqualTo(Option.of(new Entry<>("hey", "carol")));
+        assertThat(sut.get("hello")).isEqualTo(Option.of(Entry.tombstone("hello")));
+        assertThat(sut.get("hi")).isEqualTo(Option.none());
+    }
+
+    @Test
+    void iterates_a_range_of_keys_in_order() {
+        for (final ValueIO<String> io : List.of(valueIO, valueIOWithoutCodec)) {
+            final ArenaMemTableData<String> sut = new ArenaMemTableData<>(io, DBConfig.builder().build());
+            sut.putAll(java.util.List.of(new Entry<>("d", "4"), new Entry<>("b", "2"), new Entry<>("a", "1"),
+                    new Entry<>("c", "3"), new Entry<>("b", "5")), 1, 0);
+
+            assertThat(List.ofAll(() -> sut.iterator("b", "d")).map(Entry::value)).containsExactly("5", "3");
+            assertThat(sut.get("b")).isEqualTo(Option.of(new Entry<>("b", "5")));
+        }
+    }
+
+    @Test
+    void size_is_the_number_of_bytes_taken_up_in_the_arena() {
+        final ArenaMemTableData<String> sut = new ArenaMemTableData<>(valueIO, DBConfig.builder().build());
+
+        sut.putAll(java.util.List.of(new Entry<>("hey", "bob"), new Entry<>("hey", "alice")), 1, 1000);
+
+        // Header, then each of key and value framed by a varint of its length, with the kind in between
+        assertThat(sut.getSize()).isEqualTo((ArenaMemTableData.HEADER_BYTES + 4 + 1 + 4)
+                + (ArenaMemTableData.HEADER_BYTES + 4 + 1 + 6));
+    }
+
+    @Test
+    void entries_spill_over_into_new_chunks() {
+        final ArenaMemTableData<String> sut = new ArenaMemTableData<>(valueIO, DBConfig.builder().build());
+        final String value = "v".repeat(ArenaMemTableData.CHUNK_BYTES / 3);
+
+        for (int i = 0; i < 10; i++) {
+            sut.putAll(java.util.List.of(new Entry<>("key" + i, value + i)), i + 1, 0);
+        }
+        sut.putAll(java.util.List.of(new Entry<>("large", value.repeat(4))), 11, 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(sut.get("key" + i).map(Entry::value)).isEqualTo(Option.of(value + i));
+        }
+        assertThat(sut.get("large").map(Entry::value)).isEqualTo(Option.of(value.repeat(4)));
+    }
+
+    @Test
+    void reads_as_of_a_sequence_see_the_versions_written_up_to_it() {
+        for (final MemTableData<String> sut : List.<MemTableData<String>>of(
+                new ArenaMemTableData<>(valueIO, DBConfig.builder().build()), new HeapMemTableData<>())) {
+            sut.putAll(java.util.List.of(new Entry<>("a", "1"), new Entry<>("b", "2")), 1, 0);
+            sut.putAll(java.util.List.of(new Entry<>("a", "3"), Entry.tombstone("b"), new Entry<>("c", "4")), 3, 0);
+
+            assertThat(sut.get("a", 0)).isEqualTo(Option.none());
+            assertThat(sut.get("a", 2)).isEqualTo(Option.of(new Entry<>("a", "1")));
+            assertThat(sut.get("a", 3)).isEqualTo(Option.of(new Entry<>("a", "3")));
+            assertThat(sut.get("b", 3)).isEqualTo(Option.of(new Entry<>("b", "2")));
+            assertThat(sut.get("b", 4)).isEqualTo(Option.of(Entry.tombstone("b")));
+            assertThat(List.ofAll(() -> sut.iterator("a", "z", 2))).containsExactly(
+                    new Entry<>("a", "1"), new Entry<>("b", "2"));
+            assertThat(List.ofAll(() -> sut.iterator("a", "z")).map(Entry::value)).containsExactly("3", null, "4");
+        }
+    }
+
+    @Test
+    void writes_the_same_segment_as_entries_kept_on_the_heap() throws Exception {
+        final DBConfig config = DBConfig.builder().bytesPerIndex(64).build();
+        final ArenaMemTableData<String> arena = new ArenaMemTableData<>(valueIO, config);
+        final HeapMemTableData<String> heap = new HeapMemTableData<>();
+        final java.util.List<Entry<String>> entries = List.ofAll(keyValues.entrySet())
+                .map(entry -> new Entry<>(entry.getKey(), entry.getValue()))
+                .append(Entry.tombstone("deleted"))
+                .toJavaList();
+        arena.putAll(entries, 1, 0);
+        heap.putAll(entries, 1, 0);
+        Files.createDirectories(getPath("/home/user/arena"));
+        Files.createDirectories(getPath("/home/user/heap"));
+
+        final Segment<String> sut = arena.writeSegment(getPath("/home/user/arena"), 1, valueIO, config);
+        heap.writeSegment(getPath("/home/user/heap"), 2, valueIO, config);
+
+        assertThat(Files.readAllBytes(dataPath("/home/user/arena"))).isEqualTo(Files.readAllBytes(dataPath("/home/user/heap")));
+        forKeyValues((key, value) -> assertThat(sut.get(key, valueIO).get()).isEqualTo(Option.of(value)));
+        assertThat(sut.getEntry("deleted", valueIO, BlockCache.disabled()).get())
+                .isEqualTo(Option.of(Entry.tombstone("deleted")));
+    }
+
+    private Path dataPath(final String segmentDir) {
+        return Segment.getDataPath(getPath(segmentDir));
+    }
+}
@@ -0,0 +1,99 @@
+package keydb;
+
+import io.vavr.control.Option;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockCacheTest {
+
+    private final BlockCache.Block<String> block = new BlockCache.Block<>(
+            List.of("a", "c"), List.of(new Entry<>("a", "1"), new Entry<>("c", "3")));
+
+    @Test
+    void counts_hits_and_misses() {
+        final BlockCache<String> sut = BlockCache.create(16_000);
+
+        sut.get(1, 0);
+        sut.put(1, 0, block, 100);
+        final Option<BlockCache.Block<String>> cached = sut.get(1, 0);
+
+        assertThat(cached).isEqualTo(Option.of(block));
+        assertThat(sut.getHits()).isEqualTo(1);
+        assertThat(sut.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void evicts_least_recently_used_blocks_beyond_capacity() {
+        // One shard holds 100 bytes
+        final BlockCache<String> sut = BlockCache.create(1_600);
+        final List<Long> offsets = offsetsInSameShard(3);
+        sut.put(1, offsets.get(0), block, 50);
+        sut.put(1, offsets.get(1), block, 50);
+        sut.get(1, offsets.get(0));
+
+        sut.put(1, offsets.get(2), block, 50);
+
+        assertThat(sut.get(1, offsets.get(0)).isDefined()).isTrue();
+        assertThat(sut.get(1, offsets.get(1)).isDefined()).isFalse();
+        assertThat(sut.get(1, offsets.get(2)).isDefined()).isTrue();
+    }
+
+    @Test
+    void blocks_at_evenly_spaced_offsets_spread_over_the_shards() {
+        // Each shard holds 16 of the blocks, had they all ended up in one shard most would be evicted
+        final BlockCache<String> sut = BlockCache.create(64 * 100 * 4);
+        for (int i = 0; i < 64; i++) {
+            sut.put(1, i * 4096L, block, 100);
+        }
+
+        assertThat(sut.getSizeBytes()).isEqualTo(64 * 100);
+    }
+
+    @Test
+    void invalidating_a_segment_drops_all_its_blocks() {
+        final BlockCache<String> sut = BlockCache.create(16_000);
+        sut.put(1, 0, block, 100);
+        sut.put(1, 4096, block, 100);
+        sut.put(2, 0, block, 100);
+
+        sut.invalidate(1);
+
+        assertThat(sut.get(1, 0).isDefined()).isFalse();
+        assertThat(sut.get(1, 4096).isDefined()).isFalse();
+        assertThat(sut.get(2, 0).isDefined()).isTrue();
+        assertThat(sut.getSizeBytes()).isEqualTo(100);
+    }
+
+    @Test
+    void disabled_cache_holds_nothing() {
+        final BlockCache<String> sut = BlockCache.create(0);
+
+        assertThat(sut.isEnabled()).isFalse();
+    }
+
+    @Test
+    void block_finds_keys_by_binary_search() {
+        assertThat(block.get("c")).isEqualTo(Option.of(new Entry<>("c", "3")));
+        assertThat(block.get("b")).isEqualTo(Option.none());
+    }
+
+    // Blocks in different shards never evict each other, find offsets that share one
+    private static List<Long> offsetsInSameShard(final int count) {
+        final BlockCache.Block<String> block = new BlockCache.Block<>(List.<String>of(), List.<Entry<String>>of());
+        final List<Long> offsets = new ArrayList<>();
+        offsets.add(0L);
+        for (long offset = 1; offsets.size() < count; offset++) {
+            final BlockCache<String> cache = BlockCache.create(1_600);
+            cache.put(1, 0, block, 100);
+            cache.put(1, offset, block, 100);
+            if (cache.get(1, 0).isEmpty()) {
+                offsets.add(offset);
+            }
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,61 @@
+package keydb;
+
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest extends TestBase {
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+
+    @Test
+    void contains_all_added_keys() {
+        final BloomFilter<String> sut = buildFilter(0.01);
+
+        forKeyValues((key, value) -> assertThat(sut.mightContain(key)).isTrue());
+    }
+
+    @Test
+    void rejects_most_missing_keys() {
+        final BloomFilter<String> sut = buildFilter(0.01);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (sut.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void filter_with_false_positive_rate_of_one_contains_everything() {
+        final BloomFilter<String> sut = buildFilter(1.0);
+
+        assertThat(sut.getNumBits()).isZero();
+        assertThat(sut.mightContain("missing")).isTrue();
+    }
+
+    @Test
+    void can_write_and_read_back_filter_correctly() {
+        final BloomFilter<String> sut = buildFilter(0.01);
+        final Path writePath = getPath("/home/user/bloom");
+
+        final Path writtenPath = sut.write(writePath).get();
+        final BloomFilter<String> newFilter = BloomFilter.from(writePath, valueIO).get();
+
+        assertThat(writtenPath).isEqualTo(writePath);
+        assertThat(newFilter).isEqualTo(sut);
+    }
+
+    private BloomFilter<String> buildFilter(final double falsePositiveRate) {
+        final BloomFilter<String> filter = BloomFilter.create(keyValues.size(), falsePositiveRate, valueIO);
+        forKeyValues((key, value) -> filter.add(key));
+        return filter;
+    }
+}
@@ -0,0 +1,145 @@
+package keydb;
+
+import keydb.types.Bytes;
+import keydb.types.Codec;
+import keydb.types.CodecValueIO;
+import keydb.types.StringCodec;
+import keydb.types.ValueIO;
+import keydb.types.VarInt;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CodecTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void built_in_codecs_round_trip_and_compare_like_their_values() {
+        assertRoundTripAndOrder(Codec.find(String.class, StandardCharsets.UTF_8).get(), randomStrings());
+        assertRoundTripAndOrder(Codec.find(Long.class, StandardCharsets.UTF_8).get(),
+                List.of(Long.MIN_VALUE, -42L, -1L, 0L, 1L, 42L, Long.MAX_VALUE));
+        assertRoundTripAndOrder(Codec.find(Integer.class, StandardCharsets.UTF_8).get(),
+                List.of(Integer.MIN_VALUE, -42, -1, 0, 1, 42, Integer.MAX_VALUE));
+        assertRoundTripAndOrder(Codec.find(UUID.class, StandardCharsets.UTF_8).get(), randomUuids());
+        assertRoundTripAndOrder(Codec.find(Bytes.class, StandardCharsets.UTF_8).get(),
+                List.of(Bytes.of(), Bytes.of((byte) 0), Bytes.of((byte) -1), Bytes.of((byte) 1, (byte) 2), Bytes.of((byte) 127)));
+    }
+
+    @Test
+    void utf8_strings_compare_in_utf16_order() {
+        // U+FF21 sorts after the surrogate pair of U+1F600 in UTF-16 but before it in UTF-8
+        final StringCodec sut = new StringCodec(StandardCharsets.UTF_8);
+
+        assertRoundTripAndOrder(sut, List.of("a\uFF21", "a\uD83D\uDE00", "a\uD83D\uDE00b", "b"));
+    }
+
+    @Test
+    void strings_are_encoded_in_the_given_charset() {
+        for (final var charset : List.of(StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16, StandardCharsets.UTF_16BE)) {
+            final StringCodec sut = new StringCodec(charset);
+
+            assertThat(sut.encodedSize("h\u00E9llo")).isEqualTo("h\u00E9llo".getBytes(charset).length);
+            assertRoundTripAndOrder(sut, List.of("", "a", "ab", "b", "\u00E9", "z"));
+        }
+    }
+
+    @Test
+    void strings_the_charset_cannot_represent_are_rejected() {
+        final StringCodec sut = new StringCodec(StandardCharsets.ISO_8859_1);
+
+        assertThatThrownBy(() -> sut.encodedSize("\u20AC")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> sut.encode("a\u20AC", ByteBuffer.allocate(8))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> sut.checkEncodable("\u20AC")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StringCodec(StandardCharsets.UTF_16BE).checkEncodable("a\uD800"))
+                .isInstanceOf(IllegalArgumentException.class);
+        new StringCodec(StandardCharsets.UTF_8).checkEncodable("a\uD800");
+    }
+
+    @Test
+    void unpaired_surrogates_round_trip_and_compare_in_utf16_order() {
+        final StringCodec sut = new StringCodec(StandardCharsets.UTF_8);
+        final List<String> values = List.of("a?", "a\uD800", "a\uDC00", "a\uFFFD", "\uD800", "\uD800\uDBFF",
+                "\uD800\uDC00", "\uD800\uDC00\uDC00", "\uE000", "\uD83D\uDE00b\uDE00");
+
+        assertRoundTripAndOrder(sut, values);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(sut.encodedSize("a\uD800b"));
+        sut.encode("a\uD800b", buffer);
+        assertThat(sut.decode(buffer.flip(), buffer.limit())).isEqualTo("a\uD800b");
+    }
+
+    @Test
+    void varints_round_trip() {
+        for (final int value : new int[]{0, 1, 127, 128, 16_383, 16_384, 2_097_151, 2_097_152, Integer.MAX_VALUE}) {
+            final ByteBuffer buffer = ByteBuffer.allocate(5);
+            VarInt.put(buffer, value);
+
+            assertThat(buffer.position()).isEqualTo(VarInt.size(value));
+            assertThat(VarInt.get(buffer.flip())).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void types_without_a_value_io_are_written_by_their_codec() {
+        assertThat(ValueIO.getProvider(Long.class)).isInstanceOf(CodecValueIO.class);
+        assertThat(ValueIO.getProvider(String.class).getCodec(StandardCharsets.UTF_8).isDefined()).isTrue();
+    }
+
+    private static <T extends Comparable<T>> void assertRoundTripAndOrder(final Codec<T> codec, final List<T> values) {
+        final List<ByteBuffer> encoded = new ArrayList<>();
+        for (final T value : values) {
+            final ByteBuffer buffer = ByteBuffer.allocate(codec.framedSize(value) + 3);
+            buffer.position(3);
+            codec.put(value, buffer);
+            assertThat(buffer.hasRemaining()).isFalse();
+            assertThat(codec.get(buffer.position(3))).isEqualTo(value);
+            encoded.add(buffer);
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            for (int j = 0; j < values.size(); j++) {
+                final ByteBuffer a = encoded.get(i);
+                final ByteBuffer b = encoded.get(j);
+                final int aLength = VarInt.get(a.position(3));
+                final int bLength = VarInt.get(b.position(3));
+
+                assertThat(Integer.signum(codec.compare(a, a.position(), aLength, b, b.position(), bLength)))
+                        .as("%s vs %s", values.get(i), values.get(j))
+                        .isEqualTo(Integer.signum(values.get(i).compareTo(values.get(j))));
+            }
+        }
+    }
+
+    private List<String> randomStrings() {
+        final List<String> strings = new ArrayList<>(List.of("", "a", "ab", "b", "\u00E9", "\u20AC", "\uFF21", "\uD83D\uDE00"));
+        for (int i = 0; i < 50; i++) {
+            final StringBuilder value = new StringBuilder();
+            for (int c = random.nextInt(12); c > 0; c--) {
+                value.appendCodePoint(switch (random.nextInt(4)) {
+                    case 0 -> 'a' + random.nextInt(26);
+                    case 1 -> 0x80 + random.nextInt(0x780);
+                    case 2 -> 0xE000 + random.nextInt(0x1FFF);
+                    default -> 0x10000 + random.nextInt(0x1000);
+                });
+            }
+            strings.add(value.toString());
+        }
+        return strings;
+    }
+
+    private List<UUID> randomUuids() {
+        final List<UUID> uuids = new ArrayList<>(List.of(new UUID(-1, -1), new UUID(0, 0), new UUID(1, -1)));
+        for (int i = 0; i < 20; i++) {
+            uuids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,185 @@
+package keydb;
+
+import io.vavr.control.Option;
+import io.vavr.control.Try;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CompactionTest extends TestBase {
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+    private final Path segmentDir = getPath("/home/user/segments");
+    private final DBConfig config = DBConfig.builder().build();
+
+    @Test
+    void newest_value_wins_in_merged_segment() throws Exception {
+        final List<Segment<String>> inputs = writeSegments();
+        final CompactionTask<String> task = new CompactionTask<>(inputs, 1, Long.MAX_VALUE);
+
+        final List<Segment<String>> outputs = new Compaction<>(
+                task, List.of(), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run().get();
+
+        assertThat(outputs).hasSize(1);
+        final Segment<String> merged = outputs.get(0);
+        assertThat(merged.getId()).isEqualTo(3);
+        assertThat(merged.getRootPath()).isEqualTo(segmentDir.resolve("3"));
+        assertThat(merged.get("a", valueIO).get()).isEqualTo(Option.of("new"));
+        assertThat(merged.get("b", valueIO).get()).isEqualTo(Option.of("old"));
+        assertThat(merged.get("c", valueIO).get()).isEqualTo(Option.of("new"));
+    }
+
+    @Test
+    void output_is_split_into_segments_with_disjoint_key_ranges() throws Exception {
+        final List<Segment<String>> inputs = writeSegments();
+        final CompactionTask<String> task = new CompactionTask<>(inputs, 1, 1);
+
+        final List<Segment<String>> outputs = new Compaction<>(
+                task, List.of(), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run().get();
+
+        assertThat(outputs).extracting(Segment::getMinKey).containsExactly("a", "b", "c");
+        assertThat(outputs).extracting(Segment::getMaxKey).containsExactly("a", "b", "c");
+        assertThat(outputs).extracting(Segment::getId).containsExactly(3, 4, 5);
+    }
+
+    @Test
+    void inputs_are_left_in_place() throws Exception {
+        final List<Segment<String>> inputs = writeSegments();
+        final CompactionTask<String> task = new CompactionTask<>(inputs, 1, Long.MAX_VALUE);
+
+        new Compaction<>(task, List.of(), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run().get();
+
+        assertThat(Files.isDirectory(segmentDir.resolve("1"))).isTrue();
+        assertThat(Files.isDirectory(segmentDir.resolve("2"))).isTrue();
+    }
+
+    @Test
+    void deleted_and_expired_entries_are_dropped_with_the_values_they_hide() throws Exception {
+        final List<Segment<String>> inputs = writeSegmentsWithDeletes();
+        final CompactionTask<String> task = new CompactionTask<>(inputs, 1, Long.MAX_VALUE);
+
+        final List<Segment<String>> outputs = new Compaction<>(
+                task, List.of(), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run().get();
+
+        assertThat(outputs).hasSize(1);
+        try (final CloseableIterator<Entry<String>> entries = outputs.get(0).iterator(valueIO).get()) {
+            assertThat(entries).containsExactly(new Entry<>("c", "new"));
+        }
+    }
+
+    @Test
+    void deleted_and_expired_entries_are_kept_as_tombstones_while_older_segments_hold_the_key() throws Exception {
+        final List<Segment<String>> inputs = writeSegmentsWithDeletes();
+        final Segment<String> older = writeSegment(0, "a", "oldest");
+        final CompactionTask<String> task = new CompactionTask<>(inputs, 1, Long.MAX_VALUE);
+
+        final List<Segment<String>> outputs = new Compaction<>(
+                task, List.of(older), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run().get();
+
+        try (final CloseableIterator<Entry<String>> entries = outputs.get(0).iterator(valueIO).get()) {
+            assertThat(entries).containsExactly(Entry.tombstone("a"), new Entry<>("c", "new"));
+        }
+    }
+
+    @Test
+    void no_output_is_written_when_every_entry_is_dropped() throws Exception {
+        Files.createDirectories(segmentDir);
+        final MemTable<String> memTable = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        memTable.put(Entry.tombstone("a"));
+        final Segment<String> segment = memTable.writeSegment(segmentDir, 1, config).get();
+        final CompactionTask<String> task = new CompactionTask<>(List.of(segment), 0, Long.MAX_VALUE);
+
+        final List<Segment<String>> outputs = new Compaction<>(
+                task, List.of(), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run().get();
+
+        assertThat(outputs).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void inputs_opened_before_one_fails_to_open_are_closed() {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Segment<String> opened = mock(Segment.class);
+        when(opened.iterator(valueIO)).thenReturn(Try.success(new CloseableIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return false;
+            }
+
+            @Override
+            public Entry<String> next() {
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        }));
+        final Segment<String> failing = mock(Segment.class);
+        when(failing.iterator(valueIO)).thenReturn(Try.failure(new IOException("Data file is gone")));
+        final CompactionTask<String> task = new CompactionTask<>(List.of(opened, failing), 1, Long.MAX_VALUE);
+
+        final Try<List<Segment<String>>> outputs = new Compaction<>(
+                task, List.of(), segmentDir, new AtomicInteger(3)::getAndIncrement, valueIO, config).run();
+
+        assertThat(outputs.isFailure()).isTrue();
+        assertThat(closed).isTrue();
+    }
+
+    // Returns [2, 1], newest first. Deletes "b", "a" has expired
+    private List<Segment<String>> writeSegmentsWithDeletes() throws Exception {
+        Files.createDirectories(segmentDir);
+        final MemTable<String> older = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        older.put("a", "old");
+        older.put("b", "old");
+        final Segment<String> one = older.writeSegment(segmentDir, 1, config).get();
+        older.deleteLog().get();
+
+        final MemTable<String> newer = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        newer.put(new Entry<>("a", "new", 0));
+        newer.put(Entry.tombstone("b"));
+        newer.put("c", "new");
+        final Segment<String> two = newer.writeSegment(segmentDir, 2, config).get();
+        newer.deleteLog().get();
+
+        return List.of(two, one);
+    }
+
+    private Segment<String> writeSegment(final int id, final String key, final String value) throws Exception {
+        final MemTable<String> memTable = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        memTable.put(key, value);
+        final Segment<String> segment = memTable.writeSegment(segmentDir, id, config).get();
+        memTable.deleteLog().get();
+        return segment;
+    }
+
+    // Returns [2, 1], newest first
+    private List<Segment<String>> writeSegments() throws Exception {
+        Files.createDirectories(segmentDir);
+        final MemTable<String> older = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        older.put("a", "old");
+        older.put("b", "old");
+        final Segment<String> one = older.writeSegment(segmentDir, 1, config).get();
+        older.deleteLog().get();
+
+        final MemTable<String> newer = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        newer.put("a", "new");
+        newer.put("c", "new");
+        final Segment<String> two = newer.writeSegment(segmentDir, 2, config).get();
+
+        return List.of(two, one);
+    }
+}
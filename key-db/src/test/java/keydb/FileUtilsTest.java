@@ -0,0 +1,30 @@
+package keydb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileUtilsTest extends TestBase {
+
+    @Test
+    void force_directory_forces_a_directory_of_the_default_file_system(@TempDir final Path dir) throws Exception {
+        Files.writeString(dir.resolve("file"), "content");
+
+        FileUtils.forceDirectory(dir);
+
+        assertThat(Files.readString(dir.resolve("file"))).isEqualTo("content");
+    }
+
+    @Test
+    void force_directory_skips_file_systems_that_cannot_open_directories() throws Exception {
+        final Path dir = Files.createDirectory(getPath("dir"));
+
+        FileUtils.forceDirectory(dir);
+
+        assertThat(Files.isDirectory(dir)).isTrue();
+    }
+}
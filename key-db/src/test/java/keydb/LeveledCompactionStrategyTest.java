@@ -0,0 +1,77 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeveledCompactionStrategyTest extends TestBase {
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+    private final DBConfig config = DBConfig.builder()
+            .level0CompactionTrigger(2)
+            .level1MaxBytes(20)
+            .levelSizeRatio(10)
+            .build();
+    private final LeveledCompactionStrategy<String> sut = new LeveledCompactionStrategy<>(config);
+
+    @Test
+    void nothing_is_picked_below_thresholds() {
+        final Version<String> version = Version.of(List.of(List.of(segment(1, "a", "b"))));
+
+        assertThat(sut.pick(version)).isEqualTo(Option.none());
+    }
+
+    @Test
+    void full_level_zero_is_merged_with_overlapping_segments_of_level_one() {
+        final Segment<String> newer = segment(4, "c", "d");
+        final Segment<String> older = segment(3, "e", "f");
+        final Segment<String> overlapping = segment(2, "f", "g");
+        final Segment<String> disjoint = segment(1, "x", "y");
+        final Version<String> version = Version.of(List.of(List.of(newer, older), List.of(overlapping, disjoint)));
+
+        final CompactionTask<String> task = sut.pick(version).get();
+
+        assertThat(task.inputs()).containsExactly(newer, older, overlapping);
+        assertThat(task.outputLevel()).isEqualTo(1);
+    }
+
+    @Test
+    void level_over_its_size_budget_is_pushed_down_round_robin() {
+        final Segment<String> first = segment(1, "a", "b", 20);
+        final Segment<String> second = segment(2, "c", "d", 20);
+        final Segment<String> below = segment(3, "d", "e");
+        final Version<String> version = Version.of(List.of(List.of(), List.of(first, second), List.of(below)));
+
+        final CompactionTask<String> firstTask = sut.pick(version).get();
+        final CompactionTask<String> secondTask = sut.pick(version).get();
+
+        assertThat(firstTask.inputs()).containsExactly(first);
+        assertThat(firstTask.isTrivialMove()).isTrue();
+        assertThat(secondTask.inputs()).containsExactly(second, below);
+        assertThat(secondTask.outputLevel()).isEqualTo(2);
+    }
+
+    @Test
+    void each_level_may_grow_by_the_size_ratio() {
+        assertThat(sut.getMaxBytesForLevel(1)).isEqualTo(20);
+        assertThat(sut.getMaxBytesForLevel(3)).isEqualTo(2000);
+    }
+
+    private Segment<String> segment(final int id, final String minKey, final String maxKey) {
+        return segment(id, minKey, maxKey, 1);
+    }
+
+    private Segment<String> segment(final int id, final String minKey, final String maxKey, final int valueLength) {
+        final MemTable<String> memTable = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+        memTable.put(minKey, "v".repeat(valueLength));
+        memTable.put(maxKey, "v".repeat(valueLength));
+        final Segment<String> segment = memTable.writeSegment(getPath("/home/user"), id, config).get();
+        memTable.deleteLog().get();
+        return segment;
+    }
+}
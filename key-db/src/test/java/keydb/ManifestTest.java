@@ -0,0 +1,57 @@
+package keydb;
+
+import io.vavr.control.Option;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ManifestTest extends TestBase {
+
+    private final Path path = getPath("/home/user/manifest.json");
+
+    @Test
+    void can_write_and_read_back_manifest_correctly() {
+        final Manifest sut = new Manifest(7, List.of(List.of(6, 5), List.of(1, 3, 2)));
+
+        sut.write(path).get();
+        final Manifest manifest = Manifest.from(path).get();
+
+        assertThat(manifest).isEqualTo(sut);
+    }
+
+    @Test
+    void segment_metadata_is_written_and_read_back() {
+        final Manifest.SegmentMetadata metadata = new Manifest.SegmentMetadata("AAFh", "AAF6", 1024, 96, 42, 3);
+        final Manifest sut = new Manifest(2, List.of(List.of(1)), Map.of(1, metadata));
+
+        sut.write(path).get();
+
+        assertThat(Manifest.from(path).get().getMetadata(1)).isEqualTo(Option.of(metadata));
+    }
+
+    @Test
+    void manifest_written_before_segment_metadata_can_be_read() throws Exception {
+        Files.writeString(path, "{\"nextSegmentId\":2,\"levels\":[[1,0]]}");
+
+        final Manifest sut = Manifest.from(path).get();
+
+        assertThat(sut.levels()).containsExactly(List.of(1, 0));
+        assertThat(sut.getMetadata(1)).isEqualTo(Option.none());
+    }
+
+    @Test
+    void writing_replaces_previous_manifest() {
+        new Manifest(1, List.of(List.of(0))).write(path).get();
+        final Manifest sut = new Manifest(2, List.of(List.of(1), List.of(0)));
+
+        sut.write(path).get();
+
+        assertThat(Manifest.from(path).get()).isEqualTo(sut);
+        assertThat(Files.exists(getPath("/home/user/manifest.json.tmp"))).isFalse();
+    }
+}
@@ -3,13 +3,25 @@ package keydb;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
 import keydb.config.DBConfig;
+import keydb.config.WalDurability;
 import keydb.types.ValueIO;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.zip.CRC32C;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class MemTableTest extends TestBase {
 
@@ -37,6 +49,23 @@ public class MemTableTest extends TestBase {
         }
     }
 
+    @Test
+    void writes_the_charset_cannot_encode_are_rejected_before_they_are_logged() throws Exception {
+        final DBConfig config = DBConfig.builder().charset(StandardCharsets.ISO_8859_1).build();
+        try (final MemTable<String> sut = new MemTable<>(some_path, valueIO, config)) {
+            final long position = sut.getLogPosition();
+
+            assertThatThrownBy(() -> sut.put("key", "\u20AC")).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> sut.write(new WriteBatch<String>().put("a", "1").delete("\u20AC")))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+            assertThat(sut.getLogPosition()).isEqualTo(position);
+            assertThat(sut.get("a")).isEqualTo(Option.none());
+            sut.put("key", "\u00E9");
+            assertThat(sut.get("key")).isEqualTo(Option.of("\u00E9"));
+        }
+    }
+
     @Test
     void an_empty_table_has_size_zero() throws Exception {
         try (final MemTable<String> sut = getMemTable()) {
@@ -53,7 +82,8 @@ public class MemTableTest extends TestBase {
 
             final long size = sut.getSize();
 
-            assertThat(size).isEqualTo(2 + 8);
+            // Key and value, followed by the kind of the entry
+            assertThat(size).isEqualTo(2 + 8 + 1);
         }
     }
 
@@ -88,6 +118,301 @@ public class MemTableTest extends TestBase {
         forKeyValues((key, value) -> assertThat(segment.get(key, valueIO).get()).isEqualTo(Option.of(value)));
     }
 
+    @Test
+    void frozen_table_moves_its_log_and_rejects_writes() {
+        final Path frozenPath = getPath("/home/user/memtable.1");
+        final MemTable<String> table = getMemTableWithData();
+
+        final MemTable<String> sut = table.freeze(frozenPath).get();
+
+        assertThat(sut.isFrozen()).isTrue();
+        assertThat(sut.getSize()).isEqualTo(table.getSize());
+        forKeyValues((key, value) -> assertThat(sut.get(key)).isEqualTo(Option.of(value)));
+        assertThat(Files.exists(some_path)).isFalse();
+        assertThat(MemTable.from(frozenPath, valueIO).get().get("key")).isEqualTo(sut.get("key"));
+        assertThatThrownBy(() -> sut.put("key", "value")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void log_is_flushed_once_the_interval_bytes_have_been_written() throws Exception {
+        final MemTable<String> sut = new MemTable<>(some_path, valueIO, DBConfig.builder()
+                .walDurability(WalDurability.PERIODIC)
+                .walFlushIntervalBytes(40)
+                .walFlushIntervalMillis(Long.MAX_VALUE)
+                .build());
+
+        final long header = Files.size(some_path);
+
+        sut.put("hey", "bob");
+        assertThat(Files.size(some_path)).isEqualTo(header);
+
+        final long position = sut.put("hello", "alice");
+        assertThat(Files.size(some_path)).isEqualTo(position);
+    }
+
+    @Test
+    void group_commit_makes_the_log_durable_up_to_the_written_position() throws Exception {
+        final MemTable<String> sut = new MemTable<>(some_path, valueIO, DBConfig.builder()
+                .walDurability(WalDurability.GROUP_COMMIT)
+                .build());
+
+        final long header = Files.size(some_path);
+
+        final long position = sut.put("hey", "bob");
+        assertThat(Files.size(some_path)).isEqualTo(header);
+
+        sut.awaitDurable(position);
+        assertThat(Files.size(some_path)).isEqualTo(position);
+    }
+
+    @Test
+    void batch_is_recovered_from_log() throws Exception {
+        final MemTable<String> table = getMemTable();
+        table.write(new WriteBatch<String>().put("hey", "bob").put("hello", "alice").put("hey", "carol"));
+        table.close();
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+
+        assertThat(sut.get("hey")).isEqualTo(Option.of("carol"));
+        assertThat(sut.get("hello")).isEqualTo(Option.of("alice"));
+    }
+
+    @Test
+    void batch_cut_short_by_a_crash_is_dropped_as_a_whole() throws Exception {
+        final MemTable<String> table = getMemTable();
+        table.put("hey", "bob");
+        final long position = table.write(new WriteBatch<String>().put("hello", "alice").put("hi", "dave"));
+        table.close();
+        try (final FileChannel channel = FileChannel.open(some_path, StandardOpenOption.WRITE)) {
+            channel.truncate(position - 1);
+        }
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hi", "erin");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(reloaded.get("hello")).isEqualTo(Option.none());
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("erin"));
+    }
+
+    @Test
+    void log_without_records_is_read_and_rewritten() throws Exception {
+        try (final DataOutputStream output = new DataOutputStream(Files.newOutputStream(some_path))) {
+            new Entry<>("hey", "bob").write(output, valueIO);
+            new Entry<>("hello", "alice").write(output, valueIO);
+        }
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hi", "dave");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(reloaded.get("hello")).isEqualTo(Option.of("alice"));
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void deletes_and_expiring_puts_are_recovered_from_log() throws Exception {
+        final MemTable<String> table = getMemTable();
+        table.put("hey", "bob");
+        table.write(new WriteBatch<String>().delete("hey").put("hello", "alice", Duration.ofDays(1)));
+        table.put(new Entry<>("hi", "dave", 0));
+        table.close();
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+
+        assertThat(sut.getEntry("hey")).isEqualTo(Option.of(Entry.tombstone("hey")));
+        assertThat(sut.get("hey")).isEqualTo(Option.none());
+        assertThat(sut.get("hello")).isEqualTo(Option.of("alice"));
+        assertThat(sut.getEntry("hello").get().expiresAtMillis()).isNotEqualTo(Entry.NEVER);
+        assertThat(sut.get("hi")).isEqualTo(Option.none());
+    }
+
+    @Test
+    void log_of_records_without_entry_kinds_is_read_and_rewritten() throws Exception {
+        try (final DataOutputStream output = new DataOutputStream(Files.newOutputStream(some_path))) {
+            output.writeLong(MemTable.LOG_MAGIC_V1);
+            final ByteArrayOutputStream record = new ByteArrayOutputStream();
+            new Entry<>("hey", "bob").write(new DataOutputStream(record), valueIO);
+            output.writeInt(record.size());
+            output.writeInt(1);
+            record.writeTo(output);
+        }
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hi", "dave");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void log_of_records_without_checksums_is_read_and_rewritten() throws Exception {
+        try (final DataOutputStream output = new DataOutputStream(Files.newOutputStream(some_path))) {
+            output.writeLong(MemTable.LOG_MAGIC_V2);
+            final ByteArrayOutputStream record = new ByteArrayOutputStream();
+            Entry.tombstone("hello").writeWithKind(new DataOutputStream(record), valueIO);
+            new Entry<>("hey", "bob").writeWithKind(new DataOutputStream(record), valueIO);
+            output.writeInt(record.size());
+            output.writeInt(2);
+            record.writeTo(output);
+        }
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hi", "dave");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.getEntry("hello")).isEqualTo(Option.of(Entry.tombstone("hello")));
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void log_of_records_without_sequences_is_read_and_rewritten() throws Exception {
+        try (final DataOutputStream output = new DataOutputStream(Files.newOutputStream(some_path))) {
+            output.writeLong(MemTable.LOG_MAGIC_V3);
+            final ByteArrayOutputStream record = new ByteArrayOutputStream();
+            final DataOutputStream recordOutput = new DataOutputStream(record);
+            recordOutput.writeInt(2);
+            new Entry<>("hey", "bob").writeWithKind(recordOutput, valueIO);
+            new Entry<>("hey", "carol").writeWithKind(recordOutput, valueIO);
+            final CRC32C crc = new CRC32C();
+            crc.update(record.toByteArray());
+            output.writeInt(record.size());
+            output.writeInt((int) crc.getValue());
+            record.writeTo(output);
+        }
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO, DBConfig.builder().build(), 10).get();
+        sut.put("hi", "dave");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.getLastSequence()).isEqualTo(13);
+        assertThat(reloaded.getEntry("hey", 11)).isEqualTo(Option.of(new Entry<>("hey", "bob")));
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("carol"));
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void sequences_are_recovered_from_log() throws Exception {
+        final MemTable<String> table = new MemTable<>(some_path, valueIO, DBConfig.builder().build(), 41);
+        table.put("hey", "bob");
+        table.write(new WriteBatch<String>().put("hello", "alice").put("hey", "carol"));
+        table.close();
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hey", "dave");
+
+        assertThat(sut.getLastSequence()).isEqualTo(45);
+        assertThat(sut.getEntry("hey", 42)).isEqualTo(Option.of(new Entry<>("hey", "bob")));
+        assertThat(sut.getEntry("hello", 42)).isEqualTo(Option.none());
+        assertThat(sut.getEntry("hey", 44)).isEqualTo(Option.of(new Entry<>("hey", "carol")));
+        assertThat(sut.get("hey")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void garbled_last_record_is_dropped() throws Exception {
+        final MemTable<String> table = getMemTable();
+        table.put("hey", "bob");
+        final long position = table.put("hello", "alice");
+        table.close();
+        flipByte(position - 1);
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hi", "dave");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(reloaded.get("hello")).isEqualTo(Option.none());
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void garbled_record_followed_by_others_fails_the_load() throws Exception {
+        final MemTable<String> table = getMemTable();
+        final long position = table.put("hey", "bob");
+        table.put("hello", "alice");
+        table.close();
+        flipByte(position - 1);
+
+        assertThat(MemTable.from(some_path, valueIO).getCause())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Checksum mismatch");
+    }
+
+    @Test
+    void garbled_length_followed_by_other_records_fails_the_load() throws Exception {
+        final MemTable<String> table = getMemTable();
+        final long position = table.put("hey", "bob");
+        table.put("hello", "alice");
+        table.put("hi", "dave");
+        table.close();
+        try (final FileChannel channel = FileChannel.open(some_path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1), position);
+        }
+        final long size = Files.size(some_path);
+
+        assertThat(MemTable.from(some_path, valueIO).getCause())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Invalid length");
+        assertThat(Files.size(some_path)).isEqualTo(size);
+    }
+
+    @Test
+    void zeroed_tail_of_a_crashed_write_is_dropped() throws Exception {
+        final MemTable<String> table = getMemTable();
+        table.put("hey", "bob");
+        table.close();
+        try (final FileChannel channel = FileChannel.open(some_path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(4096));
+        }
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+        sut.put("hi", "dave");
+        sut.close();
+        final MemTable<String> reloaded = MemTable.from(some_path, valueIO).get();
+
+        assertThat(reloaded.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(reloaded.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    @Test
+    void records_larger_than_the_replay_buffer_are_recovered() throws Exception {
+        final String value = "v".repeat(60_000);
+        final WriteBatch<String> batch = new WriteBatch<>();
+        for (int i = 0; i < 40; i++) {
+            batch.put("key" + i, value + i);
+        }
+        final MemTable<String> table = getMemTable();
+        table.put("hey", "bob");
+        table.write(batch);
+        table.put("hi", "dave");
+        table.close();
+
+        final MemTable<String> sut = MemTable.from(some_path, valueIO).get();
+
+        assertThat(sut.get("hey")).isEqualTo(Option.of("bob"));
+        assertThat(sut.get("key39")).isEqualTo(Option.of(value + 39));
+        assertThat(sut.get("hi")).isEqualTo(Option.of("dave"));
+    }
+
+    private void flipByte(final long position) throws IOException {
+        try (final FileChannel channel = FileChannel.open(some_path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) ~b.get(0));
+            channel.write(b.flip(), position);
+        }
+    }
+
     private MemTable<String> getMemTableWithData() {
         final MemTable<String> sut = getMemTable();
         forKeyValues(sut::put);
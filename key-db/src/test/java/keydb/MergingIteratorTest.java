@@ -0,0 +1,45 @@
+package keydb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MergingIteratorTest {
+
+    @Test
+    void merges_sources_in_key_order() {
+        final MergingIterator<String> sut = new MergingIterator<>(List.of(
+                source(entry("b", "1"), entry("d", "1")),
+                source(entry("a", "2"), entry("c", "2"), entry("e", "2"))));
+
+        assertThat(sut).extracting(Entry::key).containsExactly("a", "b", "c", "d", "e");
+    }
+
+    @Test
+    void newest_source_wins_on_duplicate_keys() {
+        final MergingIterator<String> sut = new MergingIterator<>(List.of(
+                source(entry("a", "new")),
+                source(entry("a", "middle"), entry("b", "middle")),
+                source(entry("a", "old"), entry("b", "old"))));
+
+        assertThat(sut).containsExactly(entry("a", "new"), entry("b", "middle"));
+    }
+
+    @Test
+    void merging_no_sources_is_empty() {
+        final MergingIterator<String> sut = new MergingIterator<>(List.of());
+
+        assertThat(sut.hasNext()).isFalse();
+    }
+
+    private static Entry<String> entry(final String key, final String value) {
+        return new Entry<>(key, value);
+    }
+
+    @SafeVarargs
+    private static CloseableIterator<Entry<String>> source(final Entry<String>... entries) {
+        return CloseableIterator.of(List.of(entries).iterator());
+    }
+}
@@ -0,0 +1,45 @@
+package keydb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeIteratorTest {
+
+    private final AtomicInteger closed = new AtomicInteger();
+
+    @Test
+    void stops_before_the_end_key() {
+        final RangeIterator<String> sut = new RangeIterator<>(source("a", "b", "c", "d"), "c", closed::incrementAndGet);
+
+        assertThat(sut).extracting(Entry::key).containsExactly("a", "b");
+    }
+
+    @Test
+    void closes_once_when_exhausted_and_closed_again() {
+        final RangeIterator<String> sut = new RangeIterator<>(source("a"), "z", closed::incrementAndGet);
+        sut.next();
+
+        sut.close();
+
+        assertThat(sut.hasNext()).isFalse();
+        assertThat(closed.get()).isEqualTo(1);
+    }
+
+    @Test
+    void closing_early_ends_the_iteration() {
+        final RangeIterator<String> sut = new RangeIterator<>(source("a", "b"), "z", closed::incrementAndGet);
+
+        sut.close();
+
+        assertThat(sut.hasNext()).isFalse();
+        assertThat(closed.get()).isEqualTo(1);
+    }
+
+    private static CloseableIterator<Entry<String>> source(final String... keys) {
+        return CloseableIterator.of(List.of(keys).stream().map(key -> new Entry<>(key, key)).iterator());
+    }
+}
@@ -0,0 +1,36 @@
+package keydb;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScratchBuffersTest {
+
+    @Test
+    void pool_lends_the_same_buffers_to_successive_tasks() {
+        final ScratchBuffers.Pool sut = new ScratchBuffers.Pool(1);
+        final ScratchBuffers own = ScratchBuffers.current();
+        final List<ScratchBuffers> lent = new ArrayList<>();
+
+        sut.run(() -> lent.add(ScratchBuffers.current()));
+        sut.run(() -> lent.add(ScratchBuffers.current()));
+
+        assertThat(lent.get(0)).isSameAs(lent.get(1)).isNotSameAs(own);
+        assertThat(ScratchBuffers.current()).isSameAs(own);
+    }
+
+    @Test
+    void block_buffer_grows_on_the_heap_and_is_kept() {
+        final ScratchBuffers sut = ScratchBuffers.current();
+
+        final ByteBuffer block = sut.block(100_000);
+
+        assertThat(block.isDirect()).isFalse();
+        assertThat(block.remaining()).isEqualTo(100_000);
+        assertThat(sut.block(10)).isSameAs(block);
+    }
+}
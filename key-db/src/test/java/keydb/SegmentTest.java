@@ -3,12 +3,16 @@ package keydb;
 import com.google.common.collect.ImmutableList;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
+import keydb.config.Compression;
 import keydb.config.DBConfig;
+import keydb.types.StringCodec;
 import keydb.types.ValueIO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -16,6 +20,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -32,6 +38,206 @@ public class SegmentTest extends TestBase {
         forKeyValues((key, value) -> assertThat(sut.get(key, valueIO).get()).isEqualTo(Option.of(value)));
     }
 
+    @Test
+    void get_returns_correct_values_across_many_blocks() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder()
+                .bytesPerIndex(64)
+                .build()).get();
+
+        assertThat(sut.getIndex().numBlocks()).isGreaterThan(10);
+        forKeyValues((key, value) -> assertThat(sut.get(key, valueIO).get()).isEqualTo(Option.of(value)));
+        assertThat(sut.get("", valueIO).get()).isEqualTo(Option.none());
+        assertThat(sut.get("~", valueIO).get()).isEqualTo(Option.none());
+    }
+
+    @Test
+    void get_reads_blocks_through_the_cache() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder()
+                .bytesPerIndex(64)
+                .build()).get();
+        final BlockCache<String> blockCache = BlockCache.create(1_000_000);
+
+        forKeyValues((key, value) -> assertThat(sut.get(key, valueIO, blockCache).get()).isEqualTo(Option.of(value)));
+        forKeyValues((key, value) -> assertThat(sut.get(key, valueIO, blockCache).get()).isEqualTo(Option.of(value)));
+
+        assertThat(blockCache.getMisses()).isEqualTo(sut.getIndex().numBlocks());
+        assertThat(blockCache.getHits()).isEqualTo(2L * keyValues.size() - sut.getIndex().numBlocks());
+        assertThat(sut.get("", valueIO, blockCache).get()).isEqualTo(Option.none());
+    }
+
+    @Test
+    void get_entries_reads_each_block_once() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder()
+                .bytesPerIndex(64)
+                .build()).get();
+        final List<String> keys = Stream.concat(keyValues.keySet().stream(), Stream.of("", "missing", "~"))
+                .sorted()
+                .collect(Collectors.toList());
+        final BlockCache<String> blockCache = BlockCache.create(1_000_000);
+
+        for (final BlockCache<String> cache : List.of(BlockCache.<String>disabled(), blockCache)) {
+            final Map<String, Entry<String>> entries = sut.getEntries(keys, valueIO, cache).get();
+
+            assertThat(entries).hasSize(keyValues.size());
+            forKeyValues((key, value) -> assertThat(entries.get(key)).isEqualTo(new Entry<>(key, value)));
+        }
+        assertThat(blockCache.getMisses()).isEqualTo(sut.getIndex().numBlocks());
+        assertThat(blockCache.getHits()).isEqualTo(0);
+    }
+
+    @Test
+    void iterator_starts_at_the_given_key() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder()
+                .bytesPerIndex(64)
+                .build()).get();
+        final List<String> keys = keyValues.keySet().stream().sorted().collect(Collectors.toList());
+        final String fromKey = keys.get(keys.size() / 2);
+
+        try (final CloseableIterator<Entry<String>> iterator = sut.iterator(valueIO, fromKey).get()) {
+            assertThat(iterator).extracting(Entry::key)
+                    .containsExactlyElementsOf(keys.subList(keys.size() / 2, keys.size()));
+        }
+    }
+
+    @Test
+    void reads_back_entries_written_with_every_compression() {
+        final List<String> keys = keyValues.keySet().stream().sorted().collect(Collectors.toList());
+        for (final Compression compression : Compression.values()) {
+            final MemTable<String> memTable = getMemTable();
+            forKeyValues(memTable::put);
+            final int id = compression.ordinal() + 1;
+            memTable.writeSegment(getPath("/home/user/"), id, DBConfig.builder()
+                    .bytesPerIndex(256)
+                    .compression(compression)
+                    .build()).get();
+
+            final Segment<String> sut = Segment.from(getPath("/home/user/" + id), valueIO).get();
+
+            forKeyValues((key, value) -> assertThat(sut.get(key, valueIO).get()).isEqualTo(Option.of(value)));
+            try (final CloseableIterator<Entry<String>> iterator = sut.iterator(valueIO).get()) {
+                assertThat(iterator).extracting(Entry::key).containsExactlyElementsOf(keys);
+            }
+        }
+    }
+
+    @Test
+    void tombstones_and_expiring_entries_are_read_back() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        memTable.put(Entry.tombstone("deleted"));
+        memTable.put(new Entry<>("expired", "value", 0));
+        memTable.put(new Entry<>("expiring", "value", Entry.NEVER - 1));
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder()
+                .bytesPerIndex(64)
+                .build()).get();
+
+        for (final BlockCache<String> blockCache : List.of(BlockCache.<String>disabled(), BlockCache.<String>create(1_000_000))) {
+            assertThat(sut.getEntry("deleted", valueIO, blockCache).get()).isEqualTo(Option.of(Entry.tombstone("deleted")));
+            assertThat(sut.getEntry("expired", valueIO, blockCache).get()).isEqualTo(Option.of(new Entry<>("expired", "value", 0)));
+            assertThat(sut.get("deleted", valueIO, blockCache).get()).isEqualTo(Option.none());
+            assertThat(sut.get("expired", valueIO, blockCache).get()).isEqualTo(Option.none());
+            assertThat(sut.get("expiring", valueIO, blockCache).get()).isEqualTo(Option.of("value"));
+            forKeyValues((key, value) -> assertThat(sut.get(key, valueIO, blockCache).get()).isEqualTo(Option.of(value)));
+        }
+    }
+
+    @Test
+    void corrupted_block_fails_its_checksum() throws Exception {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> segment = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder().build()).get();
+        final Path dataPath = Segment.getDataPath(segment.getRootPath());
+        final byte[] data = Files.readAllBytes(dataPath);
+        data[SegmentFormat.BLOCK_HEADER_SIZE + 10] ^= 1;
+        Files.write(dataPath, data);
+
+        final Segment<String> sut = Segment.from(segment.getRootPath(), valueIO).get();
+
+        assertThat(sut.get(sut.getMinKey(), valueIO).failed().get())
+                .isInstanceOf(IOException.class)
+                .hasMessage("Block checksum mismatch");
+    }
+
+    @Test
+    void entries_are_encoded_in_the_configured_charset() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder()
+                .bytesPerIndex(256)
+                .charset(StandardCharsets.ISO_8859_1)
+                .build()).get();
+
+        final Segment<String> sut = Segment.from(getPath("/home/user/1"), valueIO).get();
+
+        assertThat(sut.getFooter().version()).isEqualTo(SegmentFormat.VERSION);
+        assertThat(sut.getCodec()).isEqualTo(Option.of(new StringCodec(StandardCharsets.ISO_8859_1)));
+        forKeyValues((key, value) -> assertThat(sut.get(key, valueIO).get()).isEqualTo(Option.of(value)));
+    }
+
+    @Test
+    void reads_segments_written_before_the_block_format() throws Throwable {
+        final Path root = Files.createDirectories(getPath("/home/user/1"));
+        final SparseIndex<String> index = new SparseIndex<>(valueIO);
+        final List<String> keys = keyValues.keySet().stream().sorted().collect(Collectors.toList());
+        FileUtils.applyWithOutput(Segment.getDataPath(root), output -> {
+            for (int i = 0; i < keys.size(); i++) {
+                if (i % 10 == 0) {
+                    index.insert(keys.get(i), output.size());
+                }
+                new Entry<>(keys.get(i), keyValues.get(keys.get(i))).write(output, valueIO);
+            }
+            return null;
+        });
+        index.write(Segment.getIndexPath(root)).get();
+
+        final Segment<String> sut = Segment.from(root, valueIO).get();
+
+        assertThat(sut.getFooter().isLegacy()).isTrue();
+        assertThat(sut.getMaxKey()).isEqualTo(keys.get(keys.size() - 1));
+        forKeyValues((key, value) -> assertThat(sut.get(key, valueIO).get()).isEqualTo(Option.of(value)));
+        assertThat(sut.getEntries(keys, valueIO, BlockCache.disabled()).get()).hasSize(keys.size());
+        try (final CloseableIterator<Entry<String>> iterator = sut.iterator(valueIO, keys.get(50)).get()) {
+            assertThat(iterator).extracting(Entry::key).containsExactlyElementsOf(keys.subList(50, keys.size()));
+        }
+    }
+
+    @Test
+    void get_fails_once_segment_is_closed() throws Exception {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder().build()).get();
+        final String key = keyValues.keySet().iterator().next();
+        sut.get(key, valueIO).get();
+
+        sut.close();
+
+        assertThat(sut.get(key, valueIO).isFailure()).isTrue();
+    }
+
+    @Test
+    void obsolete_segment_is_deleted_on_last_release() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> sut = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder().build()).get();
+        sut.retain();
+        sut.retain();
+        sut.markObsolete();
+
+        sut.release();
+        assertThat(Files.exists(getPath("/home/user/1"))).isTrue();
+
+        sut.release();
+        assertThat(Files.exists(getPath("/home/user/1"))).isFalse();
+    }
+
     @Test
     void creating_from_non_existing_path_fails() {
         assertThat(Segment.from(getPath("/home/user/memtable"), valueIO).failed().get())
@@ -50,16 +256,49 @@ public class SegmentTest extends TestBase {
         assertThat(sut).isEqualTo(segment);
     }
 
+    @Test
+    void get_returns_none_for_key_rejected_by_bloom_filter() throws Exception {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        final Segment<String> segment = memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder().build()).get();
+        Files.delete(Segment.getDataPath(segment.getRootPath()));
+        final String missingKey = Stream.generate(() -> UUID.randomUUID().toString())
+                .filter(key -> !segment.getBloomFilter().mightContain(key))
+                .findFirst()
+                .get();
+
+        final Option<String> value = segment.get(missingKey, valueIO).get();
+
+        assertThat(value).isEqualTo(Option.none());
+    }
+
     @Test
     void is_sortable_in_order_of_most_recent_segment_to_oldest() {
-        final Segment<String> one = new Segment<>(new SparseIndex<>(valueIO), getPath("one"), 1);
-        final Segment<String> two = new Segment<>(new SparseIndex<>(valueIO), getPath("two"), 2);
-        final Segment<String> three = new Segment<>(new SparseIndex<>(valueIO), getPath("three"), 3);
+        final Segment<String> one = emptySegment(getPath("one"), 1);
+        final Segment<String> two = emptySegment(getPath("two"), 2);
+        final Segment<String> three = emptySegment(getPath("three"), 3);
         final List<Segment<String>> segments = ImmutableList.of(two, one, three);
 
         assertThat(segments.stream().sorted()).containsExactly(three, two, one);
     }
 
+    @Test
+    void records_smallest_and_largest_key() {
+        final MemTable<String> memTable = getMemTable();
+        forKeyValues(memTable::put);
+        memTable.writeSegment(getPath("/home/user/"), 1, DBConfig.builder().bytesPerIndex(100).build()).get();
+
+        final Segment<String> sut = Segment.from(getPath("/home/user/1"), valueIO).get();
+
+        assertThat(sut.getMinKey()).isEqualTo(keyValues.keySet().stream().min(String::compareTo).get());
+        assertThat(sut.getMaxKey()).isEqualTo(keyValues.keySet().stream().max(String::compareTo).get());
+    }
+
+    private Segment<String> emptySegment(final Path path, final int id) {
+        return new Segment<>(new SparseIndex<>(valueIO), BloomFilter.empty(valueIO), "a", "z", path, id,
+                SegmentFormat.Footer.LEGACY, Option.none());
+    }
+
     private MemTable<String> getMemTable() {
         return new MemTable<>(getPath("/home/user/memtable"), valueIO);
     }
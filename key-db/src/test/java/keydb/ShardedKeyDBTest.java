@@ -0,0 +1,111 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ShardedKeyDBTest extends TestBase {
+
+    private static final DBConfig FOUR_SHARDS = DBConfig.builder().shards(4).build();
+
+    @Test
+    void keys_are_spread_over_the_shards() throws Exception {
+        try (final ShardedKeyDB<String> sut = ShardedKeyDB.create(getPath("db"), FOUR_SHARDS, String.class)) {
+            forKeyValues(sut::put);
+            sut.delete("missing");
+
+            forKeyValues((key, value) -> assertThat(sut.get(key)).isEqualTo(Option.some(value)));
+            assertThat(sut.get("missing")).isEqualTo(Option.none());
+            assertThat(sut.getShards()).hasSize(4);
+            for (final KeyDB<String> shard : sut.getShards()) {
+                try (final CloseableIterator<Entry<String>> entries = shard.scan("", "\uffff")) {
+                    assertThat(entries.hasNext()).isTrue();
+                }
+            }
+            assertThat(Files.isDirectory(getPath("db").resolve("shard-3"))).isTrue();
+        }
+    }
+
+    @Test
+    void scan_merges_the_shards_in_key_order() throws Exception {
+        try (final ShardedKeyDB<String> sut = ShardedKeyDB.create(getPath("db"), FOUR_SHARDS, String.class)) {
+            forKeyValues(sut::put);
+            sut.flush();
+
+            final List<Entry<String>> scanned = new ArrayList<>();
+            try (final CloseableIterator<Entry<String>> entries = sut.scan("", "\uffff")) {
+                entries.forEachRemaining(scanned::add);
+            }
+
+            final List<String> keys = scanned.stream().map(Entry::key).collect(Collectors.toList());
+            assertThat(keys).containsExactlyElementsOf(new TreeMap<>(keyValues).keySet());
+            scanned.forEach(entry -> assertThat(entry.value()).isEqualTo(keyValues.get(entry.key())));
+        }
+    }
+
+    @Test
+    void get_all_returns_the_values_of_every_shard_in_key_order() throws Exception {
+        try (final ShardedKeyDB<String> sut = ShardedKeyDB.create(getPath("db"), FOUR_SHARDS, String.class)) {
+            for (int i = 0; i < 10; i++) {
+                sut.put("key" + i, "value" + i);
+            }
+
+            final Map<String, String> found = sut.getAll(List.of("key7", "missing", "key2", "key5"));
+
+            assertThat(found).containsExactly(entry("key2", "value2"), entry("key5", "value5"), entry("key7", "value7"));
+        }
+    }
+
+    @Test
+    void load_keeps_the_number_of_shards_and_their_data() throws Exception {
+        try (final ShardedKeyDB<String> sut = ShardedKeyDB.create(getPath("db"), FOUR_SHARDS, String.class)) {
+            forKeyValues(sut::put);
+        }
+
+        try (final ShardedKeyDB<String> loaded = ShardedKeyDB.load(getPath("db"), String.class)) {
+            assertThat(loaded.getShards()).hasSize(4);
+            forKeyValues((key, value) -> assertThat(loaded.get(key)).isEqualTo(Option.some(value)));
+        }
+    }
+
+    @Test
+    void keys_are_routed_by_the_hash_of_their_bytes() throws Exception {
+        try (final ShardedKeyDB<String> sut = ShardedKeyDB.create(getPath("db"), FOUR_SHARDS, String.class)) {
+            forKeyValues(sut::put);
+        }
+        assertThat(Files.readString(getPath("db").resolve("config.json"))).contains("\"shardHash\":\"KEY_BYTES\"");
+
+        try (final ShardedKeyDB<String> loaded = ShardedKeyDB.load(getPath("db"), String.class)) {
+            final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+            forKeyValues((key, value) -> {
+                final int shard = (int) Math.floorMod(KeyHash.of(key, valueIO), 4L);
+                assertThat(loaded.getShards().get(shard).get(key)).isEqualTo(Option.some(value));
+            });
+        }
+    }
+
+    @Test
+    void load_without_config_fails() {
+        assertThatThrownBy(() -> ShardedKeyDB.load(getPath("db"), String.class))
+                .isInstanceOf(FileNotFoundException.class);
+    }
+
+    @Test
+    void create_needs_at_least_one_shard() {
+        assertThatThrownBy(() -> ShardedKeyDB.create(getPath("db"), DBConfig.builder().shards(0).build(), String.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
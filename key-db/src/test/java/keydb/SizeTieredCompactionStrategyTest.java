@@ -0,0 +1,61 @@
+package keydb;
+
+import keydb.config.Compression;
+import keydb.config.DBConfig;
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SizeTieredCompactionStrategyTest extends TestBase {
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+    private final DBConfig config = DBConfig.builder()
+            .compactionMinThreshold(3)
+            .compactionMaxThreshold(4)
+            // The values are repetitive, compressed they would all be about the same size
+            .compression(Compression.NONE)
+            .build();
+
+    @Test
+    void picks_run_of_similarly_sized_segments() {
+        final List<Segment<String>> segments = segmentsOfSizes(10, 10, 10);
+
+        assertThat(SizeTieredCompactionStrategy.pick(segments, config)).isEqualTo(segments);
+    }
+
+    @Test
+    void picks_nothing_when_run_is_too_short() {
+        final List<Segment<String>> segments = segmentsOfSizes(10, 10);
+
+        assertThat(SizeTieredCompactionStrategy.pick(segments, config)).isEmpty();
+    }
+
+    @Test
+    void does_not_pick_across_differently_sized_segment() {
+        final List<Segment<String>> segments = segmentsOfSizes(10, 10, 1000, 10, 1000, 1000, 1000);
+
+        assertThat(SizeTieredCompactionStrategy.pick(segments, config)).isEqualTo(segments.subList(4, 7));
+    }
+
+    @Test
+    void picks_at_most_max_threshold_segments() {
+        final List<Segment<String>> segments = segmentsOfSizes(10, 10, 10, 10, 10, 10);
+
+        assertThat(SizeTieredCompactionStrategy.pick(segments, config)).isEqualTo(segments.subList(0, 4));
+    }
+
+    // Newest segment first, each holding a single value of the given length
+    private List<Segment<String>> segmentsOfSizes(final int... sizes) {
+        final List<Segment<String>> segments = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            final MemTable<String> memTable = new MemTable<>(getPath("/home/user/memtable"), valueIO);
+            memTable.put("key", "v".repeat(sizes[i]));
+            segments.add(memTable.writeSegment(getPath("/home/user"), sizes.length - i, config).get());
+        }
+        return segments;
+    }
+}
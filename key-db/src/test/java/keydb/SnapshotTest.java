@@ -0,0 +1,147 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.config.CompactionStyle;
+import keydb.config.DBConfig;
+import keydb.config.MemTableStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SnapshotTest extends TestBase {
+
+    @Test
+    void snapshot_does_not_see_later_writes() throws Exception {
+        for (final MemTableStorage storage : MemTableStorage.values()) {
+            final String name = "db-" + storage;
+            try (final KeyDB<String> db = KeyDB.create(getPath(name), DBConfig.builder()
+                    .memTableStorage(storage)
+                    .build(), String.class)) {
+                db.put("a", "1");
+                db.put("b", "2");
+
+                try (final Snapshot<String> sut = db.snapshot()) {
+                    db.put("a", "3");
+                    db.delete("b");
+                    db.put("c", "4");
+
+                    assertThat(sut.get("a")).isEqualTo(Option.of("1"));
+                    assertThat(sut.get("b")).isEqualTo(Option.of("2"));
+                    assertThat(sut.get("c")).isEqualTo(Option.none());
+                    assertThat(values(sut.scan("a", "z"))).containsExactly("1", "2");
+                    assertThat(values(db.scan("a", "z"))).containsExactly("3", "4");
+                }
+            }
+        }
+    }
+
+    @Test
+    void snapshot_keeps_reading_its_segments_through_flushes_and_compactions() throws Exception {
+        try (final KeyDB<String> db = KeyDB.create(getPath("db"), DBConfig.builder()
+                .memTableFlushSizeBytes(1)
+                .compactionStyle(CompactionStyle.SIZE_TIERED)
+                .build(), String.class)) {
+            forKeyValues(db::put);
+            db.flush().get();
+
+            try (final Snapshot<String> sut = db.snapshot()) {
+                forKeyValues((key, value) -> db.put(key, value + "-new"));
+                db.flush().get();
+                db.compact().get();
+
+                forKeyValues((key, value) -> assertThat(sut.get(key)).isEqualTo(Option.of(value)));
+                forKeyValues((key, value) -> assertThat(db.get(key)).isEqualTo(Option.of(value + "-new")));
+            }
+        }
+    }
+
+    @Test
+    void snapshot_sees_batches_whole_while_writes_continue() throws Exception {
+        final List<String> keys = List.of("a", "b", "c", "d");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicBoolean done = new AtomicBoolean();
+        try (final KeyDB<String> db = KeyDB.create(getPath("db"), DBConfig.builder()
+                .memTableFlushSizeBytes(500)
+                .build(), String.class)) {
+            db.write(batchOf(keys, 0));
+            final Future<?> writer = executor.submit(() -> {
+                for (int i = 1; !done.get(); i++) {
+                    db.write(batchOf(keys, i));
+                }
+            });
+
+            for (int i = 0; i < 200; i++) {
+                try (final Snapshot<String> sut = db.snapshot()) {
+                    final List<String> values = values(sut.scan("a", "z"));
+                    assertThat(values).hasSize(keys.size());
+                    assertThat(values.stream().distinct()).hasSize(1);
+                    assertThat(sut.get("d")).isEqualTo(Option.of(values.get(0)));
+                }
+            }
+            done.set(true);
+            writer.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void sequences_keep_increasing_across_restarts() throws Exception {
+        final KeyDB<String> db = KeyDB.create(getPath("db"), String.class);
+        db.put("a", "1");
+        db.write(new WriteBatch<String>().put("b", "2").put("c", "3"));
+        db.flush().get();
+        db.put("d", "4");
+        db.close();
+
+        try (final KeyDB<String> sut = KeyDB.load(getPath("db"), String.class)) {
+            assertThat(sut.getLastSequence()).isEqualTo(4);
+            sut.put("e", "5");
+            sut.flush().get();
+            assertThat(sut.getLastSequence()).isEqualTo(5);
+        }
+        try (final KeyDB<String> sut = KeyDB.load(getPath("db"), String.class)) {
+            assertThat(sut.getLastSequence()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void closed_snapshot_rejects_reads_but_open_scans_complete() throws Exception {
+        try (final KeyDB<String> db = KeyDB.create(getPath("db"), String.class)) {
+            forKeyValues(db::put);
+            final Snapshot<String> sut = db.snapshot();
+            final CloseableIterator<Entry<String>> entries = sut.scan("", "\uffff");
+
+            sut.close();
+
+            assertThatThrownBy(() -> sut.get("key")).isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> sut.scan("a", "b")).isInstanceOf(IllegalStateException.class);
+            final List<Entry<String>> scanned = new ArrayList<>();
+            entries.forEachRemaining(scanned::add);
+            assertThat(scanned).hasSize(keyValues.size());
+        }
+    }
+
+    private static WriteBatch<String> batchOf(final List<String> keys, final int value) {
+        final WriteBatch<String> batch = new WriteBatch<>();
+        keys.forEach(key -> batch.put(key, String.valueOf(value)));
+        return batch;
+    }
+
+    private static List<String> values(final CloseableIterator<Entry<String>> entries) {
+        try (entries) {
+            final List<Entry<String>> collected = new ArrayList<>();
+            entries.forEachRemaining(collected::add);
+            return collected.stream().map(Entry::value).collect(Collectors.toList());
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package keydb;
 
+import io.vavr.control.Option;
+import keydb.file.ByteBufferDataInput;
 import keydb.types.ValueIO;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 
 class SparseIndexTest extends TestBase {
@@ -22,6 +31,19 @@ class SparseIndexTest extends TestBase {
         assertThat(sut.getStartSearchByteOffset("Z")).isEqualTo(240000);
     }
 
+    @Test
+    void returns_block_that_may_contain_key() {
+        final SparseIndex<String> sut = buildIndex();
+
+        assertThat(sut.getBlock("A")).isEqualTo(-1);
+        assertThat(sut.getBlock("B")).isEqualTo(0);
+        assertThat(sut.getBlock("C")).isEqualTo(0);
+        assertThat(sut.getBlock("K")).isEqualTo(2);
+        assertThat(sut.getBlock("Z")).isEqualTo(3);
+        assertThat(sut.getBlockOffset(3)).isEqualTo(240000);
+        assertThat(sut.numBlocks()).isEqualTo(4);
+    }
+
     @Test
     void can_write_and_read_back_index_correctly() {
         final SparseIndex<String> sut = buildIndex();
@@ -42,4 +64,47 @@ class SparseIndexTest extends TestBase {
         index.insert("W", 240000);
         return index;
     }
-}
\ No newline at end of file
+
+    @Test
+    void finds_blocks_across_restart_points() {
+        for (final SparseIndex<String> sut : List.of(new SparseIndex<>(valueIO), new SparseIndex<>(valueIO, Option.none()))) {
+            final List<String> keys = buildKeys(sut);
+
+            assertThat(sut.numBlocks()).isEqualTo(keys.size());
+            assertThat(sut.getBlock("key")).isEqualTo(-1);
+            for (int i = 0; i < keys.size(); i++) {
+                assertThat(sut.getKey(i)).isEqualTo(keys.get(i));
+                assertThat(sut.getBlock(keys.get(i))).isEqualTo(i);
+                assertThat(sut.getBlock(keys.get(i) + "0")).isEqualTo(i);
+                assertThat(sut.getBlockOffset(i)).isEqualTo(i * 100L);
+            }
+        }
+    }
+
+    @Test
+    void can_write_and_read_back_packed_index() throws Exception {
+        final SparseIndex<String> sut = new SparseIndex<>(valueIO);
+        buildKeys(sut);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sut.writePacked(new DataOutputStream(bytes));
+        final SparseIndex<String> newIndex = SparseIndex.readPacked(
+                new ByteBufferDataInput(ByteBuffer.wrap(bytes.toByteArray())), valueIO, valueIO.getCodec(UTF_8));
+
+        assertThat(newIndex).isEqualTo(sut);
+        assertThat(newIndex.getBlock("key-00157\u00e4")).isEqualTo(sut.getBlock("key-00157\u00e4"));
+    }
+
+    // Keys sharing long prefixes, some of them outside ASCII
+    private List<String> buildKeys(final SparseIndex<String> index) {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            keys.add(String.format("key-%05d", i * 7) + (i % 3 == 0 ? "\u00e4\u4e2d" : ""));
+        }
+        Collections.sort(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            index.insert(keys.get(i), i * 100L);
+        }
+        return keys;
+    }
+}
@@ -36,7 +36,7 @@ public class TestBase {
         fileSystem.close();
     }
 
-    Path getPath(final String path) {
+    protected Path getPath(final String path) {
         return fileSystem.getPath(path);
     }
 
@@ -0,0 +1,88 @@
+package keydb;
+
+import io.vavr.control.Option;
+import keydb.types.ValueIO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionTest extends TestBase {
+
+    private final ValueIO<String> valueIO = ValueIO.getProvider(String.class);
+
+    private final Segment<String> newest = segment(5, "a", "z");
+    private final Segment<String> oldest = segment(4, "a", "z");
+    private final Segment<String> low = segment(1, "a", "f");
+    private final Segment<String> middle = segment(2, "g", "m");
+    private final Segment<String> high = segment(3, "n", "t");
+
+    @Test
+    void candidates_are_all_of_level_zero_and_at_most_one_per_level() {
+        final Version<String> sut = Version.of(List.of(List.of(newest, oldest), List.of(low, middle, high)));
+
+        assertThat(sut.getCandidates("h")).containsExactly(newest, oldest, middle);
+        assertThat(sut.getCandidates("u")).containsExactly(newest, oldest);
+    }
+
+    @Test
+    void level_zero_segments_not_covering_the_key_are_not_candidates() {
+        final Version<String> sut = Version.of(List.of(List.of(high, newest, low)));
+
+        assertThat(sut.getCandidates("h")).containsExactly(newest);
+        assertThat(sut.getCandidates("b")).containsExactly(newest, low);
+    }
+
+    @Test
+    void flushed_segment_is_added_first_in_level_zero() {
+        final Version<String> sut = Version.<String>empty().withFlushedSegment(oldest).withFlushedSegment(newest);
+
+        assertThat(sut.getLevel(0)).containsExactly(newest, oldest);
+    }
+
+    @Test
+    void replaced_segments_in_level_zero_keep_their_position() {
+        final Segment<String> first = segment(10, "a", "z");
+        final Version<String> version = Version.of(List.of(List.of(first, newest, oldest, low)));
+
+        final Version<String> sut = version.replace(List.of(newest, oldest), 0, List.of(middle));
+
+        assertThat(sut.getLevel(0)).containsExactly(first, middle, low);
+    }
+
+    @Test
+    void replaced_segments_in_lower_levels_are_sorted_by_key() {
+        final Version<String> version = Version.of(List.of(List.of(newest), List.of(low, high)));
+
+        final Version<String> sut = version.replace(List.of(newest, high), 1, List.of(high, middle));
+
+        assertThat(sut.getLevel(0)).isEmpty();
+        assertThat(sut.getLevel(1)).containsExactly(low, middle, high);
+    }
+
+    @Test
+    void overlapping_segments_are_found_by_key_range() {
+        final Version<String> sut = Version.of(List.of(List.of(), List.of(low, middle, high)));
+
+        assertThat(sut.getOverlapping(1, "f", "h")).containsExactly(low, middle);
+        assertThat(sut.getOverlapping(2, "a", "z")).isEmpty();
+    }
+
+    @Test
+    void released_version_can_not_be_retained() {
+        final Version<String> sut = Version.of(List.of(List.of(newest)));
+        assertThat(sut.tryRetain()).isTrue();
+
+        sut.release();
+        sut.release();
+
+        assertThat(sut.tryRetain()).isFalse();
+    }
+
+    private Segment<String> segment(final int id, final String minKey, final String maxKey) {
+        return new Segment<>(new SparseIndex<>(valueIO), BloomFilter.empty(valueIO), minKey, maxKey,
+                getPath(String.valueOf(id)), id, SegmentFormat.Footer.LEGACY,
+                Option.none());
+    }
+}
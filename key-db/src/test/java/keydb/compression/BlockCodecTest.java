@@ -0,0 +1,92 @@
+package keydb.compression;
+
+import keydb.config.Compression;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlockCodecTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void every_codec_round_trips_text_random_bytes_and_long_runs() throws Exception {
+        final byte[] text = "key-00042 the quick brown fox jumps over the lazy dog "
+                .repeat(100).getBytes(StandardCharsets.UTF_8);
+        final byte[] noise = new byte[5_000];
+        random.nextBytes(noise);
+        final byte[] run = new byte[10_000];
+        Arrays.fill(run, (byte) 7);
+
+        for (final Compression compression : Compression.values()) {
+            final BlockCodec sut = BlockCodec.of(compression);
+            for (final byte[] input : new byte[][]{new byte[0], "abc".getBytes(StandardCharsets.UTF_8), text, noise, run}) {
+                assertThat(roundTrip(sut, input)).as(compression.name()).isEqualTo(input);
+            }
+        }
+    }
+
+    @Test
+    void decompresses_between_direct_buffers() throws Exception {
+        final byte[] text = "abcabcabcabcabcabcabcabc the end".getBytes(StandardCharsets.UTF_8);
+
+        for (final Compression compression : Compression.values()) {
+            final BlockCodec sut = BlockCodec.of(compression);
+            final byte[] compressed = sut.compress(text, text.length);
+            final ByteBuffer src = ByteBuffer.allocateDirect(compressed.length).put(compressed).flip();
+            final ByteBuffer dst = ByteBuffer.allocateDirect(text.length);
+
+            sut.decompress(src, dst);
+
+            final byte[] decompressed = new byte[text.length];
+            dst.flip().get(decompressed);
+            assertThat(decompressed).as(compression.name()).isEqualTo(text);
+        }
+    }
+
+    @Test
+    void repetitive_text_shrinks() {
+        final byte[] text = "{\"user\": \"someone\", \"session\": \"active\"} ".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        assertThat(LzCodec.INSTANCE.compress(text, text.length).length).isLessThan(text.length / 4);
+        assertThat(DeflateCodec.INSTANCE.compress(text, text.length).length).isLessThan(text.length / 4);
+    }
+
+    @Test
+    void codec_is_found_by_its_id() throws Exception {
+        for (final Compression compression : Compression.values()) {
+            final BlockCodec codec = BlockCodec.of(compression);
+
+            assertThat(BlockCodec.forId(codec.getId())).isSameAs(codec);
+        }
+        assertThatThrownBy(() -> BlockCodec.forId((byte) 99)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void decompressing_into_the_wrong_length_fails() {
+        final byte[] text = "hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+
+        for (final Compression compression : Compression.values()) {
+            final BlockCodec sut = BlockCodec.of(compression);
+            final byte[] compressed = sut.compress(text, text.length);
+
+            assertThatThrownBy(() -> sut.decompress(ByteBuffer.wrap(compressed), ByteBuffer.allocate(text.length + 1)))
+                    .as(compression.name())
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    private static byte[] roundTrip(final BlockCodec codec, final byte[] input) throws IOException {
+        final byte[] compressed = codec.compress(input, input.length);
+        final ByteBuffer decompressed = ByteBuffer.allocate(input.length);
+        codec.decompress(ByteBuffer.wrap(compressed), decompressed);
+        return decompressed.array();
+    }
+}
@@ -0,0 +1,64 @@
+package keydb.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistogramTest {
+
+    @Test
+    void buckets_span_at_most_an_eighth_of_their_values() {
+        for (long value = 0; value < 100_000; value++) {
+            final int bucket = Histogram.bucket(value);
+            assertThat(Histogram.upperBound(bucket)).isGreaterThanOrEqualTo(value);
+            assertThat(Histogram.upperBound(bucket)).isLessThanOrEqualTo(value + value / 8);
+            assertThat(bucket == 0 || Histogram.upperBound(bucket - 1) < value).isTrue();
+        }
+        assertThat(Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void snapshot_gives_count_mean_and_percentiles() {
+        final Histogram sut = new Histogram();
+        for (int value = 1; value <= 1000; value++) {
+            sut.record(value);
+        }
+
+        final Histogram.Snapshot snapshot = sut.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(1000);
+        assertThat(snapshot.mean()).isEqualTo(500.5);
+        assertThat(snapshot.max()).isEqualTo(1000);
+        assertThat(snapshot.percentile(0.5)).isBetween(500L, 500L + 500 / 8);
+        assertThat(snapshot.percentile(0.99)).isBetween(990L, 1000L);
+        assertThat(snapshot.percentile(1.0)).isEqualTo(1000);
+        assertThat(new Histogram().snapshot().percentile(0.99)).isEqualTo(0);
+    }
+
+    @Test
+    void records_from_many_threads_without_losing_values() throws Exception {
+        final Histogram sut = new Histogram();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    sut.record(i);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(sut.snapshot().count()).isEqualTo(40_000);
+        assertThat(sut.snapshot().sum()).isEqualTo(4L * 9_999 * 10_000 / 2);
+    }
+}
@@ -0,0 +1,125 @@
+package keydb.server;
+
+import io.vavr.control.Option;
+import keydb.Entry;
+import keydb.KeyDB;
+import keydb.TestBase;
+import keydb.config.ServerConfig;
+import keydb.types.Codec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyDBServerTest extends TestBase {
+
+    private KeyDB<String> db;
+    private KeyDBServer<String> server;
+    private KeyDBClient<String> client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = KeyDB.create(getPath("db"), String.class);
+        server = KeyDBServer.start(db, Codec.find(String.class, StandardCharsets.UTF_8).get(),
+                ServerConfig.builder().host("localhost").port(0).bufferBytes(64).maxFrameBytes(4_096).build());
+        client = KeyDBClient.connect(server.getAddress());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.close();
+        db.close();
+    }
+
+    @Test
+    void get_and_put_go_through_the_server() {
+        client.put("key", "value");
+
+        assertThat(client.get("key")).isEqualTo(Option.some("value"));
+        assertThat(client.get("missing")).isEqualTo(Option.none());
+        assertThat(db.get("key")).isEqualTo(Option.some("value"));
+    }
+
+    @Test
+    void scan_and_multi_get_return_entries_in_key_order() {
+        forKeyValues(db::put);
+
+        final List<Entry<String>> scanned = client.scan("", "\uffff", 10);
+        final Map<String, String> found = client.multiGet(List.of("missing", "b", "a"));
+
+        assertThat(scanned).hasSize(10);
+        assertThat(scanned).isSortedAccordingTo((x, y) -> x.key().compareTo(y.key()));
+        scanned.forEach(entry -> assertThat(entry.value()).isEqualTo(keyValues.get(entry.key())));
+        assertThat(found).isEmpty();
+
+        db.put("a", "1");
+        db.put("b", "2");
+        assertThat(client.multiGet(List.of("missing", "b", "a"))).containsExactly(Map.entry("b", "2"), Map.entry("a", "1"));
+    }
+
+    @Test
+    void pipelined_requests_are_answered_in_order() {
+        final List<CompletableFuture<Void>> puts = new ArrayList<>();
+        final List<CompletableFuture<Option<String>>> gets = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            puts.add(client.putAsync("key" + i, "value" + i));
+            gets.add(client.getAsync("key" + i));
+        }
+
+        CompletableFuture.allOf(puts.toArray(CompletableFuture[]::new)).join();
+        for (int i = 0; i < gets.size(); i++) {
+            assertThat(gets.get(i).join()).isEqualTo(Option.some("value" + i));
+        }
+    }
+
+    @Test
+    void values_larger_than_the_buffers_grow_them() {
+        final String value = "v".repeat(1_000);
+
+        client.put("key", value);
+
+        assertThat(client.get("key")).isEqualTo(Option.some(value));
+    }
+
+    @Test
+    void errors_fail_the_request_but_keep_the_connection() {
+        forKeyValues(db::put);
+
+        // Ten entries of about 50 bytes fit in a frame, a hundred do not
+        assertThatThrownBy(() -> client.scan("", "\uffff", 100))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("larger than the limit");
+        assertThat(client.scan("", "\uffff", 10)).hasSize(10);
+    }
+
+    @Test
+    void a_connection_sending_a_frame_over_the_limit_is_closed() throws Exception {
+        try (final Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", server.getAddress().getPort()));
+            new DataOutputStream(socket.getOutputStream()).writeInt(1_000_000);
+
+            assertThat(socket.getInputStream().read()).isEqualTo(-1);
+        }
+        assertThat(client.get("key")).isEqualTo(Option.none());
+    }
+
+    @Test
+    void requests_fail_once_the_client_is_closed() throws Exception {
+        final KeyDBClient<String> other = KeyDBClient.connect(server.getAddress());
+        other.close();
+
+        assertThat(other.getAsync("key")).isCompletedExceptionally();
+    }
+}